@@ -58,7 +58,12 @@ public class SimbaException extends IOException {
         FILE_ERROR,
         TRANSACTION_ERROR,
         EXECUTION_ERROR,
-        PROCESSING_ERROR
+        PROCESSING_ERROR,
+        DEADLINE_EXCEEDED,
+        CIRCUIT_OPEN,
+        CONCURRENCY_LIMIT_EXCEEDED,
+        RATE_LIMITED,
+        INTEGRITY_ERROR
     }
 
     public SimbaException(String message, SimbaError type) {
@@ -103,6 +108,26 @@ public class SimbaException extends IOException {
     public void setHttpStatus(int httpStatus) {
         properties.put("HTTP_STATUS", httpStatus);
     }
+
+    /**
+     * The delay requested by the server's Retry-After header.
+     * @return The delay in milliseconds, or -1 if the server did not send one.
+     */
+    public long getRetryAfterMillis() {
+        Object o = properties.get("RETRY_AFTER_MILLIS");
+        if (o != null) {
+            try {
+                return Long.parseLong(o.toString());
+            } catch (NumberFormatException e) {
+
+            }
+        }
+        return -1;
+    }
+
+    public void setRetryAfterMillis(long retryAfterMillis) {
+        properties.put("RETRY_AFTER_MILLIS", retryAfterMillis);
+    }
     
     public void setProperty(String key, Object value) {
         properties.put(key, value);
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.simbachain.SimbaException;
+
+/**
+ * The results of a batch of method calls, in the same order as the calls, with
+ * statistics for the batch as a whole.
+ * <p>
+ * Each call has either a CallResponse or the SimbaException it failed with.
+ */
+public class BatchResult {
+
+    private final List<CallResponse> responses;
+    private final List<SimbaException> errors;
+    private final long[] latencies;
+    private final long elapsedMillis;
+
+    public BatchResult(CallResponse[] responses,
+        SimbaException[] errors,
+        long[] latencies,
+        long elapsedMillis) {
+        this.responses = Collections.unmodifiableList(Arrays.asList(responses));
+        this.errors = Collections.unmodifiableList(Arrays.asList(errors));
+        this.latencies = latencies;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Get the number of calls in the batch.
+     *
+     * @return the number of calls.
+     */
+    public int size() {
+        return responses.size();
+    }
+
+    /**
+     * Get the responses, with null for calls that failed.
+     *
+     * @return the responses in the order of the calls.
+     */
+    public List<CallResponse> getResponses() {
+        return responses;
+    }
+
+    /**
+     * Get the errors, with null for calls that succeeded.
+     *
+     * @return the errors in the order of the calls.
+     */
+    public List<SimbaException> getErrors() {
+        return errors;
+    }
+
+    public CallResponse getResponse(int index) {
+        return responses.get(index);
+    }
+
+    public SimbaException getError(int index) {
+        return errors.get(index);
+    }
+
+    public boolean isSuccess(int index) {
+        return errors.get(index) == null;
+    }
+
+    /**
+     * Get the number of calls that succeeded.
+     *
+     * @return the number of successful calls.
+     */
+    public int getSucceeded() {
+        int count = 0;
+        for (SimbaException error : errors) {
+            if (error == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of calls that failed.
+     *
+     * @return the number of failed calls.
+     */
+    public int getFailed() {
+        return size() - getSucceeded();
+    }
+
+    /**
+     * Get the time from the start of the batch until the last call completed.
+     *
+     * @return the elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Get the number of successful calls per second over the batch.
+     *
+     * @return the throughput in calls per second.
+     */
+    public double getThroughput() {
+        return getSucceeded() * 1000.0 / Math.max(1, elapsedMillis);
+    }
+
+    /**
+     * Get the mean time taken by a call, whether it succeeded or failed.
+     *
+     * @return the mean latency in milliseconds.
+     */
+    public double getMeanLatencyMillis() {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (long latency : latencies) {
+            total += latency;
+        }
+        return (double) total / latencies.length;
+    }
+
+    /**
+     * Get the longest time taken by a call.
+     *
+     * @return the maximum latency in milliseconds.
+     */
+    public long getMaxLatencyMillis() {
+        long max = 0;
+        for (long latency : latencies) {
+            max = Math.max(max, latency);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("BatchResult{");
+        sb.append("size=")
+          .append(size());
+        sb.append(", succeeded=")
+          .append(getSucceeded());
+        sb.append(", elapsedMillis=")
+          .append(elapsedMillis);
+        sb.append(", throughput=")
+          .append(getThroughput());
+        sb.append(", meanLatencyMillis=")
+          .append(getMeanLatencyMillis());
+        sb.append(", maxLatencyMillis=")
+          .append(getMaxLatencyMillis());
+        sb.append('}');
+        return sb.toString();
+    }
+}
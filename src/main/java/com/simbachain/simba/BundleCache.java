@@ -0,0 +1,476 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import com.simbachain.SimbaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size bounded cache of bundles and bundle files on local disk.
+ * <p>
+ * Bundles are immutable once created, so entries are keyed by content: whole bundles by
+ * the bundle hash of their transaction, and files by the hash in their manifest entry.
+ * Entries are written to a temporary file and moved into place atomically, so a partly
+ * written entry is never visible, even across restarts. When the total size exceeds the
+ * maximum, the least recently used entries are deleted. Cached entries are read with
+ * memory mapped I/O.
+ * <p>
+ * The bundle hash of each transaction is also remembered in memory, as it does not change
+ * once set, so that a cached bundle can be found without fetching the transaction again.
+ * <p>
+ * The cache can be shared by several SimbaChain instances, but a directory should only be
+ * used by one cache at a time.
+ */
+public class BundleCache {
+
+    private static final Logger log = LoggerFactory.getLogger(BundleCache.class);
+
+    private static final String TEMP_PREFIX = ".tmp-";
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    private static final long MAP_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_BUNDLE_HASHES = 10000;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, String> bundleHashes = new LinkedHashMap<String, String>(16,
+        0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_BUNDLE_HASHES;
+        }
+    };
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * Writes an entry to a temporary file.
+     */
+    @FunctionalInterface
+    public interface Writer {
+
+        /**
+         * Write the content of an entry.
+         *
+         * @param path the temporary file to write to. It has already been created.
+         * @throws IOException if the content cannot be written. Nothing is cached.
+         */
+        void write(Path path) throws IOException;
+    }
+
+    /**
+     * Create a cache in a directory. Entries already in the directory are kept, with the
+     * least recently modified treated as least recently used.
+     *
+     * @param directory the directory, which is created if it does not exist.
+     * @param maxBytes  the maximum total size of the cached entries.
+     * @throws SimbaException if the directory cannot be read.
+     */
+    public BundleCache(Path directory, long maxBytes) throws SimbaException {
+        this.directory = directory.toAbsolutePath()
+                                  .normalize();
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(this.directory);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+                for (Path path : stream) {
+                    String name = path.getFileName()
+                                      .toString();
+                    if (name.startsWith(TEMP_PREFIX)) {
+                        Files.deleteIfExists(path);
+                    } else if (KEY.matcher(name)
+                                  .matches() && Files.isRegularFile(path)) {
+                        files.add(path);
+                    }
+                }
+            }
+            files.sort((a, b) -> lastModified(a).compareTo(lastModified(b)));
+            for (Path path : files) {
+                long length = Files.size(path);
+                this.entries.put(path.getFileName()
+                                     .toString(), length);
+                this.size += length;
+            }
+            evict(null);
+        } catch (IOException e) {
+            throw new SimbaException("Could not open bundle cache " + directory,
+                SimbaException.SimbaError.FILE_ERROR, e);
+        }
+    }
+
+    /**
+     * Get the key for a whole bundle.
+     *
+     * @param bundleHash the bundle hash of the transaction.
+     * @return the key.
+     * @see Transaction#getBundleHash()
+     */
+    public static String bundleKey(String bundleHash) {
+        return "bundle-" + clean(bundleHash);
+    }
+
+    /**
+     * Get the key for a file in a bundle.
+     *
+     * @param file the file from the bundle manifest.
+     * @return the key, or null if the manifest has no hash for the file.
+     */
+    public static String fileKey(ManifestFile file) {
+        if (!Digests.canVerify(file)) {
+            return null;
+        }
+        String hash = file.getHash() != null ? file.getHash() : file.getDigest();
+        return Digests.normalize(file.getAlg())
+                      .toLowerCase(Locale.ROOT) + "-" + clean(hash);
+    }
+
+    private static String clean(String hash) {
+        String value = hash.trim()
+                           .toLowerCase(Locale.ROOT);
+        return value.startsWith("0x") ? value.substring(2) : value;
+    }
+
+    /**
+     * Get the bundle hash remembered for a transaction.
+     *
+     * @param transactionIdOrHash the transaction ID or hash.
+     * @return the bundle hash, or null if it is not known.
+     */
+    public synchronized String getBundleHash(String transactionIdOrHash) {
+        return this.bundleHashes.get(transactionIdOrHash);
+    }
+
+    /**
+     * Remember the bundle hash of a transaction. Only the most recently used hashes are
+     * kept.
+     *
+     * @param transactionIdOrHash the transaction ID or hash.
+     * @param bundleHash          the bundle hash of the transaction.
+     */
+    public synchronized void putBundleHash(String transactionIdOrHash, String bundleHash) {
+        this.bundleHashes.put(transactionIdOrHash, bundleHash);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Get the total size of the cached entries.
+     *
+     * @return the size in bytes.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Whether an entry is cached. This does not count as a use of the entry.
+     *
+     * @param key the key.
+     * @return true if the entry is cached.
+     */
+    public synchronized boolean contains(String key) {
+        return this.entries.containsKey(key);
+    }
+
+    /**
+     * Write a cached entry to a stream with memory mapped reads. The stream is not closed.
+     *
+     * @param key the key.
+     * @param out the stream to write to.
+     * @return the number of bytes written, or -1 if the entry is not cached.
+     * @throws IOException if the entry cannot be read or the stream written.
+     */
+    public long copyTo(String key, OutputStream out) throws IOException {
+        return copyTo(key, Channels.newChannel(out));
+    }
+
+    /**
+     * Copy a cached entry to a file with memory mapped reads. The file is created, or
+     * replaced if it exists.
+     *
+     * @param key    the key.
+     * @param target the file to write to.
+     * @return the size of the entry, or -1 if the entry is not cached.
+     * @throws IOException if the entry cannot be read or the file written.
+     */
+    public long copyTo(String key, Path target) throws IOException {
+        if (!use(key)) {
+            return -1;
+        }
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return copy(key, out);
+        }
+    }
+
+    /**
+     * Write a cached entry to a channel with memory mapped reads.
+     *
+     * @param key the key.
+     * @param out the channel to write to.
+     * @return the number of bytes written, or -1 if the entry is not cached.
+     * @throws IOException if the entry cannot be read or the channel written.
+     */
+    public long copyTo(String key, WritableByteChannel out) throws IOException {
+        if (!use(key)) {
+            return -1;
+        }
+        return copy(key, out);
+    }
+
+    /**
+     * Add an entry. The writer writes the content to a temporary file, which is moved
+     * into the cache once complete. If the writer fails, nothing is cached. If the entry
+     * is larger than the cache, it is written and then discarded.
+     *
+     * @param key    the key.
+     * @param writer writes the content.
+     * @return the size of the entry.
+     * @throws IOException if the writer fails or the entry cannot be stored.
+     */
+    public long put(String key, Writer writer) throws IOException {
+        Path target = path(key);
+        Path temp = this.directory.resolve(TEMP_PREFIX + UUID.randomUUID());
+        Files.createFile(temp);
+        long length;
+        try {
+            writer.write(temp);
+            length = Files.size(temp);
+            if (length > this.maxBytes) {
+                return length;
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        synchronized (this) {
+            Long previous = this.entries.put(key, length);
+            this.size += length - (previous == null ? 0 : previous);
+        }
+        evict(key);
+        return length;
+    }
+
+    /**
+     * Add an entry by copying a file. The file is read with memory mapped reads and, if a
+     * manifest file is given, verified against it as it is copied.
+     *
+     * @param key    the key.
+     * @param source the file to copy.
+     * @param verify the manifest file to verify against, or null to not verify.
+     * @return the size of the entry.
+     * @throws IOException if the file cannot be copied, or an INTEGRITY_ERROR if it does
+     *                     not match the manifest. Nothing is cached.
+     */
+    public long put(String key, Path source, ManifestFile verify) throws IOException {
+        return put(key, temp -> {
+            MessageDigest digest = verify == null ? null : Digests.create(verify.getAlg());
+            long length;
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                length = in.size();
+                long position = 0;
+                while (position < length) {
+                    MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_SIZE, length - position));
+                    if (digest != null) {
+                        digest.update(buffer.duplicate());
+                    }
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    position += buffer.capacity();
+                }
+            }
+            if (digest != null) {
+                Digests.verify(verify, length, digest.digest());
+            }
+        });
+    }
+
+    /**
+     * Remove an entry.
+     *
+     * @param key the key.
+     * @throws IOException if the entry cannot be deleted.
+     */
+    public void remove(String key) throws IOException {
+        synchronized (this) {
+            Long length = this.entries.remove(key);
+            if (length == null) {
+                return;
+            }
+            this.size -= length;
+        }
+        Files.deleteIfExists(path(key));
+    }
+
+    /**
+     * Mark an entry as used, counting a hit or miss.
+     */
+    private boolean use(String key) throws IOException {
+        Path path = path(key);
+        synchronized (this) {
+            if (this.entries.get(key) == null) {
+                this.misses++;
+                return false;
+            }
+            this.hits++;
+        }
+        try {
+            // keep the order of use across restarts
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            forget(key);
+            return false;
+        }
+        return true;
+    }
+
+    private long copy(String key, WritableByteChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(path(key), StandardOpenOption.READ)) {
+            long length = in.size();
+            long position = 0;
+            while (position < length) {
+                MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAP_SIZE, length - position));
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                position += buffer.capacity();
+            }
+            return length;
+        }
+    }
+
+    private synchronized void forget(String key) {
+        Long length = this.entries.remove(key);
+        if (length != null) {
+            this.size -= length;
+        }
+    }
+
+    /**
+     * Delete the least recently used entries until the cache fits, keeping the given key.
+     */
+    private void evict(String keep) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> it = this.entries.entrySet()
+                                                               .iterator();
+            while (this.size > this.maxBytes && it.hasNext()) {
+                Map.Entry<String, Long> entry = it.next();
+                if (entry.getKey()
+                         .equals(keep)) {
+                    continue;
+                }
+                this.size -= entry.getValue();
+                evicted.add(entry.getKey());
+                it.remove();
+            }
+        }
+        for (String key : evicted) {
+            try {
+                Files.deleteIfExists(this.directory.resolve(key));
+            } catch (IOException e) {
+                log.warn("BundleCache could not delete " + key, e);
+            }
+        }
+    }
+
+    private Path path(String key) throws SimbaException {
+        if (key == null || !KEY.matcher(key)
+                               .matches()) {
+            throw new SimbaException("Invalid bundle cache key " + key,
+                SimbaException.SimbaError.MESSAGE_ERROR);
+        }
+        return this.directory.resolve(key);
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("BundleCache{");
+        sb.append("directory=")
+          .append(directory);
+        sb.append(", maxBytes=")
+          .append(maxBytes);
+        sb.append(", size=")
+          .append(getSize());
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.io.InputStream;
+
+/**
+ * A file read from a bundle archive.
+ */
+public class BundleEntry {
+
+    private final String name;
+    private final long size;
+    private final ManifestFile manifestFile;
+    private final InputStream inputStream;
+
+    public BundleEntry(String name, long size, ManifestFile manifestFile,
+        InputStream inputStream) {
+        this.name = name;
+        this.size = size;
+        this.manifestFile = manifestFile;
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * Get the name of the file in the archive.
+     *
+     * @return the name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the file from the bundle manifest with the same name.
+     *
+     * @return the manifest file, or null if there is no manifest or no file in it with
+     * this name.
+     */
+    public ManifestFile getManifestFile() {
+        return manifestFile;
+    }
+
+    /**
+     * Get the content of the file. The stream reads directly from the archive and is only
+     * valid until the entry handler returns. Closing it skips any content not yet read.
+     *
+     * @return the content.
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("BundleEntry{");
+        sb.append("name='")
+          .append(name)
+          .append('\'');
+        sb.append(", size=")
+          .append(size);
+        sb.append(", manifestFile=")
+          .append(manifestFile);
+        sb.append('}');
+        return sb.toString();
+    }
+}
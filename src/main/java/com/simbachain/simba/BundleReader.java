@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import com.simbachain.SimbaException;
+import com.simbachain.simba.http.FileTransfer;
+
+/**
+ * Reads the files in a bundle archive as the archive is streamed, without buffering it
+ * in memory or on disk.
+ * <p>
+ * Bundles are tar archives, usually gzipped. Compression is detected from the content.
+ * POSIX (ustar and pax) and GNU long names are supported. Only regular files are returned.
+ * Directories, links and other entries are skipped.
+ * <p>
+ * If a manifest is given, each file is matched to the manifest file with the same name.
+ * Files that have a hash in the manifest are hashed as they are read, and once the file has
+ * been read the hash and size are checked, failing with an INTEGRITY_ERROR if they do not
+ * match.
+ */
+public class BundleReader implements Closeable {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 1024 * 1024;
+
+    private final InputStream in;
+    private final Map<String, ManifestFile> files = new HashMap<>();
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private final byte[] scratch = new byte[8192];
+    private EntryStream current;
+    private boolean finished;
+
+    /**
+     * Create a reader.
+     *
+     * @param in       the archive, gzipped or not.
+     * @param manifest the bundle manifest, or null to not match or verify files.
+     * @throws IOException if the stream cannot be read.
+     */
+    public BundleReader(InputStream in, Manifest manifest) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+        this.in = magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(buffered,
+            BUFFER_SIZE) : buffered;
+        if (manifest != null) {
+            for (ManifestFile file : manifest.getFiles()) {
+                if (file.getName() != null) {
+                    this.files.put(file.getName(), file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a handler that extracts files into a directory. Subdirectories are created
+     * as needed and existing files are replaced. Entries whose names would place them
+     * outside the directory, e.g. ../file or /file, fail with a FILE_ERROR.
+     *
+     * @param directory the directory to extract into.
+     * @return the handler.
+     */
+    public static BundleEntryHandler extractTo(Path directory) {
+        final Path root = directory.toAbsolutePath()
+                                   .normalize();
+        return entry -> {
+            Path target = root.resolve(entry.getName())
+                              .normalize();
+            if (!target.startsWith(root) || target.equals(root)) {
+                throw new SimbaException(
+                    "Bundle entry " + entry.getName() + " is outside of " + root,
+                    SimbaException.SimbaError.FILE_ERROR);
+            }
+            Files.createDirectories(target.getParent());
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                new FileTransfer(channel, 0).write(entry.getInputStream());
+            }
+        };
+    }
+
+    /**
+     * Pass each file in the archive to the handler in turn.
+     *
+     * @param handler the handler.
+     * @return the number of files read.
+     * @throws IOException if the archive cannot be read, the handler fails or a file does
+     *                     not match the manifest.
+     */
+    public int read(BundleEntryHandler handler) throws IOException {
+        int count = 0;
+        BundleEntry entry;
+        while ((entry = next()) != null) {
+            handler.handle(entry);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get the next file in the archive. Any content of the previous file that was not
+     * read is skipped, and the previous file is verified against the manifest.
+     *
+     * @return the next file, or null at the end of the archive.
+     * @throws IOException if the archive cannot be read or the previous file does not
+     *                     match the manifest.
+     */
+    public BundleEntry next() throws IOException {
+        if (this.current != null) {
+            EntryStream previous = this.current;
+            this.current = null;
+            previous.finish();
+        }
+        if (this.finished) {
+            return null;
+        }
+        String longName = null;
+        Map<String, String> pax = Collections.emptyMap();
+        while (true) {
+            if (!readBlock() || isZero(this.header)) {
+                this.finished = true;
+                // read to the end so that the gzip trailer is checked
+                while (this.in.read(this.scratch) != -1) {
+                    // discard
+                }
+                return null;
+            }
+            checkHeader();
+            long size = pax.containsKey("size") ? parseLong(pax.get("size"))
+                : parseNumber(124, 12);
+            if (size < 0) {
+                throw invalid("negative entry size");
+            }
+            byte type = this.header[156];
+            if (type == 'L') {
+                longName = trimName(readData(size));
+                continue;
+            }
+            if (type == 'x') {
+                pax = parsePax(readData(size));
+                continue;
+            }
+            String name = pax.containsKey("path") ? pax.get("path")
+                : longName != null ? longName : headerName();
+            longName = null;
+            pax = Collections.emptyMap();
+            if (type == '0' || type == 0 || type == '7') {
+                ManifestFile manifestFile = manifestFile(name);
+                this.current = new EntryStream(size, manifestFile);
+                return new BundleEntry(name, size, manifestFile, this.current);
+            }
+            skipFully(size + padding(size));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    private ManifestFile manifestFile(String name) {
+        if (this.files.isEmpty()) {
+            return null;
+        }
+        String key = name;
+        while (key.startsWith("./") || key.startsWith("/")) {
+            key = key.substring(key.charAt(0) == '.' ? 2 : 1);
+        }
+        ManifestFile file = this.files.get(key);
+        if (file == null) {
+            file = this.files.get(key.substring(key.lastIndexOf('/') + 1));
+        }
+        return file;
+    }
+
+    private boolean readBlock() throws IOException {
+        int n = 0;
+        while (n < BLOCK_SIZE) {
+            int c = this.in.read(this.header, n, BLOCK_SIZE - n);
+            if (c < 0) {
+                if (n == 0) {
+                    return false;
+                }
+                throw new EOFException("Bundle archive ends within a header");
+            }
+            n += c;
+        }
+        return true;
+    }
+
+    private byte[] readData(long size) throws IOException {
+        if (size > MAX_HEADER_SIZE) {
+            throw invalid("extended header of " + size + " bytes");
+        }
+        byte[] data = new byte[(int) size];
+        int n = 0;
+        while (n < data.length) {
+            int c = this.in.read(data, n, data.length - n);
+            if (c < 0) {
+                throw new EOFException("Bundle archive ends within an extended header");
+            }
+            n += c;
+        }
+        skipFully(padding(size));
+        return data;
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            int c = this.in.read(this.scratch, 0, (int) Math.min(n, this.scratch.length));
+            if (c < 0) {
+                throw new EOFException("Bundle archive ends within an entry");
+            }
+            n -= c;
+        }
+    }
+
+    private void checkHeader() throws SimbaException {
+        long sum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            sum += i >= 148 && i < 156 ? ' ' : this.header[i] & 0xff;
+        }
+        if (sum != parseNumber(148, 8)) {
+            throw invalid("header checksum");
+        }
+    }
+
+    private String headerName() {
+        String name = trimName(field(0, 100));
+        boolean ustar = this.header[257] == 'u' && this.header[258] == 's'
+            && this.header[259] == 't' && this.header[260] == 'a' && this.header[261] == 'r';
+        if (ustar && this.header[345] != 0) {
+            name = trimName(field(345, 155)) + "/" + name;
+        }
+        return name;
+    }
+
+    private byte[] field(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && this.header[end] != 0) {
+            end++;
+        }
+        byte[] value = new byte[end - offset];
+        System.arraycopy(this.header, offset, value, 0, value.length);
+        return value;
+    }
+
+    /**
+     * Parse a numeric header field, either octal or, for large values, base-256.
+     */
+    private long parseNumber(int offset, int length) throws SimbaException {
+        if ((this.header[offset] & 0x80) != 0) {
+            long value = this.header[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (this.header[i] & 0xff);
+            }
+            return value;
+        }
+        long value = 0;
+        int i = offset;
+        int end = offset + length;
+        while (i < end && (this.header[i] == ' ' || this.header[i] == 0)) {
+            i++;
+        }
+        for (; i < end && this.header[i] != ' ' && this.header[i] != 0; i++) {
+            int digit = this.header[i] - '0';
+            if (digit < 0 || digit > 7) {
+                throw invalid("numeric field");
+            }
+            value = (value << 3) + digit;
+        }
+        return value;
+    }
+
+    private static long parseLong(String value) throws SimbaException {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SimbaException("Invalid bundle archive: size " + value,
+                SimbaException.SimbaError.MESSAGE_ERROR, e);
+        }
+    }
+
+    /**
+     * Parse pax extended header records of the form "length key=value\n".
+     */
+    private static Map<String, String> parsePax(byte[] data) throws SimbaException {
+        Map<String, String> values = new HashMap<>();
+        int pos = 0;
+        while (pos < data.length && data[pos] != 0) {
+            int space = pos;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length = (int) parseLong(new String(data, pos, space - pos,
+                StandardCharsets.US_ASCII));
+            if (length <= space - pos || pos + length > data.length) {
+                throw invalid("pax header");
+            }
+            String record = new String(data, space + 1, pos + length - space - 2,
+                StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                values.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            pos += length;
+        }
+        return values;
+    }
+
+    private static String trimName(byte[] data) {
+        int end = data.length;
+        while (end > 0 && data[end - 1] == 0) {
+            end--;
+        }
+        return new String(data, 0, end, StandardCharsets.UTF_8);
+    }
+
+    private static long padding(long size) {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static SimbaException invalid(String what) {
+        return new SimbaException("Invalid bundle archive: " + what,
+            SimbaException.SimbaError.MESSAGE_ERROR);
+    }
+
+    /**
+     * The content of one file, read directly from the archive and hashed as it is read
+     * if the file can be verified against the manifest.
+     */
+    private final class EntryStream extends InputStream {
+
+        private final long size;
+        private final ManifestFile file;
+        private final MessageDigest digest;
+        private long remaining;
+
+        private EntryStream(long size, ManifestFile file) throws SimbaException {
+            this.size = size;
+            this.remaining = size;
+            this.file = file != null && Digests.canVerify(file) ? file : null;
+            this.digest = this.file == null ? null : Digests.create(this.file.getAlg());
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.remaining <= 0) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int n = in.read(b, off, (int) Math.min(len, this.remaining));
+            if (n < 0) {
+                throw new EOFException("Bundle archive ends within an entry");
+            }
+            if (this.digest != null) {
+                this.digest.update(b, off, n);
+            }
+            this.remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), this.remaining);
+        }
+
+        /**
+         * Skip any content not yet read.
+         */
+        @Override
+        public void close() throws IOException {
+            while (read(scratch, 0, scratch.length) != -1) {
+                // discard
+            }
+        }
+
+        /**
+         * Skip the rest of the entry and its padding, and verify it.
+         */
+        private void finish() throws IOException {
+            close();
+            skipFully(padding(this.size));
+            if (this.digest != null) {
+                Digests.verify(this.file, this.size, this.digest.digest());
+            }
+        }
+    }
+}
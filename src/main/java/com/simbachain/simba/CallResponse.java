@@ -22,6 +22,9 @@
 
 package com.simbachain.simba;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * The return value of a call to a method using POST.
  * The response contains a unique request identifier. This can either be
@@ -38,6 +41,8 @@ public class CallResponse {
     
     private String error;
 
+    private List<FileDigest> fileDigests = Collections.emptyList();
+
     public CallResponse(String requestIdentitier) {
         this.requestIdentitier = requestIdentitier;
     }
@@ -62,6 +67,20 @@ public class CallResponse {
         this.error = error;
     }
 
+    /**
+     * Get the digests of the files uploaded with the call, computed as they were sent.
+     *
+     * @return the digests in the order the files were given. Empty if no digest
+     * algorithms are configured.
+     */
+    public List<FileDigest> getFileDigests() {
+        return fileDigests;
+    }
+
+    public void setFileDigests(List<FileDigest> fileDigests) {
+        this.fileDigests = fileDigests;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder("CallResponse{");
@@ -74,6 +93,8 @@ public class CallResponse {
         sb.append(", error='")
           .append(error)
           .append('\'');
+        sb.append(", fileDigests=")
+          .append(fileDigests);
         sb.append('}');
         return sb.toString();
     }
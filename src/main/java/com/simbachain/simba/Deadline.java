@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.util.concurrent.TimeUnit;
+
+import com.simbachain.SimbaException;
+
+/**
+ * A point in time by which a call must complete. A deadline is created at the start of
+ * a call and passed down to every request, retry and poll the call makes, so the total
+ * time spent is bounded regardless of how many round trips are needed.
+ * <p>
+ * Connect, socket and pool timeouts of each request are reduced to the time remaining.
+ * Once the deadline has passed, or a retry sleep would take the call past it, the call
+ * fails with a SimbaException of type DEADLINE_EXCEEDED.
+ * <p>
+ * Deadlines are immutable and can be shared between threads.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE, true);
+
+    private final long expiresNanos;
+    private final boolean infinite;
+
+    private Deadline(long expiresNanos, boolean infinite) {
+        this.expiresNanos = expiresNanos;
+        this.infinite = infinite;
+    }
+
+    /**
+     * A deadline that never expires.
+     *
+     * @return the infinite deadline.
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * A deadline that expires after the given number of milliseconds.
+     *
+     * @param millis the budget in milliseconds. Zero or less gives a deadline that has
+     *               already expired. Use {@link #none()} for no deadline.
+     * @return a deadline.
+     */
+    public static Deadline after(long millis) {
+        return after(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A deadline that expires after the given duration.
+     *
+     * @param duration the budget. Zero or less gives a deadline that has already expired.
+     *                 Use {@link #none()} for no deadline.
+     * @param unit     the unit of the duration.
+     * @return a deadline.
+     */
+    public static Deadline after(long duration, TimeUnit unit) {
+        if (duration <= 0) {
+            return new Deadline(System.nanoTime(), false);
+        }
+        return new Deadline(System.nanoTime() + unit.toNanos(duration), false);
+    }
+
+    /**
+     * Whether or not this deadline never expires.
+     *
+     * @return true if there is no deadline.
+     */
+    public boolean isInfinite() {
+        return infinite;
+    }
+
+    /**
+     * Whether or not the deadline has passed.
+     *
+     * @return true if there is no time remaining.
+     */
+    public boolean isExpired() {
+        return !infinite && expiresNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Get the time remaining.
+     *
+     * @return the milliseconds remaining, zero if expired or Long.MAX_VALUE if infinite.
+     */
+    public long remainingMillis() {
+        if (infinite) {
+            return Long.MAX_VALUE;
+        }
+        long remaining = expiresNanos - System.nanoTime();
+        return remaining <= 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(remaining);
+    }
+
+    /**
+     * Get the earlier of this deadline and another.
+     *
+     * @param other another deadline.
+     * @return the deadline that expires first.
+     */
+    public Deadline earliest(Deadline other) {
+        if (other.infinite) {
+            return this;
+        }
+        if (this.infinite) {
+            return other;
+        }
+        return this.expiresNanos - other.expiresNanos <= 0 ? this : other;
+    }
+
+    /**
+     * Reduce a configured timeout to the time remaining.
+     *
+     * @param timeoutMillis a timeout in milliseconds, zero meaning no timeout.
+     * @return the timeout to use. This is at least one millisecond unless the deadline is
+     * infinite and the configured timeout is zero.
+     */
+    public int timeout(int timeoutMillis) {
+        if (infinite) {
+            return timeoutMillis;
+        }
+        long remaining = Math.max(1, remainingMillis());
+        if (timeoutMillis > 0 && timeoutMillis < remaining) {
+            return timeoutMillis;
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Throw a DEADLINE_EXCEEDED exception if the deadline has passed.
+     *
+     * @param operation a description of what was being attempted.
+     * @throws SimbaException if the deadline has passed.
+     */
+    public void check(String operation) throws SimbaException {
+        if (isExpired()) {
+            throw exceeded(operation);
+        }
+    }
+
+    /**
+     * Sleep before a retry. If the sleep would take the call past the deadline, fail
+     * immediately instead.
+     *
+     * @param millis    the time to sleep.
+     * @param operation a description of what is being retried.
+     * @throws SimbaException if the deadline does not allow for the sleep or the thread is
+     *                        interrupted.
+     */
+    public void sleep(long millis, String operation) throws SimbaException {
+        if (!allows(millis)) {
+            throw exceeded(operation);
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new SimbaException("Interrupted during " + operation,
+                SimbaException.SimbaError.EXECUTION_ERROR, e);
+        }
+    }
+
+    /**
+     * Whether or not there is more than the given time remaining.
+     *
+     * @param millis a time in milliseconds.
+     * @return true if the deadline is further away than the given time.
+     */
+    public boolean allows(long millis) {
+        return infinite || remainingMillis() > millis;
+    }
+
+    /**
+     * Create the exception thrown when the deadline has passed.
+     *
+     * @param operation a description of what was being attempted.
+     * @return a DEADLINE_EXCEEDED exception.
+     */
+    public SimbaException exceeded(String operation) {
+        return new SimbaException("Deadline exceeded during " + operation,
+            SimbaException.SimbaError.DEADLINE_EXCEEDED);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("Deadline{");
+        if (infinite) {
+            sb.append("none");
+        } else {
+            sb.append("remainingMillis=")
+              .append(remainingMillis());
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
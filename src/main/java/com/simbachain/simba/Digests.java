@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+import com.simbachain.SimbaException;
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+import org.web3j.utils.Numeric;
+
+/**
+ * Creates message digests from the algorithm names used in bundle manifests,
+ * e.g. sha256, SHA-256 or keccak256.
+ * <p>
+ * Names are normalized to the standard Java names, so sha256 and SHA-256 are the same
+ * algorithm. keccak, keccak256 and sha3 are the Keccak-256 hash used by Ethereum. Other
+ * names are passed to MessageDigest.getInstance().
+ */
+public final class Digests {
+
+    /**
+     * The name used for Keccak-256.
+     */
+    public static final String KECCAK_256 = "KECCAK-256";
+
+    private Digests() {
+    }
+
+    /**
+     * Get the standard name of an algorithm.
+     *
+     * @param algorithm the algorithm name, e.g. sha256.
+     * @return the standard name, e.g. SHA-256.
+     */
+    public static String normalize(String algorithm) {
+        String name = algorithm.trim()
+                               .toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "KECCAK":
+            case "KECCAK256":
+            case "KECCAK-256":
+            case "SHA3":
+                return KECCAK_256;
+            case "SHA1":
+                return "SHA-1";
+            case "SHA224":
+                return "SHA-224";
+            case "SHA256":
+                return "SHA-256";
+            case "SHA384":
+                return "SHA-384";
+            case "SHA512":
+                return "SHA-512";
+            default:
+                return name;
+        }
+    }
+
+    /**
+     * Create a message digest for an algorithm.
+     *
+     * @param algorithm the algorithm name.
+     * @return a new message digest.
+     * @throws SimbaException if the algorithm is not supported.
+     */
+    public static MessageDigest create(String algorithm) throws SimbaException {
+        String name = normalize(algorithm);
+        if (KECCAK_256.equals(name)) {
+            return new Keccak.Digest256();
+        }
+        try {
+            return MessageDigest.getInstance(name);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SimbaException("Unsupported digest algorithm " + algorithm,
+                SimbaException.SimbaError.MESSAGE_ERROR, e);
+        }
+    }
+
+    /**
+     * Encode a digest as lower case hex without a 0x prefix.
+     *
+     * @param digest the digest.
+     * @return the hex string.
+     */
+    public static String toHex(byte[] digest) {
+        return Numeric.toHexStringNoPrefix(digest);
+    }
+
+    /**
+     * Compare two hex encoded digests, ignoring case and any 0x prefix.
+     *
+     * @param a a hex digest.
+     * @param b another hex digest.
+     * @return true if the digests are equal.
+     */
+    public static boolean equals(String a, String b) {
+        if (a == null || b == null) {
+            return false;
+        }
+        return Numeric.cleanHexPrefix(a.trim())
+                      .equalsIgnoreCase(Numeric.cleanHexPrefix(b.trim()));
+    }
+
+    /**
+     * Check the size and hash of some content against a file from a bundle manifest.
+     * The hash is compared with the manifest file's hash, or its digest if it has no hash.
+     *
+     * @param file   the manifest file.
+     * @param size   the size of the content.
+     * @param digest the digest of the content, computed with the manifest file's algorithm.
+     * @throws SimbaException an INTEGRITY_ERROR if the size or hash does not match.
+     */
+    public static void verify(ManifestFile file, long size, byte[] digest)
+        throws SimbaException {
+        if (file.getSize() > 0 && file.getSize() != size) {
+            throw new SimbaException(
+                "File " + file.getName() + " has size " + size + ", expected " + file.getSize(),
+                SimbaException.SimbaError.INTEGRITY_ERROR);
+        }
+        String expected = file.getHash() != null ? file.getHash() : file.getDigest();
+        String actual = toHex(digest);
+        if (!equals(expected, actual)) {
+            throw new SimbaException("File "
+                + file.getName()
+                + " has "
+                + file.getAlg()
+                + " hash "
+                + actual
+                + ", expected "
+                + expected, SimbaException.SimbaError.INTEGRITY_ERROR);
+        }
+    }
+
+    /**
+     * Whether a manifest file has an algorithm and hash that content can be verified against.
+     *
+     * @param file the manifest file.
+     * @return true if the file can be verified.
+     */
+    public static boolean canVerify(ManifestFile file) {
+        return file.getAlg() != null && (file.getHash() != null || file.getDigest() != null);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The digests of a file computed while it was uploaded or downloaded, keyed by the
+ * standard algorithm name, e.g. SHA-256. The digests are hex encoded.
+ */
+public class FileDigest {
+
+    private final String name;
+    private final long size;
+    private final Map<String, String> digests;
+
+    public FileDigest(String name, long size, Map<String, String> digests) {
+        this.name = name;
+        this.size = size;
+        this.digests = Collections.unmodifiableMap(digests);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of bytes that were digested.
+     *
+     * @return the size of the file.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public Map<String, String> getDigests() {
+        return digests;
+    }
+
+    /**
+     * Get the digest for an algorithm.
+     *
+     * @param algorithm the algorithm name, e.g. sha256 or SHA-256.
+     * @return the hex encoded digest, or null if it was not computed.
+     */
+    public String getDigest(String algorithm) {
+        return digests.get(Digests.normalize(algorithm));
+    }
+
+    /**
+     * Check this digest against a file in a bundle manifest, using the algorithm named
+     * in the manifest.
+     *
+     * @param file the manifest file.
+     * @return true if the digest for the manifest's algorithm was computed and equals
+     * the manifest hash, or its digest if there is no hash.
+     */
+    public boolean matches(ManifestFile file) {
+        if (file.getAlg() == null) {
+            return false;
+        }
+        String expected = file.getHash() != null ? file.getHash() : file.getDigest();
+        return Digests.equals(getDigest(file.getAlg()), expected);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("FileDigest{");
+        sb.append("name='")
+          .append(name)
+          .append('\'');
+        sb.append(", size=")
+          .append(size);
+        sb.append(", digests=")
+          .append(digests);
+        sb.append('}');
+        return sb.toString();
+    }
+}
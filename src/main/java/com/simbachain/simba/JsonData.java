@@ -23,11 +23,14 @@
 package com.simbachain.simba;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonValue;
+
 /**
  * Simple utility for building JSON objects to convert to a map.
  */
@@ -459,6 +462,17 @@ public class JsonData {
         return ret;
     }
     
+    /**
+     * Get the values without converting nested JsonData to maps.
+     * This is used when serializing directly to JSON.
+     *
+     * @return an unmodifiable view of the values.
+     */
+    @JsonValue
+    public Map<String, Object> values() {
+        return Collections.unmodifiableMap(map);
+    }
+
     public JsonData copy() {
         return new JsonData(this.map);
     }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simbachain.SimbaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory cache of bundle manifests keyed by transaction ID or hash, holding up to a
+ * maximum number of manifests with the least recently used evicted first.
+ * <p>
+ * A manifest does not change once the bundle has been created, so manifests are cached
+ * without expiry. Cached manifests are shared between callers and should not be modified.
+ * <p>
+ * Optionally a BundleCache can be used as a second, on-disk tier. Manifests are written to
+ * it as JSON and read back when they are not in memory, so they survive restarts.
+ */
+public class ManifestCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ManifestCache.class);
+
+    private static final Pattern SAFE_KEY = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,199}");
+
+    private final int maxEntries;
+    private final BundleCache diskCache;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Manifest> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a memory only cache.
+     *
+     * @param maxEntries the maximum number of manifests held in memory.
+     */
+    public ManifestCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    /**
+     * Create a cache with an on-disk tier.
+     *
+     * @param maxEntries the maximum number of manifests held in memory.
+     * @param diskCache  the on-disk tier, or null for memory only.
+     */
+    public ManifestCache(int maxEntries, BundleCache diskCache) {
+        this.maxEntries = maxEntries;
+        this.diskCache = diskCache;
+        this.entries = new LinkedHashMap<String, Manifest>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Manifest> eldest) {
+                return size() > ManifestCache.this.maxEntries;
+            }
+        };
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public BundleCache getDiskCache() {
+        return diskCache;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get a manifest from memory, or from disk if there is an on-disk tier.
+     *
+     * @param transactionIdOrHash the transaction ID or hash.
+     * @return the manifest, or null if it is not cached.
+     */
+    public Manifest get(String transactionIdOrHash) {
+        synchronized (this) {
+            Manifest manifest = this.entries.get(transactionIdOrHash);
+            if (manifest != null || this.diskCache == null) {
+                count(manifest != null);
+                return manifest;
+            }
+        }
+        Manifest manifest = readDisk(transactionIdOrHash);
+        synchronized (this) {
+            count(manifest != null);
+            if (manifest != null) {
+                this.entries.put(transactionIdOrHash, manifest);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Add a manifest, writing it to disk if there is an on-disk tier.
+     *
+     * @param transactionIdOrHash the transaction ID or hash.
+     * @param manifest            the manifest.
+     */
+    public void put(String transactionIdOrHash, Manifest manifest) {
+        synchronized (this) {
+            this.entries.put(transactionIdOrHash, manifest);
+        }
+        if (this.diskCache != null) {
+            try {
+                byte[] json = this.mapper.writeValueAsBytes(manifest);
+                this.diskCache.put(diskKey(transactionIdOrHash), temp -> Files.write(temp, json));
+            } catch (IOException e) {
+                log.warn("ManifestCache could not write manifest for " + transactionIdOrHash, e);
+            }
+        }
+    }
+
+    /**
+     * Remove a manifest from memory and disk.
+     *
+     * @param transactionIdOrHash the transaction ID or hash.
+     */
+    public void remove(String transactionIdOrHash) {
+        synchronized (this) {
+            this.entries.remove(transactionIdOrHash);
+        }
+        if (this.diskCache != null) {
+            try {
+                this.diskCache.remove(diskKey(transactionIdOrHash));
+            } catch (IOException e) {
+                log.warn("ManifestCache could not remove manifest for " + transactionIdOrHash, e);
+            }
+        }
+    }
+
+    private void count(boolean hit) {
+        if (hit) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+    }
+
+    private Manifest readDisk(String transactionIdOrHash) {
+        String key = diskKey(transactionIdOrHash);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (this.diskCache.copyTo(key, out) < 0) {
+                return null;
+            }
+            return this.mapper.readValue(out.toByteArray(), Manifest.class);
+        } catch (IOException e) {
+            log.warn("ManifestCache could not read manifest for " + transactionIdOrHash, e);
+            try {
+                this.diskCache.remove(key);
+            } catch (IOException ex) {
+                log.warn("ManifestCache could not remove manifest for " + transactionIdOrHash,
+                    ex);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Get the on-disk key. IDs that are not safe file names are hashed.
+     */
+    private static String diskKey(String transactionIdOrHash) {
+        if (SAFE_KEY.matcher(transactionIdOrHash)
+                    .matches()) {
+            return "manifest-" + transactionIdOrHash;
+        }
+        try {
+            byte[] hash = Digests.create("SHA-256")
+                                 .digest(transactionIdOrHash.getBytes(StandardCharsets.UTF_8));
+            return "manifest-" + Digests.toHex(hash);
+        } catch (SimbaException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ManifestCache{");
+        sb.append("maxEntries=")
+          .append(maxEntries);
+        sb.append(", size=")
+          .append(size());
+        sb.append(", diskCache=")
+          .append(diskCache);
+        sb.append('}');
+        return sb.toString();
+    }
+}
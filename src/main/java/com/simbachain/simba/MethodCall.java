@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.simbachain.simba.SimbaClient.UploadFile;
+
+/**
+ * One call to a method of a smart contract, for submitting many calls in a batch.
+ */
+public class MethodCall {
+
+    private final String method;
+    private final JsonData parameters;
+    private final UploadFile[] files;
+    private Map<String, String> headers = new HashMap<>();
+
+    public MethodCall(String method, JsonData parameters, UploadFile... files) {
+        this.method = method;
+        this.parameters = parameters;
+        this.files = files;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public JsonData getParameters() {
+        return parameters;
+    }
+
+    public UploadFile[] getFiles() {
+        return files;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("MethodCall{");
+        sb.append("method='")
+          .append(method)
+          .append('\'');
+        sb.append(", parameters=")
+          .append(parameters);
+        sb.append(", files=")
+          .append(Arrays.toString(files));
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -22,14 +22,24 @@
 
 package com.simbachain.simba;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import com.simbachain.SimbaException;
+import com.simbachain.simba.http.AdmissionControl;
+import com.simbachain.simba.http.HttpConfig;
+import com.simbachain.simba.http.HttpTransport;
+import com.simbachain.wallet.Signing;
 
 
 /**
@@ -54,11 +64,37 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
     public Simba(String endpoint, String contract, C config) {
         super(endpoint);
         this.contract = contract;
-        this.client = createClient();
         this.config = config;
+        this.transport = createTransport(config.getHttpConfig());
+        configure(config.getHttpConfig());
     }
 
+    /**
+     * Constructor for instances that share a transport.
+     * The instance takes ownership of one reference to the transport
+     * and releases it when close() is called.
+     *
+     * @param endpoint  the URL of a particular contract API, e.g. https://api.simbachain.com/
+     * @param contract  the name of the contract or the appname, e.g. mycontract
+     * @param config    used by subclasses.
+     * @param transport a transport that has been retained for this instance.
+     */
+    public Simba(String endpoint, String contract, C config, HttpTransport transport) {
+        super(endpoint);
+        this.contract = contract;
+        this.config = config;
+        this.transport = transport;
+        configure(config.getHttpConfig());
+    }
 
+    private void configure(HttpConfig httpConfig) {
+        setRequestCompressionThreshold(httpConfig.getRequestCompressionThreshold());
+        setHedgingPolicy(httpConfig.getHedgingPolicy());
+        setAdmissionControl(new AdmissionControl(httpConfig.getConcurrencyLimitPolicy(),
+            httpConfig.getCircuitBreakerPolicy()));
+        setRetryPolicy(httpConfig.getRetryPolicy());
+        setParallelDownloadPolicy(httpConfig.getParallelDownloadPolicy());
+    }
 
     /**
      * Get the contract or app name
@@ -119,11 +155,74 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
      * @throws SimbaException if an error occurs
      */
     public void init() throws SimbaException {
+        HttpConfig httpConfig = config.getHttpConfig();
+        if (httpConfig != null && httpConfig.getWarmUpConnections() > 0) {
+            warmUp(httpConfig.getWarmUpConnections());
+        }
         this.metadata = loadMetadata();
         if (log.isDebugEnabled()) {
             log.debug(this.metadata.toString());
         }
     }
+
+    /**
+     * Open connections to the endpoint and prime the JSON readers and the signing stack,
+     * so that the first requests are not slowed by connection setup and class loading.
+     * This is called by init() if warmUpConnections is set in the HTTP config.
+     * Connections that cannot be opened are logged and otherwise ignored.
+     *
+     * @param connections the number of connections to open.
+     * @return the number of connections that are open.
+     */
+    public int warmUp(int connections) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: Simba.warmUp: " + "connections = [" + connections + "]");
+        }
+        long start = System.nanoTime();
+        // priming is CPU bound so runs while the connections are being opened, on the
+        // signing executor and a thread of its own rather than the common pool
+        CompletableFuture<Void> priming = CompletableFuture.allOf(
+            CompletableFuture.runAsync(this::primeSigning, Signing.getExecutor()),
+            CompletableFuture.runAsync(this::primeCodecs, runnable -> {
+                Thread thread = new Thread(runnable, "simba-warm-up");
+                thread.setDaemon(true);
+                thread.start();
+            }));
+        int opened = 0;
+        try {
+            opened = this.transport.warmUp(URI.create(getEndpoint()), connections);
+        } catch (IOException | IllegalArgumentException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("WARN: Simba.warmUp: could not open connections to " + getEndpoint(), e);
+            }
+        }
+        try {
+            priming.join();
+        } catch (RuntimeException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("WARN: Simba.warmUp: priming failed", e);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Simba.warmUp: opened %d connections in %d ms", opened,
+                (System.nanoTime() - start) / 1000000));
+        }
+        return opened;
+    }
+
+    /**
+     * Load the classes and create the readers for the model types used by this client.
+     * The default does nothing.
+     */
+    protected void primeCodecs() {
+    }
+
+    /**
+     * Exercise the signing stack once, so that the crypto classes are loaded before the
+     * first transaction is signed. Nothing is sent. The default does nothing.
+     */
+    protected void primeSigning() {
+    }
     
     protected abstract Metadata loadMetadata() throws SimbaException;
 
@@ -136,6 +235,17 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
      */
     public abstract Transaction getTransaction(String txnId) throws SimbaException;
 
+    /**
+     * get a Transaction given a transaction hash, failing if the deadline passes first.
+     *
+     * @param txnId    a transaction ID
+     * @param deadline the deadline for the call.
+     * @return a Transaction object
+     * @throws SimbaException if an error occurs or the deadline passes.
+     */
+    public abstract Transaction getTransaction(String txnId, Deadline deadline)
+        throws SimbaException;
+
     /**
      * Invoke a particular method of a smart contract via the SIMBA HTTP API.
      *
@@ -162,6 +272,52 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
         Map<String, String> headers, UploadFile... files)
         throws SimbaException;
 
+    /**
+     * Invoke a particular method of a smart contract via the SIMBA HTTP API.
+     * The deadline covers both round trips and any retries. If it passes, the call fails
+     * with a SimbaException of type DEADLINE_EXCEEDED.
+     *
+     * @param method     The method name
+     * @param parameters the parameters
+     * @param deadline   the deadline for the call.
+     * @param files      optional list of UploadFile objects
+     * @return a CallResponse object containing the unique ID of the call.
+     * @throws SimbaException if an error occurs or the deadline passes.
+     */
+    public abstract CallResponse callMethod(String method,
+        JsonData parameters,
+        Deadline deadline,
+        UploadFile... files) throws SimbaException;
+
+    /**
+     * Invoke a particular method of a smart contract via the SIMBA HTTP API.
+     * The deadline covers both round trips and any retries. If it passes, the call fails
+     * with a SimbaException of type DEADLINE_EXCEEDED.
+     *
+     * @param method     The method name
+     * @param parameters The parameters
+     * @param headers    Client provided headers. Auth headers should not be included.
+     * @param deadline   the deadline for the call.
+     * @param files      optional list of UploadFile objects
+     * @return a CallResponse object containing the unique ID of the call.
+     * @throws SimbaException if an error occurs or the deadline passes.
+     */
+    public abstract CallResponse callMethod(String method,
+        JsonData parameters,
+        Map<String, String> headers,
+        Deadline deadline,
+        UploadFile... files) throws SimbaException;
+
+    /**
+     * Invoke many methods of a smart contract. All the calls are validated before any are
+     * sent, and they are then made concurrently.
+     *
+     * @param calls the calls to make.
+     * @return the result of each call, in the same order as the calls.
+     * @throws SimbaException if any call is invalid. No calls are made in this case.
+     */
+    public abstract BatchResult callMethodBatch(List<MethodCall> calls) throws SimbaException;
+
     /**
      * Get the metadata JSON file for a bundle as a string.
      *
@@ -228,6 +384,157 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
         OutputStream outputStream,
         boolean close) throws SimbaException;
 
+    /**
+     * Get a file from the bundle for a given transaction and verify it against the manifest
+     * as it is written. The bytes are hashed with the algorithm named by the manifest file
+     * while they are copied to the output stream, so verification needs no second read.
+     * If the hash or size does not match, a SimbaException with the type INTEGRITY_ERROR is
+     * thrown after the content has been written, and the output should be discarded.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param file                the file from the bundle manifest.
+     * @param outputStream        An output stream to write the file to.
+     * @param close               Whether or not to close the output stream on completion.
+     * @return the number of bytes written to the output stream
+     * @throws SimbaException if an error occurs, or the file does not match the manifest.
+     * @see #getBundleMetadataForTransaction(String)
+     */
+    public abstract long getBundleFileForTransaction(String transactionIdOrHash,
+        ManifestFile file,
+        OutputStream outputStream,
+        boolean close) throws SimbaException;
+
+    /**
+     * Get the metadata for the bundles of many transactions. The manifests are fetched
+     * concurrently and returned in the same order as the IDs.
+     *
+     * @param transactionIdsOrHashes The transaction IDs or hashes
+     * @return the manifests.
+     * @throws SimbaException if any manifest cannot be fetched.
+     */
+    public abstract List<Manifest> getBundleMetadataForTransactions(
+        List<String> transactionIdsOrHashes) throws SimbaException;
+
+    /**
+     * Read the files in the bundle for a given transaction as the bundle is downloaded.
+     * The archive is unpacked on the fly and each file is passed to the handler in turn,
+     * so the bundle is never held in memory or on disk. The manifest is fetched first, and
+     * files are matched to it by name and verified against it.
+     * The request is not retried, as the handler may already have seen some files.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param handler             the handler for each file.
+     * @return the number of files read.
+     * @throws SimbaException if an error occurs, or an INTEGRITY_ERROR if a file does not
+     *                        match the manifest.
+     */
+    public abstract int readBundleForTransaction(String transactionIdOrHash,
+        BundleEntryHandler handler) throws SimbaException;
+
+    /**
+     * Read the files in the bundle for a given transaction as the bundle is downloaded,
+     * matching them against a manifest that has already been fetched.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param manifest            the bundle manifest, or null to not match or verify files.
+     * @param handler             the handler for each file.
+     * @return the number of files read.
+     * @throws SimbaException if an error occurs, or an INTEGRITY_ERROR if a file does not
+     *                        match the manifest.
+     * @see #getBundleMetadataForTransaction(String)
+     */
+    public abstract int readBundleForTransaction(String transactionIdOrHash,
+        Manifest manifest,
+        BundleEntryHandler handler) throws SimbaException;
+
+    /**
+     * Extract the files in the bundle for a given transaction into a directory as the
+     * bundle is downloaded. Existing files are replaced. Files are verified against the
+     * manifest, and files whose names would place them outside the directory are rejected.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param directory           the directory to extract into.
+     * @return the number of files extracted.
+     * @throws SimbaException if an error occurs.
+     */
+    public abstract int extractBundleForTransaction(String transactionIdOrHash,
+        Path directory) throws SimbaException;
+
+    /**
+     * Download the bundle file for a given transaction to a file. The file is created,
+     * or replaced if it exists. If the connection fails part way through, the download
+     * resumes from the bytes already written.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param path                the file to write the bundle to.
+     * @return the size of the bundle file.
+     * @throws SimbaException if an error occurs
+     */
+    public abstract long getBundleForTransaction(String transactionIdOrHash, Path path)
+        throws SimbaException;
+
+    /**
+     * Download the bundle file for a given transaction to a file channel, starting at
+     * position zero. If the channel already contains data, for example from an interrupted
+     * download, the download resumes from the end of that data.
+     * The channel is not closed.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param channel             the channel to write the bundle to.
+     * @return the size of the bundle file.
+     * @throws SimbaException if an error occurs
+     */
+    public abstract long getBundleForTransaction(String transactionIdOrHash,
+        FileChannel channel) throws SimbaException;
+
+    /**
+     * Download a file from the bundle for a given transaction to a file. The file is
+     * created, or replaced if it exists. If the connection fails part way through, the
+     * download resumes from the bytes already written.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param fileName            the file name
+     * @param path                the file to write to.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs
+     */
+    public abstract long getBundleFileForTransaction(String transactionIdOrHash,
+        String fileName,
+        Path path) throws SimbaException;
+
+    /**
+     * Download a file from the bundle for a given transaction to a file. The file is
+     * created, or replaced if it exists. The size of the file is taken from the manifest,
+     * so if parallel downloads are enabled, a large file is fetched as several ranges at once
+     * without first asking the server for its size.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param file                the file from the bundle manifest.
+     * @param path                the file to write to.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs
+     * @see #getBundleMetadataForTransaction(String)
+     */
+    public abstract long getBundleFileForTransaction(String transactionIdOrHash,
+        ManifestFile file,
+        Path path) throws SimbaException;
+
+    /**
+     * Download a file from the bundle for a given transaction to a file channel, starting
+     * at position zero. If the channel already contains data, for example from an
+     * interrupted download, the download resumes from the end of that data.
+     * The channel is not closed.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param fileName            the file name
+     * @param channel             the channel to write to.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs
+     */
+    public abstract long getBundleFileForTransaction(String transactionIdOrHash,
+        String fileName,
+        FileChannel channel) throws SimbaException;
+
     /**
      * Query for a transactions and get back a paged result.
      *
@@ -299,6 +606,145 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
      */
     public abstract Balance getBalance() throws SimbaException;
 
+    /**
+     * get a Transaction given a transaction hash without blocking the calling thread.
+     *
+     * @param txnId a transaction ID
+     * @return a future that completes with the Transaction or a SimbaException.
+     */
+    public abstract CompletableFuture<Transaction> getTransactionAsync(String txnId);
+
+    /**
+     * Get the metadata for the bundles of many transactions without blocking the calling
+     * thread. The manifests are fetched concurrently and returned in the same order as the IDs.
+     *
+     * @param transactionIdsOrHashes The transaction IDs or hashes
+     * @return a future that completes with the manifests, or with the first SimbaException.
+     */
+    public abstract CompletableFuture<List<Manifest>> getBundleMetadataForTransactionsAsync(
+        List<String> transactionIdsOrHashes);
+
+    /**
+     * Invoke a particular method of a smart contract without blocking the calling thread.
+     *
+     * @param method     The method name
+     * @param parameters the parameters
+     * @param files      optional list of UploadFile objects
+     * @return a future that completes with the CallResponse or a SimbaException.
+     */
+    public abstract CompletableFuture<CallResponse> callMethodAsync(String method,
+        JsonData parameters,
+        UploadFile... files);
+
+    /**
+     * Invoke a particular method of a smart contract without blocking the calling thread.
+     *
+     * @param method     The method name
+     * @param parameters The parameters
+     * @param headers    Client provided headers. Auth headers should not be included.
+     * @param files      optional list of UploadFile objects
+     * @return a future that completes with the CallResponse or a SimbaException.
+     */
+    public abstract CompletableFuture<CallResponse> callMethodAsync(String method,
+        JsonData parameters,
+        Map<String, String> headers,
+        UploadFile... files);
+
+    /**
+     * Invoke a particular method of a smart contract without blocking the calling thread.
+     * The future fails with DEADLINE_EXCEEDED if the deadline passes first.
+     *
+     * @param method     The method name
+     * @param parameters The parameters
+     * @param headers    Client provided headers. Auth headers should not be included.
+     * @param deadline   the deadline for the call.
+     * @param files      optional list of UploadFile objects
+     * @return a future that completes with the CallResponse or a SimbaException.
+     */
+    public abstract CompletableFuture<CallResponse> callMethodAsync(String method,
+        JsonData parameters,
+        Map<String, String> headers,
+        Deadline deadline,
+        UploadFile... files);
+
+    /**
+     * Invoke many methods of a smart contract without blocking the calling thread.
+     * All the calls are validated before any are sent, and they are then made concurrently.
+     *
+     * @param calls the calls to make.
+     * @return a future that completes with the result of each call, in the same order as the
+     * calls, or with a SimbaException if any call is invalid.
+     */
+    public abstract CompletableFuture<BatchResult> callMethodBatchAsync(List<MethodCall> calls);
+
+    /**
+     * Get the metadata for a bundle without blocking the calling thread.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @return a future that completes with the Manifest or a SimbaException.
+     */
+    public abstract CompletableFuture<Manifest> getBundleMetadataForTransactionAsync(
+        String transactionIdOrHash);
+
+    /**
+     * Get the bundle file itself for a given transaction without blocking the calling thread.
+     * The bundle is read into memory before being written to the output stream, so
+     * this is not suitable for very large bundles.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param outputStream        An output stream to write the bundle file to.
+     * @param close               Whether or not to close the output stream on completion.
+     * @return a future that completes with the number of bytes written to the output stream.
+     */
+    public abstract CompletableFuture<Long> getBundleForTransactionAsync(
+        String transactionIdOrHash,
+        OutputStream outputStream,
+        boolean close);
+
+    /**
+     * Query for a transactions without blocking the calling thread.
+     *
+     * @return a future that completes with a PagedResult containing zero or more results.
+     */
+    public abstract CompletableFuture<PagedResult<Transaction>> getTransactionsAsync();
+
+    /**
+     * Query for a transactions on a particular method without blocking the calling thread.
+     *
+     * @param method the contract method to get transactions for.
+     * @param params the query parameters.
+     * @return a future that completes with a PagedResult containing zero or more results.
+     */
+    public abstract CompletableFuture<PagedResult<Transaction>> getTransactionsAsync(String method,
+        Query.Params params);
+
+    /**
+     * Get the next paged result if available without blocking the calling thread.
+     *
+     * @param result the current paged result.
+     * @return a future that completes with the next page or null if there is no next URL.
+     */
+    public abstract CompletableFuture<PagedResult<Transaction>> nextAsync(
+        PagedResult<Transaction> result);
+
+    /**
+     * Get the previous paged result if available without blocking the calling thread.
+     *
+     * @param result the current paged result.
+     * @return a future that completes with the previous page or null if there is no previous
+     * URL.
+     */
+    public abstract CompletableFuture<PagedResult<Transaction>> previousAsync(
+        PagedResult<Transaction> result);
+
+    /**
+     * Get the current balance of the account associated with the Wallet without blocking
+     * the calling thread.
+     *
+     * @return a future that completes with a Balance object.
+     */
+    public abstract CompletableFuture<Balance> getBalanceAsync();
+
     /**
      * Wait for a transaction to reach COMPLETED stage.
      *
@@ -326,6 +772,21 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
         return submit(txnId, 1000, 10, Transaction.State.COMPLETED);
     }
 
+    /**
+     * Wait for a transaction to reach COMPLETED stage, polling until the deadline passes.
+     * Each poll is also limited by the deadline.
+     *
+     * @param txnId    The transaction or requiest ID.
+     * @param interval Interval to poll the server.
+     * @param deadline The deadline for the wait.
+     * @return a Future object that returns a Transaction.
+     */
+    public Future<Transaction> waitForTransactionCompletion(String txnId,
+        long interval,
+        Deadline deadline) {
+        return submit(txnId, interval, deadline, Transaction.State.COMPLETED);
+    }
+
     /**
      * Wait for a transaction to reach SUBMITTED stage.
      *
@@ -353,36 +814,58 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
         return submit(txnId, 1000, 10, Transaction.State.SUBMITTED);
     }
 
+    /**
+     * Wait for a transaction to reach SUBMITTED stage, polling until the deadline passes.
+     * Each poll is also limited by the deadline.
+     *
+     * @param txnId    The transaction or requiest ID.
+     * @param interval Interval to poll the server.
+     * @param deadline The deadline for the wait.
+     * @return a Future object that returns a Transaction.
+     */
+    public Future<Transaction> waitForTransactionSubmitted(String txnId,
+        long interval,
+        Deadline deadline) {
+        return submit(txnId, interval, deadline, Transaction.State.SUBMITTED);
+    }
+
     private class TransactionCallable implements Callable<Transaction> {
 
         private String txnId;
         private long poll;
-        private int totalSeconds;
+        private Deadline deadline;
         private Transaction.State state;
 
         private TransactionCallable(String txnId,
             long poll,
-            int totalSeconds,
+            Deadline deadline,
             Transaction.State state) {
             this.txnId = txnId;
             this.poll = poll;
-            this.totalSeconds = totalSeconds;
+            this.deadline = deadline;
             this.state = state;
         }
 
         @Override
         public Transaction call() throws Exception {
             Transaction txn = null;
-            long now = System.currentTimeMillis();
-            long end = now + (totalSeconds * 1000);
-            while (now < end) {
-                txn = getTransaction(txnId);
+            while (!deadline.isExpired()) {
+                try {
+                    txn = getTransaction(txnId, deadline);
+                } catch (SimbaException e) {
+                    if (e.getType() == SimbaException.SimbaError.DEADLINE_EXCEEDED) {
+                        break;
+                    }
+                    throw e;
+                }
                 if (txn != null && (txn.getState() == state
                     || txn.getState() == Transaction.State.COMPLETED)) {
                     return txn;
                 }
-                Thread.sleep(poll);
-                now = System.currentTimeMillis();
+                long sleep = Math.min(poll, deadline.remainingMillis());
+                if (sleep > 0) {
+                    Thread.sleep(sleep);
+                }
             }
             return txn;
         }
@@ -395,9 +878,16 @@ public abstract class Simba<C extends SimbaConfig> extends SimbaClient {
         long interval,
         int totalSeconds,
         Transaction.State state) {
+        return submit(txnId, interval, Deadline.after(totalSeconds * 1000L), state);
+    }
+
+    private Future<Transaction> submit(String txnId,
+        long interval,
+        Deadline deadline,
+        Transaction.State state) {
         ExecutorService executor = Executors.newSingleThreadExecutor();
         Future<Transaction> txn = executor.submit(
-            new TransactionCallable(txnId, interval, totalSeconds, state));
+            new TransactionCallable(txnId, interval, deadline, state));
         executor.shutdown();
         return txn;
 
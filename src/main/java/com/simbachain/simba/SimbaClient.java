@@ -22,35 +22,91 @@
 
 package com.simbachain.simba;
 
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.simbachain.SimbaException;
+import com.simbachain.simba.http.AdmissionControl;
+import com.simbachain.simba.http.Compression;
+import com.simbachain.simba.http.ConnectionStatistics;
+import com.simbachain.simba.http.FileTransfer;
+import com.simbachain.simba.http.Hedging;
+import com.simbachain.simba.http.HedgingPolicy;
+import com.simbachain.simba.http.HttpConfig;
+import com.simbachain.simba.http.HttpTransport;
+import com.simbachain.simba.http.ParallelDownloadPolicy;
+import com.simbachain.simba.http.RateLimiter;
+import com.simbachain.simba.http.RetryBudget;
+import com.simbachain.simba.http.RetryPolicy;
+import com.simbachain.simba.http.Scheduling;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.MIME;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+import org.apache.http.entity.mime.content.ContentBody;
+import org.apache.http.entity.mime.content.InputStreamBody;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,9 +116,27 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class SimbaClient {
 
+    private static final Header PRAGMA_NO_CACHE = new BasicHeader("pragma", "no-cache");
+    private static final Header CACHE_CONTROL_NO_CACHE = new BasicHeader("cache-control",
+        "no-cache");
+    private static final int MAX_JSON_BUFFER = 64 * 1024;
+    private static final int MAX_DOWNLOAD_THREADS = 32;
+    private static final ExecutorService DOWNLOAD_EXECUTOR = createDownloadExecutor();
+    private static final ThreadLocal<ByteArrayOutputStream> JSON_BUFFER = ThreadLocal.withInitial(
+        () -> new ByteArrayOutputStream(1024));
+
     private String endpoint;
     protected ObjectMapper mapper = new ObjectMapper();
-    protected CloseableHttpClient client;
+    private final Map<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+    protected HttpTransport transport;
+    private int requestCompressionThreshold = -1;
+    private Hedging hedging;
+    private AdmissionControl admissionControl;
+    private RateLimiter rateLimiter;
+    private RetryPolicy retryPolicy = RetryPolicy.none();
+    private RetryBudget retryBudget = new RetryBudget(0, 1);
+    private ParallelDownloadPolicy parallelDownloadPolicy;
+    private List<String> uploadDigestAlgorithms = Collections.emptyList();
     protected Logger log = LoggerFactory.getLogger(getClass().getName());
 
     public SimbaClient(String endpoint) {
@@ -72,6 +146,151 @@ public abstract class SimbaClient {
         this.endpoint = endpoint;
     }
 
+    /**
+     * Get the size in bytes above which JSON request bodies are gzipped.
+     *
+     * @return the threshold. A negative value means request bodies are not compressed.
+     */
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    /**
+     * Set the size in bytes above which JSON request bodies are gzipped.
+     * Only enable this if the server accepts gzip encoded requests.
+     *
+     * @param requestCompressionThreshold the threshold. A negative value disables compression.
+     */
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /**
+     * Get the hedging state used for GET requests.
+     *
+     * @return the hedging state, or null if hedging is disabled.
+     */
+    public Hedging getHedging() {
+        return hedging;
+    }
+
+    /**
+     * Set the policy for hedging GET requests. If a GET is slower than recent requests
+     * to the same endpoint, a second request is sent and the first response is used.
+     * Only requests made with getHedged or getHedgedAsync are hedged.
+     *
+     * @param hedgingPolicy the policy. Null or a disabled policy turns hedging off.
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedging = hedgingPolicy != null && hedgingPolicy.isEnabled()
+                       ? new Hedging(hedgingPolicy)
+                       : null;
+    }
+
+    /**
+     * Get the admission control applied to requests, including the current concurrency
+     * limit and the state of the circuit breaker for each endpoint.
+     *
+     * @return the admission control, or null if the limiter and breakers are disabled.
+     */
+    public AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    /**
+     * Set the admission control applied to requests.
+     *
+     * @param admissionControl the admission control. Null or one with neither the limiter
+     *                         nor the breakers enabled turns admission control off.
+     */
+    public void setAdmissionControl(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl != null && admissionControl.isEnabled()
+                                ? admissionControl
+                                : null;
+    }
+
+    /**
+     * Get the rate limiter that paces requests.
+     *
+     * @return the rate limiter, or null if requests are not rate limited.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Set the rate limiter that paces requests. The limiter may be shared with other
+     * clients using the same credentials.
+     *
+     * @param rateLimiter the rate limiter, or null to send requests without pacing.
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Get the policy for retrying failed requests.
+     *
+     * @return the retry policy.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Set the policy for retrying failed requests. This also resets the retry budget.
+     *
+     * @param retryPolicy the retry policy. Null means requests are not retried.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy == null ? RetryPolicy.none() : retryPolicy;
+        this.retryBudget = new RetryBudget(this.retryPolicy.getBudgetRatio(),
+            this.retryPolicy.getMinBudget());
+    }
+
+    /**
+     * Get the policy for downloading large files as several ranges at once.
+     *
+     * @return the policy, or null if parallel downloads are disabled.
+     */
+    public ParallelDownloadPolicy getParallelDownloadPolicy() {
+        return parallelDownloadPolicy;
+    }
+
+    /**
+     * Set the policy for downloading large files as several ranges at once.
+     *
+     * @param parallelDownloadPolicy the policy. Null or a disabled policy means files are
+     *                               downloaded as a single stream.
+     */
+    public void setParallelDownloadPolicy(ParallelDownloadPolicy parallelDownloadPolicy) {
+        this.parallelDownloadPolicy = parallelDownloadPolicy != null
+            && parallelDownloadPolicy.isEnabled() ? parallelDownloadPolicy : null;
+    }
+
+    /**
+     * Get the digest algorithms computed over uploaded files.
+     *
+     * @return the algorithm names. Empty if no digests are computed.
+     */
+    public List<String> getUploadDigestAlgorithms() {
+        return uploadDigestAlgorithms;
+    }
+
+    /**
+     * Set the digest algorithms computed over uploaded files as they are written to the
+     * request, e.g. sha256 or keccak256. The digests are kept with each request, in its
+     * {@link UploadEntity}, so an UploadFile can be sent by many calls at once.
+     *
+     * @param uploadDigestAlgorithms the algorithm names. Null or empty means no digests
+     *                               are computed.
+     */
+    public void setUploadDigestAlgorithms(List<String> uploadDigestAlgorithms) {
+        this.uploadDigestAlgorithms = uploadDigestAlgorithms == null
+            ? Collections.emptyList()
+            : Collections.unmodifiableList(new ArrayList<>(uploadDigestAlgorithms));
+    }
+
     /**
      * Get the endpoint associated with this client.
      *
@@ -170,13 +389,49 @@ public abstract class SimbaClient {
     protected abstract Map<String, String> getApiHeaders() throws SimbaException;
 
     /**
-     * Create an HTTP client.
+     * Create a transport with its own connection pool.
+     *
+     * @param httpConfig the HTTP config.
+     * @return a new HttpTransport
+     */
+    protected HttpTransport createTransport(HttpConfig httpConfig) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaClient.createTransport: " + "httpConfig = [" + httpConfig + "]");
+        }
+        return HttpTransport.create(httpConfig);
+    }
+
+    /**
+     * Get the transport used by this client. This may be shared with other clients.
+     *
+     * @return the transport.
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Get a snapshot of the connection pool, including how long requests have waited
+     * to lease a connection. If the transport is shared, the statistics cover all
+     * clients sharing it.
      *
-     * @return a CloseableHttpClient
-     * @see org.apache.http.impl.client.CloseableHttpClient
+     * @return the connection statistics or null if there is no transport.
+     */
+    public ConnectionStatistics getConnectionStatistics() {
+        if (this.transport == null) {
+            return null;
+        }
+        return this.transport.getStatistics();
+    }
+
+    /**
+     * Release this client's reference to its transport. If no other client is using
+     * the transport, its connections are closed.
      */
-    protected CloseableHttpClient createClient() {
-        return HttpClients.createDefault();
+    public void close() {
+        if (this.transport != null) {
+            this.transport.release();
+        }
     }
 
     protected IOException createException(String mime, int status, String reason, String body) {
@@ -300,26 +555,9 @@ public abstract class SimbaClient {
      * @return ResponseHandler that returns an instance of the requested class
      */
     protected <C> ResponseHandler<C> jsonResponseHandler(final Class<C> cls) {
-        return response -> {
-            int status = response.getStatusLine()
-                                 .getStatusCode();
-            String reason = response.getStatusLine()
-                                    .getReasonPhrase();
-            String mime = "text/plain";
-            String responseString = "";
-            HttpEntity entity = response.getEntity();
-            if (entity != null) {
-                ContentType contentType = ContentType.getOrDefault(entity);
-                mime = contentType.getMimeType();
-                responseString = EntityUtils.toString(entity);
-            }
-            System.out.println("Simba.jsonResponseHandler JSON: " + responseString);
-            if (status >= 200 && status < 300) {
-                return mapper.readValue(responseString, cls);
-            } else {
-                throw createException(mime, status, reason, responseString);
-            }
-        };
+        final ObjectReader reader = readerFor(mapper.getTypeFactory()
+                                                    .constructType(cls));
+        return response -> readJson(response, reader);
     }
 
     /**
@@ -330,25 +568,9 @@ public abstract class SimbaClient {
      * @return ResponseHandler that returns an instance of the requested class
      */
     protected <C> ResponseHandler<C> jsonResponseHandler(final TypeReference<C> tf) {
-        return response -> {
-            int status = response.getStatusLine()
-                                 .getStatusCode();
-            String reason = response.getStatusLine()
-                                    .getReasonPhrase();
-            String mime = "text/plain";
-            String responseString = "";
-            HttpEntity entity = response.getEntity();
-            if (entity != null) {
-                ContentType contentType = ContentType.getOrDefault(entity);
-                mime = contentType.getMimeType();
-                responseString = EntityUtils.toString(entity);
-            }
-            if (status >= 200 && status < 300) {
-                return mapper.readValue(responseString, tf);
-            } else {
-                throw createException(mime, status, reason, responseString);
-            }
-        };
+        final ObjectReader reader = readerFor(mapper.getTypeFactory()
+                                                    .constructType(tf));
+        return response -> readJson(response, reader);
     }
 
     /**
@@ -359,26 +581,89 @@ public abstract class SimbaClient {
      * @return ResponseHandler that returns an instance of the requested class
      */
     protected <C> ResponseHandler<HeaderedResponse<C>> jsonHeaderResponseHandler(final TypeReference<C> tf) {
+        final ObjectReader reader = readerFor(mapper.getTypeFactory()
+                                                    .constructType(tf));
         return response -> {
-            int status = response.getStatusLine()
-                                 .getStatusCode();
-            String reason = response.getStatusLine()
-                                    .getReasonPhrase();
-            String mime = "text/plain";
-            String responseString = "";
-            HttpEntity entity = response.getEntity();
-            if (entity != null) {
-                ContentType contentType = ContentType.getOrDefault(entity);
-                mime = contentType.getMimeType();
-                responseString = EntityUtils.toString(entity);
+            C value = readJson(response, reader);
+            return new HeaderedResponse<C>(response.getAllHeaders(), value);
+        };
+    }
+
+    /**
+     * Get a reader for the given type. Readers are immutable and are cached
+     * so that deserializers are only looked up once per type.
+     *
+     * @param type the type to read.
+     * @return an ObjectReader for the type.
+     */
+    protected ObjectReader readerFor(JavaType type) {
+        return readers.computeIfAbsent(type, t -> mapper.readerFor(t));
+    }
+
+    /**
+     * Create and cache the readers for the given types. Creating a reader looks up
+     * the deserializers for the type, which loads and introspects the model classes.
+     *
+     * @param types the types to read.
+     */
+    protected void primeReaders(Class<?>... types) {
+        for (Class<?> type : types) {
+            readerFor(mapper.getTypeFactory()
+                            .constructType(type));
+        }
+    }
+
+    /**
+     * Read a JSON response. Successful responses are parsed directly from the
+     * entity stream. The body is only read into memory if the response is an error.
+     *
+     * @param response the response.
+     * @param reader   the reader for the target type.
+     * @param <C>      the target type.
+     * @return the parsed value.
+     * @throws IOException if the response is an error or cannot be parsed.
+     */
+    protected <C> C readJson(HttpResponse response, ObjectReader reader) throws IOException {
+        int status = response.getStatusLine()
+                             .getStatusCode();
+        HttpEntity entity = response.getEntity();
+        if (status >= 200 && status < 300) {
+            if (entity == null) {
+                return reader.readValue(new byte[0]);
             }
-            if (status >= 200 && status < 300) {
-                Header[] headers = response.getAllHeaders();
-                return new HeaderedResponse<C>(headers, mapper.readValue(responseString, tf));
-            } else {
-                throw createException(mime, status, reason, responseString);
+            Charset charset = ContentType.getOrDefault(entity)
+                                         .getCharset();
+            try (InputStream in = entity.getContent()) {
+                if (charset != null && !StandardCharsets.UTF_8.equals(charset)) {
+                    return reader.readValue(new InputStreamReader(in, charset));
+                }
+                return reader.readValue(in);
             }
-        };
+        }
+        throw responseException(response);
+    }
+
+    /**
+     * Create the exception for an error response. The body is read into memory.
+     *
+     * @param response the response.
+     * @return the exception.
+     * @throws IOException if the body cannot be read.
+     */
+    protected IOException responseException(HttpResponse response) throws IOException {
+        int status = response.getStatusLine()
+                             .getStatusCode();
+        String reason = response.getStatusLine()
+                                .getReasonPhrase();
+        HttpEntity entity = response.getEntity();
+        String mime = "text/plain";
+        String responseString = "";
+        if (entity != null) {
+            ContentType contentType = ContentType.getOrDefault(entity);
+            mime = contentType.getMimeType();
+            responseString = EntityUtils.toString(entity);
+        }
+        return createException(mime, status, reason, responseString);
     }
 
     /**
@@ -391,7 +676,35 @@ public abstract class SimbaClient {
      */
     protected ResponseHandler<Long> streamResponseHandler(final OutputStream outputStream,
         final boolean close) {
+        return streamResponseHandler(outputStream, close, null);
+    }
+
+    /**
+     * Create a response handler that writes to a stream and verifies the bytes against a
+     * file from a bundle manifest as they are written. The bytes are hashed with the algorithm
+     * named by the manifest file, so no second pass over the data is needed. If the hash or
+     * size does not match, the handler fails with an INTEGRITY_ERROR once the body has been
+     * written, and the output should be discarded.
+     * <p>
+     * The handler can only be used for one response. A second response would be written
+     * after the first, and could pass verification while the stream holds both, so it
+     * fails with an INTEGRITY_ERROR instead.
+     *
+     * @param outputStream an output stream to write the response to.
+     * @param close        whether or not to close the output stream on completion.
+     * @param verify       the manifest file to verify against, or null to not verify.
+     * @return ResponseHandler that returns the number of bytes written.
+     */
+    protected ResponseHandler<Long> streamResponseHandler(final OutputStream outputStream,
+        final boolean close,
+        final ManifestFile verify) {
+        final AtomicBoolean used = new AtomicBoolean();
         return response -> {
+            if (!used.compareAndSet(false, true)) {
+                throw new SimbaException(
+                    "Stream response handler used for more than one response",
+                    SimbaException.SimbaError.INTEGRITY_ERROR);
+            }
             int status = response.getStatusLine()
                                  .getStatusCode();
             HttpEntity entity = response.getEntity();
@@ -405,13 +718,21 @@ public abstract class SimbaClient {
                     return 0L;
                 } else {
                     try {
+                        MessageDigest digest = verify == null ? null
+                            : Digests.create(verify.getAlg());
                         long total = 0;
                         byte[] tmp = new byte[4096];
                         int c;
                         while ((c = inStream.read(tmp)) != -1) {
                             outputStream.write(tmp, 0, c);
+                            if (digest != null) {
+                                digest.update(tmp, 0, c);
+                            }
                             total += c;
                         }
+                        if (digest != null) {
+                            Digests.verify(verify, total, digest.digest());
+                        }
                         return total;
                     } finally {
                         if (close) {
@@ -434,6 +755,248 @@ public abstract class SimbaClient {
         };
     }
 
+    /**
+     * Download a response body to a file. The file is created, or truncated if it exists.
+     * If the connection fails part way through, the download is retried according to the
+     * retry policy and resumes from the bytes already written.
+     * If parallel downloads are enabled, the first segment is requested on its own. Its
+     * Content-Range gives the size of the file, and the rest of a larger file is fetched
+     * as several ranges at once. A file no larger than a segment, or from a server that
+     * does not support ranges, takes a single request.
+     *
+     * @param endpoint the endpoint.
+     * @param path     the file to write to.
+     * @param deadline the deadline for the download, including any retries.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs.
+     */
+    protected long download(String endpoint, Path path, Deadline deadline) throws SimbaException {
+        ParallelDownloadPolicy policy = this.parallelDownloadPolicy;
+        if (policy == null) {
+            return download(endpoint, path, -1, deadline);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: Simba.download: "
+                + "endpoint = ["
+                + endpoint
+                + "], path = ["
+                + path
+                + "], deadline = ["
+                + deadline
+                + "]");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long segmentSize = policy.getSegmentSize();
+            HttpGet get = createGet(endpoint);
+            get.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+            ResumableDownload first = new ResumableDownload(get, channel, 0, segmentSize - 1,
+                true);
+            execute("GET", get, first, deadline);
+            long size = first.getSize();
+            if (first.isComplete()) {
+                return size;
+            }
+            if (size < 0) {
+                // the size is unknown, so fetch the rest as a single stream
+                return download(endpoint, channel, deadline);
+            }
+            return downloadSegments(endpoint, channel, segmentSize, size, policy, deadline);
+        } catch (SimbaException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SimbaException("Could not write to " + path,
+                SimbaException.SimbaError.FILE_ERROR, e);
+        }
+    }
+
+    /**
+     * Download a response body of a known size to a file. The file is created, or truncated
+     * if it exists. If parallel downloads are enabled and the file is larger than a segment,
+     * the segments are fetched at the same time and written to their place in the file.
+     * Otherwise the file is downloaded as a single stream.
+     *
+     * @param endpoint the endpoint.
+     * @param path     the file to write to.
+     * @param size     the size of the file, or -1 if unknown.
+     * @param deadline the deadline for the download, including any retries.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs.
+     */
+    protected long download(String endpoint, Path path, long size, Deadline deadline)
+        throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: Simba.download: "
+                + "endpoint = ["
+                + endpoint
+                + "], path = ["
+                + path
+                + "], size = ["
+                + size
+                + "], deadline = ["
+                + deadline
+                + "]");
+        }
+        ParallelDownloadPolicy policy = this.parallelDownloadPolicy;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (policy != null && size > policy.getSegmentSize()) {
+                try {
+                    return downloadSegments(endpoint, channel, 0, size, policy, deadline);
+                } catch (SimbaException e) {
+                    if (e.getHttpStatus() != HttpStatus.SC_OK) {
+                        throw e;
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug("EXIT: Simba.download: ranges not supported, downloading "
+                            + endpoint
+                            + " as a single stream");
+                    }
+                    channel.truncate(0);
+                }
+            }
+            return download(endpoint, channel, deadline);
+        } catch (SimbaException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SimbaException("Could not write to " + path,
+                SimbaException.SimbaError.FILE_ERROR, e);
+        }
+    }
+
+    /**
+     * Download a response body to a file channel. The body is written from position zero.
+     * Data already in the channel is treated as the start of an earlier, incomplete
+     * download, which is resumed with a Range request from the end of the existing data.
+     * If the connection fails part way through, the download is retried according to the
+     * retry policy and resumes from the bytes already written.
+     * The channel is not closed.
+     *
+     * @param endpoint the endpoint.
+     * @param channel  the channel to write to.
+     * @param deadline the deadline for the download, including any retries.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs.
+     */
+    protected long download(String endpoint, FileChannel channel, Deadline deadline)
+        throws SimbaException {
+        HttpGet get = createGet(endpoint);
+        // ranges apply to the encoded body, so ask for the body as it is stored
+        get.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+        ResumableDownload download;
+        try {
+            download = new ResumableDownload(get, channel, channel.size(), -1);
+        } catch (IOException e) {
+            throw new SimbaException("Could not read file size", SimbaException.SimbaError.FILE_ERROR,
+                e);
+        }
+        return execute("GET", get, download, deadline);
+    }
+
+    /**
+     * Fetch the segments of a file from a position to the end at the same time and write
+     * each to its place in the channel. The file is extended to its full size first.
+     * The segments are fetched on the shared download executor, with at most the policy's
+     * number of connections in use for this file. If a segment fails, the other segments
+     * are aborted and this returns once none of them are writing to the channel.
+     *
+     * @throws SimbaException with a status of 200 if the server does not support ranges.
+     */
+    private long downloadSegments(String endpoint,
+        FileChannel channel,
+        long from,
+        long size,
+        ParallelDownloadPolicy policy,
+        final Deadline deadline) throws SimbaException, IOException {
+        long segmentSize = policy.getSegmentSize();
+        channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        final List<ResumableDownload> downloads = new ArrayList<>();
+        for (long start = from; start < size; start += segmentSize) {
+            long end = Math.min(size, start + segmentSize) - 1;
+            HttpGet get = createGet(endpoint);
+            get.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+            downloads.add(new ResumableDownload(get, channel, start, end));
+        }
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+        int workers = Math.max(1, Math.min(downloads.size(), policy.getConnections()));
+        List<Future<Void>> running = new ArrayList<>(workers);
+        boolean complete = false;
+        try {
+            for (int w = 0; w < workers; w++) {
+                running.add(DOWNLOAD_EXECUTOR.submit(() -> {
+                    int i;
+                    while (!failed.get() && (i = next.getAndIncrement()) < downloads.size()) {
+                        ResumableDownload download = downloads.get(i);
+                        try {
+                            execute("GET", download.request, download, deadline);
+                        } catch (SimbaException | RuntimeException e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : running) {
+                worker.get();
+            }
+            complete = true;
+            return size;
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new SimbaException("Interrupted during download of " + endpoint,
+                SimbaException.SimbaError.EXECUTION_ERROR, e);
+        } catch (ExecutionException e) {
+            throw getException("GET", e.getCause());
+        } finally {
+            if (!complete) {
+                // workers are not interrupted, as that would close the shared channel
+                failed.set(true);
+                for (ResumableDownload download : downloads) {
+                    download.cancel();
+                }
+                awaitWorkers(running);
+            }
+        }
+    }
+
+    /**
+     * Wait until the workers of a failed download have stopped writing to its channel.
+     */
+    private void awaitWorkers(List<Future<Void>> workers) {
+        boolean interrupted = false;
+        for (Future<Void> worker : workers) {
+            while (true) {
+                try {
+                    worker.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+    }
+
+    private static ExecutorService createDownloadExecutor() {
+        final AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_DOWNLOAD_THREADS,
+            MAX_DOWNLOAD_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "simba-download-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Create an HTTP entity.
      *
@@ -451,6 +1014,7 @@ public abstract class SimbaClient {
 
         if (files != null && files.length > 0) {
             MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+            AtomicReferenceArray<FileDigest> digests = new AtomicReferenceArray<>(files.length);
             for (String key : data.keySet()) {
                 Object d = data.get(key);
                 if (d instanceof List || d.getClass()
@@ -467,14 +1031,15 @@ public abstract class SimbaClient {
             }
             for (int i = 0; i < files.length; i++) {
                 UploadFile file = files[i];
-                builder.addBinaryBody(String.format("file_%s", i), file.getFile(),
-                    ContentType.create(file.getMimeType()), file.getName());
+                builder.addPart(String.format("file_%s", i),
+                    file.toContentBody(this.uploadDigestAlgorithms, digests, i));
             }
-            return builder.build();
+            return new UploadEntity(builder.build(), digests);
         } else {
             try {
                 String json = mapper.writeValueAsString(data);
-                return new StringEntity(json, ContentType.APPLICATION_JSON);
+                return Compression.compress(new StringEntity(json, ContentType.APPLICATION_JSON),
+                    this.requestCompressionThreshold);
             } catch (JsonProcessingException e) {
                 throw new SimbaException("Error parsing JSON",
                     SimbaException.SimbaError.MESSAGE_ERROR, e);
@@ -497,51 +1062,244 @@ public abstract class SimbaClient {
         ResponseHandler<R> handler,
         Map<String, String> headers,
         UploadFile... files) throws SimbaException {
-        return post(endpoint, data.asMap(), handler, headers, files);
-    }
-
-    protected <R> R post(String endpoint, Map<String, Object> data, ResponseHandler<R> handler)
-        throws SimbaException {
-        return post(endpoint, data, handler, new HashMap<>());
+        return post(endpoint, data, Collections.emptyMap(), handler, headers, files);
     }
 
+    /**
+     * POST JSON data together with additional top level fields. The fields are written
+     * after the data and replace any data values with the same key, so the data does not
+     * need to be copied.
+     *
+     * @param endpoint      the endpoint.
+     * @param data          the data.
+     * @param fields        additional fields.
+     * @param handler       the response handler.
+     * @param clientHeaders client provided headers, may be null.
+     * @param files         files if any.
+     * @param <R>           the return type of the handler.
+     * @return the value returned by the handler.
+     * @throws SimbaException if an error occurs
+     */
     protected <R> R post(String endpoint,
-        Map<String, Object> data,
+        JsonData data,
+        Map<String, ?> fields,
         ResponseHandler<R> handler,
         Map<String, String> clientHeaders,
         UploadFile... files) throws SimbaException {
-        if (log.isDebugEnabled()) {
-            Object f = files == null ? "" : Arrays.asList(files);
-            log.debug("ENTER: Simba.post: "
-                + "endpoint = ["
-                + endpoint
+        return post(endpoint, data, fields, handler, clientHeaders, defaultDeadline(), files);
+    }
+
+    /**
+     * POST JSON data together with additional top level fields, completing
+     * before the given deadline.
+     *
+     * @param endpoint      the endpoint.
+     * @param data          the data.
+     * @param fields        additional fields.
+     * @param handler       the response handler.
+     * @param clientHeaders client provided headers, may be null.
+     * @param deadline      the deadline for the request.
+     * @param files         files if any.
+     * @param <R>           the return type of the handler.
+     * @return the value returned by the handler.
+     * @throws SimbaException if an error occurs or the deadline passes.
+     */
+    protected <R> R post(String endpoint,
+        JsonData data,
+        Map<String, ?> fields,
+        ResponseHandler<R> handler,
+        Map<String, String> clientHeaders,
+        Deadline deadline,
+        UploadFile... files) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            Object f = files == null ? "" : Arrays.asList(files);
+            log.debug("ENTER: Simba.post: "
+                + "endpoint = ["
+                + endpoint
                 + "], data = ["
                 + data
+                + "], fields = ["
+                + fields
                 + "], handler = ["
                 + handler
+                + "], deadline = ["
+                + deadline
                 + "], files = ["
                 + f
                 + "]");
         }
 
+        HttpPost httpPost = createPost(endpoint, data, fields, clientHeaders, files);
+        return execute("POST", httpPost, handler, deadline);
+    }
+
+    protected <R> R post(String endpoint, Map<String, Object> data, ResponseHandler<R> handler)
+        throws SimbaException {
+        return post(endpoint, data, handler, new HashMap<>());
+    }
+
+    protected <R> R post(String endpoint,
+        Map<String, Object> data,
+        ResponseHandler<R> handler,
+        Map<String, String> clientHeaders,
+        UploadFile... files) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            Object f = files == null ? "" : Arrays.asList(files);
+            log.debug("ENTER: Simba.post: "
+                + "endpoint = ["
+                + endpoint
+                + "], data = ["
+                + data
+                + "], handler = ["
+                + handler
+                + "], files = ["
+                + f
+                + "]");
+        }
+
+        HttpPost httpPost = createPost(endpoint, data, clientHeaders, files);
+        return execute("POST", httpPost, handler, defaultDeadline());
+    }
+
+    /**
+     * Create a POST request with the API headers and any client headers set.
+     *
+     * @param endpoint      the endpoint.
+     * @param data          the data.
+     * @param clientHeaders client provided headers, may be null.
+     * @param files         files if any.
+     * @return an HttpPost
+     * @throws SimbaException if an error occurs
+     */
+    protected HttpPost createPost(String endpoint,
+        Map<String, Object> data,
+        Map<String, String> clientHeaders,
+        UploadFile... files) throws SimbaException {
         HttpPost httpPost = new HttpPost(endpoint);
         httpPost.setEntity(createEntity(data, files));
-        Map<String, String> headers = getApiHeaders();
-        if (headers != null) {
-            for (String s : headers.keySet()) {
-                httpPost.setHeader(s, headers.get(s));
+        setHeaders(httpPost, clientHeaders);
+        return httpPost;
+    }
+
+    /**
+     * Create a POST request for JSON data and additional top level fields.
+     * Without files, the JSON is written directly to a byte array entity.
+     *
+     * @param endpoint      the endpoint.
+     * @param data          the data.
+     * @param fields        additional fields that replace data values with the same key.
+     * @param clientHeaders client provided headers, may be null.
+     * @param files         files if any.
+     * @return an HttpPost
+     * @throws SimbaException if an error occurs
+     */
+    protected HttpPost createPost(String endpoint,
+        JsonData data,
+        Map<String, ?> fields,
+        Map<String, String> clientHeaders,
+        UploadFile... files) throws SimbaException {
+        HttpPost httpPost = new HttpPost(endpoint);
+        if (files != null && files.length > 0) {
+            Map<String, Object> map = data.asMap();
+            map.putAll(fields);
+            httpPost.setEntity(createEntity(map, files));
+        } else {
+            httpPost.setEntity(createJsonEntity(data, fields));
+        }
+        setHeaders(httpPost, clientHeaders);
+        return httpPost;
+    }
+
+    /**
+     * Write JSON data and additional top level fields to a repeatable entity.
+     * The JSON is generated into a per-thread buffer that is reused between requests.
+     *
+     * @param data   the data.
+     * @param fields additional fields that replace data values with the same key.
+     * @return HttpEntity
+     * @throws SimbaException if an error occurs
+     */
+    protected HttpEntity createJsonEntity(JsonData data, Map<String, ?> fields)
+        throws SimbaException {
+        ByteArrayOutputStream buffer = JSON_BUFFER.get();
+        buffer.reset();
+        try (JsonGenerator generator = mapper.getFactory()
+                                             .createGenerator(buffer)) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Object> entry : data.values()
+                                                       .entrySet()) {
+                if (!fields.containsKey(entry.getKey())) {
+                    generator.writeObjectField(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<String, ?> entry : fields.entrySet()) {
+                generator.writeObjectField(entry.getKey(), entry.getValue());
             }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new SimbaException("Error writing JSON", SimbaException.SimbaError.MESSAGE_ERROR,
+                e);
+        }
+        HttpEntity entity = new ByteArrayEntity(buffer.toByteArray(),
+            ContentType.APPLICATION_JSON);
+        if (buffer.size() > MAX_JSON_BUFFER) {
+            JSON_BUFFER.remove();
+        }
+        return Compression.compress(entity, this.requestCompressionThreshold);
+    }
+
+    /**
+     * Get the API headers as an array. The array is set on every request, so
+     * subclasses with fixed headers can build it once.
+     *
+     * @return the API headers.
+     * @throws SimbaException if an error occurs
+     */
+    protected Header[] getApiHeaderArray() throws SimbaException {
+        return toHeaders(getApiHeaders());
+    }
+
+    /**
+     * Convert a map of headers to an array.
+     *
+     * @param headers a map of header names and values, may be null.
+     * @return the headers.
+     */
+    protected static Header[] toHeaders(Map<String, String> headers) {
+        if (headers == null) {
+            return new Header[0];
+        }
+        Header[] array = new Header[headers.size()];
+        int i = 0;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            array[i++] = new BasicHeader(header.getKey(), header.getValue());
         }
+        return array;
+    }
+
+    private void setHeaders(HttpRequestBase request, Map<String, String> clientHeaders)
+        throws SimbaException {
+        request.setHeaders(getApiHeaderArray());
         if (clientHeaders != null) {
-            for (String s : clientHeaders.keySet()) {
-                httpPost.setHeader(s, clientHeaders.get(s));
+            for (Map.Entry<String, String> header : clientHeaders.entrySet()) {
+                request.setHeader(header.getKey(), header.getValue());
             }
         }
-        try {
-            return this.client.execute(httpPost, handler);
-        } catch (Exception e) {
-            throw getException("POST", e);
-        }
+    }
+
+    /**
+     * Create a GET request with the API headers set.
+     *
+     * @param endpoint the endpoint.
+     * @return an HttpGet
+     * @throws SimbaException if an error occurs
+     */
+    protected HttpGet createGet(String endpoint) throws SimbaException {
+        HttpGet httpGet = new HttpGet(endpoint);
+        httpGet.setHeaders(getApiHeaderArray());
+        httpGet.setHeader(PRAGMA_NO_CACHE);
+        httpGet.setHeader(CACHE_CONTROL_NO_CACHE);
+        return httpGet;
     }
 
     protected <R> R post(String endpoint, JsonData data, ResponseHandler<R> handler)
@@ -553,35 +1311,736 @@ public abstract class SimbaClient {
         JsonData data,
         ResponseHandler<R> handler,
         UploadFile... files) throws SimbaException {
-        return post(endpoint, data.asMap(), handler, new HashMap<>(), files);
+        return post(endpoint, data, Collections.emptyMap(), handler, new HashMap<>(), files);
     }
 
     protected <R> R get(String endpoint, ResponseHandler<R> handler) throws SimbaException {
+        return get(endpoint, handler, defaultDeadline());
+    }
+
+    /**
+     * Perform a GET that must complete before the given deadline.
+     *
+     * @param endpoint the endpoint.
+     * @param handler  the response handler.
+     * @param deadline the deadline for the request.
+     * @param <R>      the return type of the handler.
+     * @return the value returned by the handler.
+     * @throws SimbaException if an error occurs or the deadline passes.
+     */
+    protected <R> R get(String endpoint, ResponseHandler<R> handler, Deadline deadline)
+        throws SimbaException {
         if (log.isDebugEnabled()) {
             log.debug("ENTER: Simba.get: "
                 + "endpoint = ["
                 + endpoint
                 + "], handler = ["
                 + handler
+                + "], deadline = ["
+                + deadline
                 + "]");
         }
-        HttpGet httpGet = new HttpGet(endpoint);
-        Map<String, String> headers = getApiHeaders();
-        if (headers != null) {
-            for (String s : headers.keySet()) {
-                httpGet.setHeader(s, headers.get(s));
+        HttpGet httpGet = createGet(endpoint);
+        return execute("GET", httpGet, handler, deadline);
+    }
+
+    protected <R> R getHedged(String endpoint, ResponseHandler<R> handler)
+        throws SimbaException {
+        return getHedged(endpoint, handler, defaultDeadline());
+    }
+
+    /**
+     * Perform a GET that is hedged if a hedging policy is set. A hedge runs the handler
+     * a second time, possibly at the same time as the first, so this is only for
+     * idempotent requests whose handler reads the whole response into a new value.
+     * Never use it with a handler that writes to a stream.
+     *
+     * @param endpoint the endpoint.
+     * @param handler  the response handler.
+     * @param deadline the deadline for the request.
+     * @param <R>      the return type of the handler.
+     * @return the value returned by the handler.
+     * @throws SimbaException if an error occurs or the deadline passes.
+     */
+    protected <R> R getHedged(String endpoint, ResponseHandler<R> handler, Deadline deadline)
+        throws SimbaException {
+        if (this.hedging == null) {
+            return get(endpoint, handler, deadline);
+        }
+        return await("GET", hedgedGet(endpoint, handler, deadline));
+    }
+
+    /**
+     * Perform a GET via the hedging policy. Each attempt is a separate request.
+     */
+    private <R> CompletableFuture<R> hedgedGet(final String endpoint,
+        final ResponseHandler<R> handler,
+        final Deadline deadline) {
+        String key;
+        try {
+            key = Hedging.endpointKey(URI.create(endpoint));
+        } catch (IllegalArgumentException e) {
+            return failedFuture(getException("GET", e));
+        }
+        return this.hedging.execute(key, () -> {
+            try {
+                return executeAsync("GET", createGet(endpoint), handler, deadline);
+            } catch (SimbaException e) {
+                return failedFuture(e);
             }
+        }, deadline);
+    }
+
+    /**
+     * Wait for a future on the calling thread.
+     *
+     * @param method   the HTTP method or operation, used in messages.
+     * @param future   the future.
+     * @param <R>      the type of the result.
+     * @return the result.
+     * @throws SimbaException if the future fails or the thread is interrupted.
+     */
+    protected <R> R await(String method, CompletableFuture<R> future) throws SimbaException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            future.cancel(true);
+            throw new SimbaException("Interrupted during HTTP " + method,
+                SimbaException.SimbaError.EXECUTION_ERROR, e);
+        } catch (ExecutionException e) {
+            throw getException(method, unwrap(e));
+        }
+    }
+
+    /**
+     * Get the deadline applied to calls that are not given one explicitly.
+     * Subclasses create this from their config. The default is no deadline.
+     *
+     * @return a new deadline starting now.
+     */
+    protected Deadline defaultDeadline() {
+        return Deadline.none();
+    }
+
+    protected <R> R getOnce(String endpoint, ResponseHandler<R> handler) throws SimbaException {
+        return getOnce(endpoint, handler, defaultDeadline());
+    }
+
+    /**
+     * Perform a GET without retries or hedging. This is for handlers that pass the response
+     * on as it is read, so a second attempt would repeat work the caller has already seen.
+     *
+     * @param endpoint the endpoint.
+     * @param handler  the response handler.
+     * @param deadline the deadline for the request.
+     * @param <R>      the return type of the handler.
+     * @return the value returned by the handler.
+     * @throws SimbaException if an error occurs or the deadline passes.
+     */
+    protected <R> R getOnce(String endpoint, ResponseHandler<R> handler, Deadline deadline)
+        throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: Simba.getOnce: "
+                + "endpoint = ["
+                + endpoint
+                + "], handler = ["
+                + handler
+                + "], deadline = ["
+                + deadline
+                + "]");
+        }
+        return executeOnce("GET", createGet(endpoint), handler, deadline);
+    }
+
+    protected <R> CompletableFuture<R> getOnceAsync(String endpoint, ResponseHandler<R> handler) {
+        return getOnceAsync(endpoint, handler, defaultDeadline());
+    }
+
+    /**
+     * Perform a GET without retries or hedging, and without blocking the calling thread.
+     * As with getOnce, this is for handlers that pass the response on as it is read.
+     *
+     * @param endpoint the endpoint.
+     * @param handler  the response handler.
+     * @param deadline the deadline for the request.
+     * @param <R>      the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    protected <R> CompletableFuture<R> getOnceAsync(String endpoint,
+        ResponseHandler<R> handler,
+        Deadline deadline) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: Simba.getOnceAsync: "
+                + "endpoint = ["
+                + endpoint
+                + "], handler = ["
+                + handler
+                + "], deadline = ["
+                + deadline
+                + "]");
         }
-        httpGet.setHeader("pragma", "no-cache");
-        httpGet.setHeader("cache-control", "no-cache");
         try {
-            return this.client.execute(httpGet, handler);
+            return pacedAsync("GET", createGet(endpoint), handler, deadline);
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+    }
+
+    /**
+     * Execute a request, retrying according to the retry policy. The same request and
+     * entity are sent on each attempt, so the body is only encoded once. Non-repeatable
+     * entities are never retried.
+     *
+     * @param method   the HTTP method, used in messages.
+     * @param request  the request.
+     * @param handler  the response handler.
+     * @param deadline the deadline for all attempts.
+     * @param <R>      the return type of the handler.
+     * @return the value returned by the handler.
+     * @throws SimbaException if the last attempt fails or the deadline passes.
+     */
+    protected <R> R execute(String method,
+        HttpRequestBase request,
+        ResponseHandler<R> handler,
+        Deadline deadline) throws SimbaException {
+        this.retryBudget.deposit();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return executeOnce(method, request, handler, deadline);
+            } catch (SimbaException e) {
+                long delay = retryDelay(method, request, e, attempt, deadline);
+                if (delay < 0) {
+                    throw e;
+                }
+                deadline.sleep(delay, "retry of " + method + " " + request.getURI());
+                request.reset();
+            }
+        }
+    }
+
+    /**
+     * Get the delay before retrying a failed attempt.
+     *
+     * @return the delay in milliseconds, or -1 if the request should not be retried.
+     */
+    private long retryDelay(String method,
+        HttpRequestBase request,
+        SimbaException error,
+        int attempt,
+        Deadline deadline) {
+        if (attempt >= this.retryPolicy.getMaxAttempts() || !this.retryPolicy.isRetryable(
+            method, error)) {
+            return -1;
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && !entity.isRepeatable()) {
+                return -1;
+            }
+        }
+        long delay = Math.max(this.retryPolicy.backoffMillis(attempt),
+            error.getRetryAfterMillis());
+        if (!deadline.allows(delay) || !this.retryBudget.tryWithdraw()) {
+            return -1;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("EXIT: Simba.execute: retrying "
+                + method
+                + " "
+                + request.getURI()
+                + " in "
+                + delay
+                + "ms after attempt "
+                + attempt
+                + ": "
+                + error.getMessage());
+        }
+        return delay;
+    }
+
+    /**
+     * Execute a request once, limiting its timeouts to the time remaining before the
+     * deadline and aborting it if the deadline passes while it is in progress.
+     */
+    private <R> R executeOnce(String method,
+        HttpRequestBase request,
+        ResponseHandler<R> handler,
+        Deadline deadline) throws SimbaException {
+        deadline.check(method + " " + request.getURI());
+        if (this.rateLimiter != null) {
+            long wait = this.rateLimiter.reserve();
+            if (wait > 0) {
+                deadline.sleep(wait, "rate limit wait for " + method + " " + request.getURI());
+            }
+        }
+        AdmissionControl.Permit permit = admit(request);
+        applyDeadline(request, deadline);
+        ScheduledFuture<?> abort = null;
+        if (!deadline.isInfinite()) {
+            abort = Scheduling.schedule(request::abort, deadline.remainingMillis());
+        }
+        Exception failure = null;
+        try {
+            return this.transport.execute(request, observe(handler, permit));
         } catch (Exception e) {
-            throw getException("GET", e);
+            failure = e;
+            if (isTimeout(e) && deadline.isExpired()) {
+                SimbaException ex = deadline.exceeded(method + " " + request.getURI());
+                ex.initCause(e);
+                failure = ex;
+                throw ex;
+            }
+            throw getException(method, e);
+        } finally {
+            if (abort != null) {
+                abort.cancel(false);
+            }
+            if (permit != null) {
+                permit.release(failure);
+            }
+        }
+    }
+
+    /**
+     * Wrap a handler to pass responses to the rate limiter and keep the Retry-After
+     * delay of error responses on the exception thrown by the handler. The admission
+     * permit, if any, is told when the headers arrive so that the time spent streaming
+     * the body is not counted as latency.
+     */
+    private <R> ResponseHandler<R> observe(final ResponseHandler<R> handler,
+        final AdmissionControl.Permit permit) {
+        return response -> {
+            if (permit != null) {
+                permit.onResponse();
+            }
+            if (this.rateLimiter != null) {
+                this.rateLimiter.onResponse(response);
+            }
+            int status = response.getStatusLine()
+                                 .getStatusCode();
+            try {
+                return handler.handleResponse(response);
+            } catch (HttpResponseException e) {
+                long retryAfter = RateLimiter.retryAfterMillis(response);
+                if (status != 429 && retryAfter < 0) {
+                    throw e;
+                }
+                SimbaException ex = new SimbaException(e.getMessage(),
+                    status == 429
+                    ? SimbaException.SimbaError.RATE_LIMITED
+                    : SimbaException.SimbaError.HTTP_ERROR, e);
+                ex.setHttpStatus(status);
+                ex.setRetryAfterMillis(retryAfter);
+                throw ex;
+            } catch (SimbaException e) {
+                long retryAfter = RateLimiter.retryAfterMillis(response);
+                if (retryAfter >= 0) {
+                    e.setRetryAfterMillis(retryAfter);
+                }
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Admit a request via the admission control, if enabled.
+     *
+     * @return a permit to release when the request completes, or null.
+     */
+    private AdmissionControl.Permit admit(HttpRequestBase request) throws SimbaException {
+        if (this.admissionControl == null) {
+            return null;
+        }
+        return this.admissionControl.acquire(Hedging.endpointKey(request.getURI()));
+    }
+
+    private void applyDeadline(HttpRequestBase request, Deadline deadline) {
+        if (deadline.isInfinite()) {
+            return;
+        }
+        HttpConfig config = this.transport.getConfig();
+        request.setConfig(RequestConfig.custom()
+                                       .setConnectTimeout(
+                                           deadline.timeout(config.getConnectTimeout()))
+                                       .setSocketTimeout(deadline.timeout(config.getSocketTimeout()))
+                                       .setConnectionRequestTimeout(
+                                           deadline.timeout(config.getConnectionRequestTimeout()))
+                                       .build());
+    }
+
+    /**
+     * Whether an exception could have been caused by a deadline rather than a response.
+     */
+    private static boolean isTimeout(Throwable e) {
+        return !(e instanceof SimbaException) && !(e instanceof HttpResponseException);
+    }
+
+    /**
+     * Perform a GET without blocking the calling thread.
+     *
+     * @param endpoint the endpoint.
+     * @param handler  the response handler.
+     * @param <R>      the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    protected <R> CompletableFuture<R> getAsync(String endpoint, ResponseHandler<R> handler) {
+        return getAsync(endpoint, handler, defaultDeadline());
+    }
+
+    /**
+     * Perform a GET without blocking the calling thread. The future fails with
+     * DEADLINE_EXCEEDED if the deadline passes first.
+     *
+     * @param endpoint the endpoint.
+     * @param handler  the response handler.
+     * @param deadline the deadline for the request.
+     * @param <R>      the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    protected <R> CompletableFuture<R> getAsync(String endpoint,
+        ResponseHandler<R> handler,
+        Deadline deadline) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: Simba.getAsync: "
+                + "endpoint = ["
+                + endpoint
+                + "], handler = ["
+                + handler
+                + "], deadline = ["
+                + deadline
+                + "]");
+        }
+        try {
+            return executeAsync("GET", createGet(endpoint), handler, deadline);
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+    }
+
+    protected <R> CompletableFuture<R> getHedgedAsync(String endpoint,
+        ResponseHandler<R> handler) {
+        return getHedgedAsync(endpoint, handler, defaultDeadline());
+    }
+
+    /**
+     * Perform a GET that is hedged if a hedging policy is set, without blocking the
+     * calling thread. As with getHedged, the handler must read the whole response into
+     * a new value and must not write to a stream.
+     *
+     * @param endpoint the endpoint.
+     * @param handler  the response handler.
+     * @param deadline the deadline for the request.
+     * @param <R>      the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    protected <R> CompletableFuture<R> getHedgedAsync(String endpoint,
+        ResponseHandler<R> handler,
+        Deadline deadline) {
+        if (this.hedging == null) {
+            return getAsync(endpoint, handler, deadline);
+        }
+        return hedgedGet(endpoint, handler, deadline);
+    }
+
+    protected <R> CompletableFuture<R> postAsync(String endpoint,
+        JsonData data,
+        ResponseHandler<R> handler) {
+        return postAsync(endpoint, data, Collections.emptyMap(), handler, new HashMap<>());
+    }
+
+    protected <R> CompletableFuture<R> postAsync(String endpoint,
+        JsonData data,
+        ResponseHandler<R> handler,
+        Map<String, String> headers,
+        UploadFile... files) {
+        return postAsync(endpoint, data, Collections.emptyMap(), handler, headers, files);
+    }
+
+    /**
+     * POST JSON data together with additional top level fields without blocking the
+     * calling thread.
+     *
+     * @param endpoint      the endpoint.
+     * @param data          the data.
+     * @param fields        additional fields that replace data values with the same key.
+     * @param handler       the response handler.
+     * @param clientHeaders client provided headers, may be null.
+     * @param files         files if any.
+     * @param <R>           the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    protected <R> CompletableFuture<R> postAsync(String endpoint,
+        JsonData data,
+        Map<String, ?> fields,
+        ResponseHandler<R> handler,
+        Map<String, String> clientHeaders,
+        UploadFile... files) {
+        return postAsync(endpoint, data, fields, handler, clientHeaders, defaultDeadline(),
+            files);
+    }
+
+    /**
+     * POST JSON data together with additional top level fields without blocking the
+     * calling thread. The future fails with DEADLINE_EXCEEDED if the deadline passes first.
+     *
+     * @param endpoint      the endpoint.
+     * @param data          the data.
+     * @param fields        additional fields that replace data values with the same key.
+     * @param handler       the response handler.
+     * @param clientHeaders client provided headers, may be null.
+     * @param deadline      the deadline for the request.
+     * @param files         files if any.
+     * @param <R>           the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    protected <R> CompletableFuture<R> postAsync(String endpoint,
+        JsonData data,
+        Map<String, ?> fields,
+        ResponseHandler<R> handler,
+        Map<String, String> clientHeaders,
+        Deadline deadline,
+        UploadFile... files) {
+        if (log.isDebugEnabled()) {
+            Object f = files == null ? "" : Arrays.asList(files);
+            log.debug("ENTER: Simba.postAsync: "
+                + "endpoint = ["
+                + endpoint
+                + "], data = ["
+                + data
+                + "], fields = ["
+                + fields
+                + "], handler = ["
+                + handler
+                + "], deadline = ["
+                + deadline
+                + "], files = ["
+                + f
+                + "]");
+        }
+        try {
+            return executeAsync("POST",
+                createPost(endpoint, data, fields, clientHeaders, files), handler, deadline);
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+    }
+
+    /**
+     * Perform a POST without blocking the calling thread.
+     *
+     * @param endpoint      the endpoint.
+     * @param data          the data.
+     * @param handler       the response handler.
+     * @param clientHeaders client provided headers, may be null.
+     * @param files         files if any.
+     * @param <R>           the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    protected <R> CompletableFuture<R> postAsync(String endpoint,
+        Map<String, Object> data,
+        ResponseHandler<R> handler,
+        Map<String, String> clientHeaders,
+        UploadFile... files) {
+        if (log.isDebugEnabled()) {
+            Object f = files == null ? "" : Arrays.asList(files);
+            log.debug("ENTER: Simba.postAsync: "
+                + "endpoint = ["
+                + endpoint
+                + "], data = ["
+                + data
+                + "], handler = ["
+                + handler
+                + "], files = ["
+                + f
+                + "]");
+        }
+        try {
+            return executeAsync("POST", createPost(endpoint, data, clientHeaders, files), handler,
+                defaultDeadline());
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+    }
+
+    /**
+     * Execute a request without blocking the calling thread, retrying according to the
+     * retry policy. Retries are scheduled rather than waited for on a thread.
+     *
+     * @param method   the HTTP method, used in messages.
+     * @param request  the request.
+     * @param handler  the response handler.
+     * @param deadline the deadline for all attempts.
+     * @param <R>      the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    protected <R> CompletableFuture<R> executeAsync(final String method,
+        final HttpRequestBase request,
+        final ResponseHandler<R> handler,
+        final Deadline deadline) {
+        this.retryBudget.deposit();
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        attemptAsync(result, method, request, handler, deadline, 1);
+        return result;
+    }
+
+    private <R> void attemptAsync(final CompletableFuture<R> result,
+        final String method,
+        final HttpRequestBase request,
+        final ResponseHandler<R> handler,
+        final Deadline deadline,
+        final int attempt) {
+        if (result.isDone()) {
+            return;
+        }
+        final CompletableFuture<R> sent = pacedAsync(method, request, handler, deadline);
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        sent.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                result.complete(response);
+                return;
+            }
+            Throwable cause = unwrap(throwable);
+            long delay = cause instanceof SimbaException
+                         ? retryDelay(method, request, (SimbaException) cause, attempt, deadline)
+                         : -1;
+            if (delay < 0 || result.isDone()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            request.reset();
+            Scheduling.schedule(
+                () -> attemptAsync(result, method, request, handler, deadline, attempt + 1),
+                delay);
+        });
+    }
+
+    /**
+     * Send a request once the rate limiter allows it.
+     */
+    private <R> CompletableFuture<R> pacedAsync(final String method,
+        final HttpRequestBase request,
+        final ResponseHandler<R> handler,
+        final Deadline deadline) {
+        final String operation = method + " " + request.getURI();
+        if (deadline.isExpired()) {
+            return failedFuture(deadline.exceeded(operation));
+        }
+        long wait = this.rateLimiter == null ? 0 : this.rateLimiter.reserve();
+        if (wait <= 0) {
+            return sendAsync(method, request, handler, deadline);
+        }
+        if (!deadline.allows(wait)) {
+            return failedFuture(deadline.exceeded("rate limit wait for " + operation));
+        }
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        Scheduling.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<R> sent = sendAsync(method, request, handler, deadline);
+            result.whenComplete((response, throwable) -> {
+                if (result.isCancelled()) {
+                    sent.cancel(true);
+                }
+            });
+            sent.whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    result.completeExceptionally(unwrap(throwable));
+                } else {
+                    result.complete(response);
+                }
+            });
+        }, wait);
+        return result;
+    }
+
+    private <R> CompletableFuture<R> sendAsync(final String method,
+        HttpRequestBase request,
+        ResponseHandler<R> handler,
+        final Deadline deadline) {
+        final String operation = method + " " + request.getURI();
+        if (deadline.isExpired()) {
+            return failedFuture(deadline.exceeded(operation));
+        }
+        final AdmissionControl.Permit permit;
+        try {
+            permit = admit(request);
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+        applyDeadline(request, deadline);
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        final CompletableFuture<R> pending = this.transport.executeAsync(request,
+            observe(handler, permit));
+        final ScheduledFuture<?> timer = deadline.isInfinite() ? null : Scheduling.schedule(() -> {
+            if (result.completeExceptionally(deadline.exceeded(operation))) {
+                pending.cancel(true);
+            }
+        }, deadline.remainingMillis());
+        pending.whenComplete((response, throwable) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (throwable != null) {
+                Throwable cause = unwrap(throwable);
+                if (isTimeout(cause) && deadline.isExpired()) {
+                    cause = deadline.exceeded(operation);
+                    result.completeExceptionally(cause);
+                } else {
+                    result.completeExceptionally(getException(method, cause));
+                }
+                if (permit != null) {
+                    permit.release(cause);
+                }
+            } else {
+                if (permit != null) {
+                    permit.release(null);
+                }
+                result.complete(response);
+            }
+        });
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled()) {
+                pending.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Create a future that has already failed.
+     *
+     * @param throwable the cause of the failure.
+     * @param <R>       the type of the future.
+     * @return a failed future.
+     */
+    protected static <R> CompletableFuture<R> failedFuture(Throwable throwable) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    /**
+     * Unwrap the wrapper exceptions added by futures to get the original cause.
+     *
+     * @param throwable a throwable from a future.
+     * @return the underlying cause.
+     */
+    protected static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException
+            || throwable instanceof ExecutionException) && throwable.getCause() != null) {
+            throwable = throwable.getCause();
         }
+        return throwable;
     }
 
-    private SimbaException getException(String method, Exception e) {
+    private SimbaException getException(String method, Throwable e) {
         if (e instanceof SimbaException) {
             return (SimbaException) e;
         }
@@ -624,14 +2083,260 @@ public abstract class SimbaClient {
         }
     }
 
+    /**
+     * Writes a response to a file channel and sets a Range header on the request for the
+     * bytes still to be fetched, so that a retry of the request resumes the download.
+     * The download is either the whole file, starting from the data already in the
+     * channel, or a segment of the file between two positions.
+     */
+    private final class ResumableDownload implements ResponseHandler<Long> {
+
+        private final HttpRequestBase request;
+        private final FileChannel channel;
+        private final FileTransfer transfer;
+        private final long end;
+        private final boolean first;
+        private long size = -1;
+        private boolean complete;
+        private volatile boolean cancelled;
+
+        /**
+         * @param start the position of the first byte to fetch.
+         * @param end   the position of the last byte of a segment, or -1 for the whole file.
+         * @param first true if this is the first segment of a file of unknown size. The
+         *              size is taken from the response, and the whole file is accepted if
+         *              the server does not support ranges.
+         */
+        private ResumableDownload(HttpRequestBase request,
+            FileChannel channel,
+            long start,
+            long end,
+            boolean first) {
+            this.request = request;
+            this.channel = channel;
+            this.transfer = new FileTransfer(channel, start);
+            this.end = end;
+            this.first = first;
+            setRange();
+        }
+
+        private ResumableDownload(HttpRequestBase request,
+            FileChannel channel,
+            long start,
+            long end) {
+            this(request, channel, start, end, false);
+        }
+
+        /**
+         * Get the size of the whole file, once a response has been received.
+         *
+         * @return the size, or -1 if it is unknown.
+         */
+        private long getSize() {
+            return this.size;
+        }
+
+        /**
+         * Whether the whole file has been written, which for the first segment means the
+         * file was no larger than the segment or the server sent the whole file.
+         */
+        private boolean isComplete() {
+            return this.complete;
+        }
+
+        @Override
+        public Long handleResponse(HttpResponse response) throws IOException {
+            try {
+                if (this.cancelled) {
+                    throw new CancellationException("Download was cancelled");
+                }
+                return write(response);
+            } catch (IOException e) {
+                if (this.cancelled) {
+                    throw new CancellationException("Download was cancelled");
+                }
+                throw e;
+            } finally {
+                setRange();
+            }
+        }
+
+        /**
+         * Stop the download. The request is aborted and is not retried.
+         */
+        private void cancel() {
+            this.cancelled = true;
+            this.request.abort();
+        }
+
+        private long write(HttpResponse response) throws IOException {
+            int status = response.getStatusLine()
+                                 .getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && (this.end < 0
+                || this.first) && contentRange(response)[2] == this.transfer.getPosition()) {
+                // the file was already complete, or is empty
+                EntityUtils.consume(entity);
+                this.size = this.transfer.getPosition();
+                this.complete = true;
+                return this.transfer.getPosition();
+            }
+            if (status < 200 || status >= 300) {
+                throw responseException(response);
+            }
+            boolean whole = status != HttpStatus.SC_PARTIAL_CONTENT;
+            if (!whole) {
+                long[] range = contentRange(response);
+                if (range[0] < 0 || range[0] > this.transfer.getPosition()) {
+                    throw new IOException("Unexpected Content-Range " + response.getFirstHeader(
+                        HttpHeaders.CONTENT_RANGE));
+                }
+                this.transfer.setPosition(range[0]);
+                this.size = range[2];
+                if (this.first && this.size < 0 && range[1] >= 0 && range[1] < this.end) {
+                    // the total is unknown, but the server stopped short of the segment end
+                    this.size = range[1] + 1;
+                }
+            } else if (this.end >= 0 && !this.first) {
+                EntityUtils.consume(entity);
+                throw new HttpResponseException(status, "Range requests are not supported");
+            } else {
+                // the server ignored the Range header and sent the whole body
+                this.transfer.setPosition(0);
+            }
+            if (entity != null) {
+                try (InputStream in = entity.getContent()) {
+                    if (in != null) {
+                        this.transfer.write(in);
+                    }
+                }
+            }
+            long last = this.end;
+            if (this.first && this.size >= 0) {
+                last = Math.min(last, this.size - 1);
+            }
+            if (this.end < 0 || (this.first && whole)) {
+                this.channel.truncate(this.transfer.getPosition());
+                this.size = this.transfer.getPosition();
+                this.complete = true;
+            } else if (this.transfer.getPosition() <= last) {
+                throw new IOException("Incomplete segment, received up to "
+                    + this.transfer.getPosition()
+                    + " of "
+                    + (last + 1));
+            } else if (this.first && this.size >= 0 && this.transfer.getPosition() >= this.size) {
+                this.channel.truncate(this.size);
+                this.complete = true;
+            }
+            return this.transfer.getPosition();
+        }
+
+        private void setRange() {
+            long position = this.transfer.getPosition();
+            if (this.end >= 0) {
+                this.request.setHeader(HttpHeaders.RANGE, "bytes=" + position + "-" + this.end);
+            } else if (position > 0) {
+                this.request.setHeader(HttpHeaders.RANGE, "bytes=" + position + "-");
+            } else {
+                this.request.removeHeaders(HttpHeaders.RANGE);
+            }
+        }
+    }
+
+    /**
+     * Parse the Content-Range header of a response, e.g. "bytes 0-99/1000" or "bytes &#42;/1000".
+     *
+     * @param response the response.
+     * @return the first and last byte positions and the total length. Values that are
+     * missing or unknown are -1.
+     */
+    protected static long[] contentRange(HttpResponse response) {
+        long[] range = new long[] {-1, -1, -1};
+        Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (header == null) {
+            return range;
+        }
+        String value = header.getValue()
+                             .trim();
+        if (!value.startsWith("bytes ")) {
+            return range;
+        }
+        value = value.substring(6)
+                     .trim();
+        int slash = value.indexOf('/');
+        try {
+            String bytes = slash < 0 ? value : value.substring(0, slash);
+            int dash = bytes.indexOf('-');
+            if (dash > 0) {
+                range[0] = Long.parseLong(bytes.substring(0, dash)
+                                               .trim());
+                range[1] = Long.parseLong(bytes.substring(dash + 1)
+                                               .trim());
+            }
+            if (slash >= 0 && !value.endsWith("*")) {
+                range[2] = Long.parseLong(value.substring(slash + 1)
+                                               .trim());
+            }
+        } catch (NumberFormatException e) {
+            return new long[] {-1, -1, -1};
+        }
+        return range;
+    }
+
+    /**
+     * The request body of a call that uploads files. If upload digest algorithms are
+     * configured, the digest of each file is computed each time the body is written and
+     * kept here, so every request has its own digests.
+     */
+    public static class UploadEntity extends HttpEntityWrapper {
+
+        private final AtomicReferenceArray<FileDigest> digests;
+
+        private UploadEntity(HttpEntity entity, AtomicReferenceArray<FileDigest> digests) {
+            super(entity);
+            this.digests = digests;
+        }
+
+        /**
+         * Get the digests computed while the body was last written, in the order of the
+         * files.
+         *
+         * @return the digests. Empty if the body has not been written or no digest
+         * algorithms are configured.
+         */
+        public List<FileDigest> getFileDigests() {
+            List<FileDigest> result = new ArrayList<>();
+            for (int i = 0; i < this.digests.length(); i++) {
+                FileDigest digest = this.digests.get(i);
+                if (digest != null) {
+                    result.add(digest);
+                }
+            }
+            return result;
+        }
+    }
+
     /**
      * Utility class used for file uploads.
+     * <p>
+     * Files backed by a Path, File, FileChannel, ByteBuffer or byte array have a known
+     * length and are read each time the request body is written, so requests using them
+     * are sent with a Content-Length and can be retried. Files are only opened while the
+     * body is being written. Files backed by an InputStream can only be sent once and are
+     * sent using chunked encoding.
      */
     public static class UploadFile {
 
+        private static final int BUFFER_SIZE = 64 * 1024;
+
         private String name;
         private String mimeType;
         private InputStream file;
+        private Path path;
+        private FileChannel channel;
+        private ByteBuffer buffer;
+        private long position;
+        private long length = -1;
 
         /**
          * Create an upload file from a File object.
@@ -642,26 +2347,113 @@ public abstract class SimbaClient {
          * @throws SimbaException if the file cannot be found.
          */
         public UploadFile(String name, String mimeType, File file) throws SimbaException {
+            this(name, mimeType, file.toPath());
+        }
+
+        /**
+         * Create an upload file from a File object with a default mime type of
+         * application/octet-stream
+         *
+         * @param name the file name.
+         * @param file the File object to read from.
+         * @throws SimbaException if the file cannot be found.
+         */
+        public UploadFile(String name, File file) throws SimbaException {
+            this(name, "application/octet-stream", file);
+        }
+
+        /**
+         * Create an upload file from a Path. The file is opened when the request is sent.
+         *
+         * @param name     the file name.
+         * @param mimeType the mime type.
+         * @param path     the path of the file to read from.
+         * @throws SimbaException if the file cannot be found.
+         */
+        public UploadFile(String name, String mimeType, Path path) throws SimbaException {
             this.name = name;
             this.mimeType = mimeType;
+            this.path = path;
             try {
-                this.file = new FileInputStream(file);
-            } catch (FileNotFoundException e) {
-                throw new SimbaException("Could not find file " + file.getAbsolutePath(),
+                this.length = Files.size(path);
+            } catch (IOException e) {
+                throw new SimbaException("Could not find file " + path.toAbsolutePath(),
                     SimbaException.SimbaError.FILE_ERROR, e);
             }
         }
 
         /**
-         * Create an upload file from a File object with a default mime type of
+         * Create an upload file from a Path with a default mime type of
          * application/octet-stream
          *
          * @param name the file name.
-         * @param file the File object to read from.
+         * @param path the path of the file to read from.
          * @throws SimbaException if the file cannot be found.
          */
-        public UploadFile(String name, File file) throws SimbaException {
-            this(name, "application/octet-stream", file);
+        public UploadFile(String name, Path path) throws SimbaException {
+            this(name, "application/octet-stream", path);
+        }
+
+        /**
+         * Create an upload file from a FileChannel. The data from the current position of
+         * the channel to the end is sent. The channel is read with positional reads, so its
+         * position is not changed, and it is not closed.
+         *
+         * @param name     the file name.
+         * @param mimeType the mime type.
+         * @param channel  the channel to read from.
+         * @throws SimbaException if the size of the channel cannot be read.
+         */
+        public UploadFile(String name, String mimeType, FileChannel channel)
+            throws SimbaException {
+            this.name = name;
+            this.mimeType = mimeType;
+            this.channel = channel;
+            try {
+                this.position = channel.position();
+                this.length = Math.max(0, channel.size() - this.position);
+            } catch (IOException e) {
+                throw new SimbaException("Could not read file channel",
+                    SimbaException.SimbaError.FILE_ERROR, e);
+            }
+        }
+
+        /**
+         * Create an upload file from a FileChannel with a default mime type of
+         * application/octet-stream
+         *
+         * @param name    the file name.
+         * @param channel the channel to read from.
+         * @throws SimbaException if the size of the channel cannot be read.
+         */
+        public UploadFile(String name, FileChannel channel) throws SimbaException {
+            this(name, "application/octet-stream", channel);
+        }
+
+        /**
+         * Create an upload file from a ByteBuffer. The bytes between the position and the
+         * limit of the buffer are sent. The position of the buffer is not changed.
+         *
+         * @param name     the file name.
+         * @param mimeType the mime type.
+         * @param buffer   the buffer to read from.
+         */
+        public UploadFile(String name, String mimeType, ByteBuffer buffer) {
+            this.name = name;
+            this.mimeType = mimeType;
+            this.buffer = buffer.duplicate();
+            this.length = this.buffer.remaining();
+        }
+
+        /**
+         * Create an upload file from a ByteBuffer with a default mime type of
+         * application/octet-stream
+         *
+         * @param name   the file name.
+         * @param buffer the buffer to read from.
+         */
+        public UploadFile(String name, ByteBuffer buffer) {
+            this(name, "application/octet-stream", buffer);
         }
 
         /**
@@ -696,9 +2488,7 @@ public abstract class SimbaClient {
          * @param file     the byte array to read from.
          */
         public UploadFile(String name, String mimeType, byte[] file) {
-            this.name = name;
-            this.mimeType = mimeType;
-            this.file = new ByteArrayInputStream(file);
+            this(name, mimeType, ByteBuffer.wrap(file));
         }
 
         /**
@@ -744,8 +2534,146 @@ public abstract class SimbaClient {
             return mimeType;
         }
 
+        /**
+         * Get the content of the file as a stream. Unless the file was created from an
+         * InputStream, a new stream is opened on each call and the caller must close it.
+         * A stream over a FileChannel or ByteBuffer reads from the data given when this file
+         * was created without changing the position of the channel or buffer, and closing
+         * it does not close the channel.
+         *
+         * @return an input stream.
+         * @throws UncheckedIOException if the file cannot be opened.
+         */
         public InputStream getFile() {
-            return file;
+            if (this.file != null) {
+                return this.file;
+            }
+            if (this.buffer != null) {
+                return new BufferInputStream(this.buffer.duplicate());
+            }
+            if (this.channel != null) {
+                return new ChannelInputStream(this.channel, this.position,
+                    this.position + this.length);
+            }
+            try {
+                return Files.newInputStream(this.path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open file " + this.name, e);
+            }
+        }
+
+        /**
+         * Get the number of bytes that will be sent.
+         *
+         * @return the length, or -1 if the file was created from an InputStream.
+         */
+        public long getContentLength() {
+            return length;
+        }
+
+        /**
+         * Whether the file can be sent more than once, for example when a request is retried.
+         *
+         * @return false if the file was created from an InputStream.
+         */
+        public boolean isRepeatable() {
+            return this.file == null;
+        }
+
+        /**
+         * Create the multipart body for this file. If algorithms are given, the file is
+         * digested as it is written, so the content is only read once, and the digest is
+         * stored at the index in the request's digests rather than in this file, which may
+         * be shared by concurrent requests.
+         */
+        private ContentBody toContentBody(List<String> algorithms,
+            AtomicReferenceArray<FileDigest> digests,
+            int index) throws SimbaException {
+            ContentType contentType = ContentType.create(this.mimeType);
+            for (String algorithm : algorithms) {
+                Digests.create(algorithm);
+            }
+            if (this.file != null && algorithms.isEmpty()) {
+                return new InputStreamBody(this.file, contentType, this.name);
+            }
+            return new AbstractContentBody(contentType) {
+                @Override
+                public String getFilename() {
+                    return name;
+                }
+
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    if (algorithms.isEmpty()) {
+                        UploadFile.this.writeTo(out);
+                        return;
+                    }
+                    // new digests for each write, as a retried or hedged request writes
+                    // the body again.
+                    DigestingOutputStream digesting = new DigestingOutputStream(out,
+                        algorithms);
+                    UploadFile.this.writeTo(digesting);
+                    digests.set(index, digesting.toFileDigest(name));
+                }
+
+                @Override
+                public String getTransferEncoding() {
+                    return MIME.ENC_BINARY;
+                }
+
+                @Override
+                public long getContentLength() {
+                    return length;
+                }
+            };
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            if (this.buffer != null) {
+                ByteBuffer data = this.buffer.duplicate();
+                if (data.hasArray()) {
+                    out.write(data.array(), data.arrayOffset() + data.position(),
+                        data.remaining());
+                } else {
+                    Channels.newChannel(out)
+                            .write(data);
+                }
+            } else if (this.path != null) {
+                try (FileChannel in = FileChannel.open(this.path, StandardOpenOption.READ)) {
+                    copy(in, 0, out);
+                }
+            } else if (this.channel != null) {
+                copy(this.channel, this.position, out);
+            } else {
+                byte[] buf = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = this.file.read(buf)) != -1) {
+                    out.write(buf, 0, n);
+                }
+            }
+        }
+
+        /**
+         * Copy the file to the stream with positional reads into a large buffer, so each
+         * write to the stream is a single large write.
+         */
+        private void copy(FileChannel in, long start, OutputStream out) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(1, length)));
+            long position = start;
+            long end = start + this.length;
+            while (position < end) {
+                buf.clear();
+                if (end - position < buf.capacity()) {
+                    buf.limit((int) (end - position));
+                }
+                int n = in.read(buf, position);
+                if (n < 0) {
+                    throw new EOFException("File " + this.name + " is shorter than " + this.length
+                        + " bytes");
+                }
+                out.write(buf.array(), 0, n);
+                position += n;
+            }
         }
 
         @Override
@@ -757,12 +2685,159 @@ public abstract class SimbaClient {
             sb.append(", mimeType='")
               .append(mimeType)
               .append('\'');
-            if (file != null) {
-                sb.append(", file=")
-                  .append(file);
-                sb.append('}');
+            sb.append(", length=")
+              .append(length);
+            Object source = file;
+            if (path != null) {
+                source = path;
+            } else if (channel != null) {
+                source = channel;
+            } else if (buffer != null) {
+                source = buffer;
             }
+            sb.append(", file=")
+              .append(source);
+            sb.append('}');
             return sb.toString();
         }
     }
+
+    /**
+     * Reads the remaining bytes of a buffer. The buffer should be a duplicate, as reading
+     * moves its position.
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Reads a range of a file channel with positional reads, so the position of the
+     * channel is not changed. Closing the stream does not close the channel.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private ChannelInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)),
+                position);
+            if (n < 0) {
+                return -1;
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, end - position));
+        }
+    }
+
+    /**
+     * Passes bytes through to another stream, updating message digests as they are written.
+     */
+    private static final class DigestingOutputStream extends FilterOutputStream {
+
+        private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+        private long count;
+
+        private DigestingOutputStream(OutputStream out, List<String> algorithms)
+            throws SimbaException {
+            super(out);
+            for (String algorithm : algorithms) {
+                this.digests.put(Digests.normalize(algorithm), Digests.create(algorithm));
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            for (MessageDigest digest : digests.values()) {
+                digest.update((byte) b);
+            }
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            for (MessageDigest digest : digests.values()) {
+                digest.update(b, off, len);
+            }
+            count += len;
+        }
+
+        private FileDigest toFileDigest(String name) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+                values.put(entry.getKey(), Digests.toHex(entry.getValue()
+                                                              .digest()));
+            }
+            return new FileDigest(name, count, values);
+        }
+    }
 }
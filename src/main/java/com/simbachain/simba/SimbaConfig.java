@@ -22,10 +22,20 @@
 
 package com.simbachain.simba;
 
+import com.simbachain.simba.http.HttpConfig;
+
 /**
  * Interface to credentials used by a SIMBA HTTP client.
  */
 public interface SimbaConfig {
-    
+
+    /**
+     * Get the config for the HTTP transport, e.g. connection pool sizes and timeouts.
+     *
+     * @return the HTTP config.
+     */
+    default HttpConfig getHttpConfig() {
+        return new HttpConfig();
+    }
 
 }
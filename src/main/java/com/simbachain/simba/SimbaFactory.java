@@ -22,18 +22,35 @@
 
 package com.simbachain.simba;
 
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 import com.simbachain.SimbaException;
+import com.simbachain.simba.com.SigningConfirmation;
 import com.simbachain.simba.com.SimbaChain;
 import com.simbachain.simba.com.SimbaChainConfig;
 import com.simbachain.simba.com.async.AsyncSimbaChain;
 import com.simbachain.simba.com.async.AsyncSimbaChainConfig;
+import com.simbachain.simba.http.HttpConfig;
+import com.simbachain.simba.http.HttpTransport;
 
 /**
  * Factory for creating Simba instances.
  * Not required, but does some validation and calls init() on the instance.
+ * <p>
+ * Instances created by the factory for the same host share a single HTTP transport
+ * and connection pool if their HttpConfigs have the same transport settings, such as pool
+ * sizes, timeouts and the transport type. Instances with different settings get their own
+ * transport. Policies such as retries and hedging are applied by each instance, so they
+ * may differ between instances sharing a transport. A transport is closed once every
+ * instance using it has been closed.
  */
 public class SimbaFactory {
 
+    private final Map<String, HttpTransport> transports = new HashMap<>();
+
     private SimbaFactory() {
     }
 
@@ -62,8 +79,10 @@ public class SimbaFactory {
             throw new SimbaException("No wallet specified",
                 SimbaException.SimbaError.INVALID_CREDENTIALS);
         }
-        SimbaChain simbaChain = new SimbaChain(endpoint, contract, config);
-        simbaChain.init();
+        SimbaChain simbaChain = new SimbaChain(endpoint, contract, config,
+            new SigningConfirmation() {
+            }, acquireTransport(endpoint, config.getHttpConfig()));
+        initOrClose(simbaChain);
         return simbaChain;
 
     }
@@ -88,10 +107,64 @@ public class SimbaFactory {
             throw new SimbaException("No wallet specified",
                 SimbaException.SimbaError.INVALID_CREDENTIALS);
         }
-        AsyncSimbaChain simbaChain = new AsyncSimbaChain(endpoint, contract, config);
-        simbaChain.init();
+        AsyncSimbaChain simbaChain = new AsyncSimbaChain(endpoint, contract, config,
+            new SigningConfirmation() {
+            }, acquireTransport(endpoint, config.getHttpConfig()));
+        initOrClose(simbaChain);
         return simbaChain;
 
     }
 
+    /**
+     * Get a retained reference to the shared transport for the host of the given endpoint
+     * and the transport settings of the config, creating it if none exists or the existing
+     * one has been closed. The caller must release the reference when done with it.
+     *
+     * @param endpoint   the endpoint.
+     * @param httpConfig the config the transport is built from.
+     * @return a retained transport.
+     */
+    public synchronized HttpTransport acquireTransport(String endpoint, HttpConfig httpConfig) {
+        transports.values()
+                  .removeIf(HttpTransport::isClosed);
+        String key = hostKey(endpoint) + "|" + httpConfig.transportKey();
+        HttpTransport transport = transports.get(key);
+        if (transport == null || !transport.retain()) {
+            transport = HttpTransport.create(httpConfig);
+            transports.put(key, transport);
+        }
+        return transport;
+    }
+
+    /**
+     * Get the scheme, host and port of the endpoint, with the default port made explicit.
+     */
+    private String hostKey(String endpoint) {
+        try {
+            URI uri = URI.create(endpoint);
+            if (uri.getHost() != null) {
+                String scheme = uri.getScheme()
+                                   .toLowerCase(Locale.ROOT);
+                int port = uri.getPort();
+                if (port < 0) {
+                    port = scheme.equals("https") ? 443 : 80;
+                }
+                return String.format("%s://%s:%s", scheme, uri.getHost()
+                                                              .toLowerCase(Locale.ROOT), port);
+            }
+        } catch (IllegalArgumentException e) {
+            // fall back to the endpoint string
+        }
+        return endpoint;
+    }
+
+    private void initOrClose(Simba<?> simba) throws SimbaException {
+        try {
+            simba.init();
+        } catch (SimbaException e) {
+            simba.close();
+            throw e;
+        }
+    }
+
 }
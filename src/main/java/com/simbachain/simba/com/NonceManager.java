@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.com;
+
+import java.math.BigInteger;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Allocates nonces for transactions signed by one wallet address, so that many
+ * transactions can be submitted concurrently without colliding.
+ * <p>
+ * The server puts the next nonce it knows of into each transaction it builds, but it
+ * does not know about transactions that have been built and not yet submitted, so
+ * concurrent calls from one address get the same nonce. The manager hands out each
+ * nonce once, starting from the highest nonce the server has reported.
+ * <p>
+ * If a signed transaction is never accepted, its nonce is released and becomes a gap
+ * that is filled by the next allocation, as a gap would stop later transactions from
+ * being mined. If the server rejects a nonce and suggests another, the manager moves
+ * forward to the suggestion, or treats it as a gap to fill if it is below the nonces
+ * already handed out.
+ * <p>
+ * Managers are shared by all SimbaChain instances using the same address on the same
+ * network of the same endpoint. Each instance detaches from its manager when it is
+ * closed, and the manager is dropped once no instance is using it.
+ */
+public class NonceManager {
+
+    private static final Map<String, NonceManager> shared = new ConcurrentHashMap<>();
+
+    private final String key;
+    private int users;
+    private BigInteger next;
+    private final NavigableSet<BigInteger> inFlight = new TreeSet<>();
+    private final NavigableSet<BigInteger> gaps = new TreeSet<>();
+
+    private NonceManager(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Get the manager for an address on a network, creating it if this is the first use
+     * of the address. Each call must be matched by a call to detach() when the caller has
+     * finished with the manager.
+     *
+     * @param endpoint the SIMBA endpoint.
+     * @param network  the network of the app, as nonces are per chain, or null if unknown.
+     * @param address  the wallet address.
+     * @return the shared manager.
+     */
+    public static NonceManager forAddress(String endpoint, String network, String address) {
+        String key = endpoint + "|" + network + "|" + address.toLowerCase(Locale.ROOT);
+        return shared.compute(key, (k, nonces) -> {
+            if (nonces == null) {
+                nonces = new NonceManager(k);
+            }
+            nonces.users++;
+            return nonces;
+        });
+    }
+
+    /**
+     * Release a reference obtained from forAddress(). The manager is dropped once every
+     * reference has been released, and a later forAddress() call starts a new one from
+     * the nonces reported by the server.
+     */
+    public void detach() {
+        shared.computeIfPresent(this.key, (k, nonces) -> {
+            if (nonces != this) {
+                return nonces;
+            }
+            return --nonces.users > 0 ? nonces : null;
+        });
+    }
+
+    /**
+     * Get the number of managers currently shared.
+     *
+     * @return the number of managers.
+     */
+    public static int getShared() {
+        return shared.size();
+    }
+
+    /**
+     * Allocate a nonce for a new transaction.
+     *
+     * @param serverNonce the nonce the server put in the transaction, or null if unknown.
+     * @return the nonce to sign with.
+     */
+    public synchronized BigInteger allocate(BigInteger serverNonce) {
+        if (serverNonce != null) {
+            advance(serverNonce);
+        }
+        BigInteger nonce = this.gaps.pollFirst();
+        if (nonce == null) {
+            if (this.next == null) {
+                this.next = BigInteger.ZERO;
+            }
+            nonce = this.next;
+            this.next = this.next.add(BigInteger.ONE);
+        }
+        this.inFlight.add(nonce);
+        return nonce;
+    }
+
+    /**
+     * Record that a transaction with the nonce was accepted.
+     *
+     * @param nonce the nonce.
+     */
+    public synchronized void confirm(BigInteger nonce) {
+        this.inFlight.remove(nonce);
+    }
+
+    /**
+     * Record that a transaction with the nonce was not accepted, so the nonce is free to
+     * be used again.
+     *
+     * @param nonce the nonce.
+     */
+    public synchronized void release(BigInteger nonce) {
+        if (this.inFlight.remove(nonce)) {
+            this.gaps.add(nonce);
+        }
+    }
+
+    /**
+     * Record that the server rejected the nonce as already used or out of order.
+     * The rejected nonce is not allocated again.
+     *
+     * @param rejected  the rejected nonce.
+     * @param suggested the nonce suggested by the server, or null if there is none.
+     */
+    public synchronized void reject(BigInteger rejected, BigInteger suggested) {
+        this.inFlight.remove(rejected);
+        if (suggested == null) {
+            return;
+        }
+        if (this.next != null && suggested.compareTo(this.next) < 0) {
+            // the server expects a nonce below those handed out, so there is a gap
+            if (!this.inFlight.contains(suggested)) {
+                this.gaps.add(suggested);
+            }
+        } else {
+            advance(suggested);
+        }
+    }
+
+    /**
+     * Record that the outcome of a transaction with the nonce is unknown, e.g., because
+     * the connection failed. The nonce is not allocated again unless the server later
+     * suggests it.
+     *
+     * @param nonce the nonce.
+     */
+    public synchronized void abandon(BigInteger nonce) {
+        this.inFlight.remove(nonce);
+    }
+
+    /**
+     * Get the next nonce that will be allocated if there are no gaps.
+     *
+     * @return the nonce, or null if none has been allocated.
+     */
+    public synchronized BigInteger getNext() {
+        return next;
+    }
+
+    /**
+     * Get the number of nonces that have been allocated and not confirmed or released.
+     *
+     * @return the number of nonces in flight.
+     */
+    public synchronized int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Get the number of released nonces waiting to be allocated again.
+     *
+     * @return the number of gaps.
+     */
+    public synchronized int getGaps() {
+        return gaps.size();
+    }
+
+    /**
+     * Move forward to a nonce reported by the server. Nonces below it have been used,
+     * so gaps below it are dropped.
+     */
+    private void advance(BigInteger nonce) {
+        if (this.next == null || nonce.compareTo(this.next) > 0) {
+            this.next = nonce;
+        }
+        this.gaps.headSet(nonce, false)
+                 .clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder("NonceManager{");
+        sb.append("next=")
+          .append(next);
+        sb.append(", inFlight=")
+          .append(inFlight);
+        sb.append(", gaps=")
+          .append(gaps);
+        sb.append('}');
+        return sb.toString();
+    }
+}
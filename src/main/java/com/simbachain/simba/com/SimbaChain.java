@@ -22,27 +22,57 @@
 
 package com.simbachain.simba.com;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 import com.simbachain.SimbaException;
 import com.simbachain.simba.Balance;
+import com.simbachain.simba.BatchResult;
+import com.simbachain.simba.BundleCache;
+import com.simbachain.simba.BundleEntryHandler;
+import com.simbachain.simba.BundleReader;
 import com.simbachain.simba.CallResponse;
+import com.simbachain.simba.Deadline;
+import com.simbachain.simba.Digests;
 import com.simbachain.simba.Funds;
 import com.simbachain.simba.JsonData;
 import com.simbachain.simba.Manifest;
+import com.simbachain.simba.ManifestCache;
+import com.simbachain.simba.ManifestFile;
 import com.simbachain.simba.Metadata;
 import com.simbachain.simba.Method;
+import com.simbachain.simba.MethodCall;
 import com.simbachain.simba.PagedResult;
 import com.simbachain.simba.Query;
 import com.simbachain.simba.Simba;
 import com.simbachain.simba.Transaction;
+import com.simbachain.simba.http.HttpTransport;
+import com.simbachain.simba.http.RateLimiter;
+import com.simbachain.simba.http.RetryPolicy;
+import com.simbachain.simba.http.Scheduling;
 import com.simbachain.wallet.Wallet;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpPost;
 import org.web3j.crypto.RawTransaction;
 import org.web3j.utils.Numeric;
 
@@ -51,12 +81,33 @@ import org.web3j.utils.Numeric;
  */
 public class SimbaChain extends Simba<SimbaChainConfig> {
 
+    // limits the growth of the delay between transaction retries
+    private static final long MAX_TRANSACTION_BACKOFF_FACTOR = 8;
+
+    /**
+     * The number of requests in flight when fetching many manifests at once.
+     */
+    public static final int DEFAULT_BULK_CONCURRENCY = 16;
+
     private Wallet wallet;
     private SigningConfirmation signingConfirmation;
     private Map<String, String> apiHeaders = new HashMap<>();
     private Map<String, String> managementHeaders = new HashMap<>();
     private int retrySignAttempts;
     private long retryTransactionSleep;
+    private long defaultDeadlineMillis;
+    private BundleCache bundleCache;
+    private ManifestCache manifestCache;
+    private boolean manageNonces;
+    private volatile NonceManager nonceManager;
+    private RateLimiter sharedRateLimiter;
+    private Header[] apiHeaderArray;
+    private volatile String contractUrl;
+    private volatile String transactionUrl;
+    private final Map<String, String> methodUrls = new ConcurrentHashMap<>();
+    private final ResponseHandler<SigningTransaction> signingTransactionHandler = jsonResponseHandler(
+        SigningTransaction.class);
+    private final ResponseHandler<String> stringHandler = stringResponseHandler();
 
     /**
      * Create a SimbaChain instance
@@ -77,6 +128,28 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
         return info.getAppMetadata();
     }
 
+    @Override
+    protected void primeCodecs() {
+        primeReaders(Api.class, FullTransaction.class, Page.class, SigningTransaction.class,
+            ManifestWrapper.class, Balance.class, Funds.class);
+    }
+
+    @Override
+    protected void primeSigning() {
+        if (this.wallet == null) {
+            return;
+        }
+        RawTransaction rt = RawTransaction.createTransaction(BigInteger.ZERO, BigInteger.ZERO,
+            BigInteger.ZERO, "0x0000000000000000000000000000000000000000", BigInteger.ZERO, "0x");
+        try {
+            this.wallet.sign(rt);
+        } catch (SimbaException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("SimbaChain.primeSigning: wallet could not sign", e);
+            }
+        }
+    }
+
     /**
      * Create a SimbaChain instance
      *
@@ -91,17 +164,82 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
         SimbaChainConfig config,
         SigningConfirmation signingConfirmation) {
         super(endpoint, contract, config);
+        setup(config, signingConfirmation);
+    }
+
+    /**
+     * Create a SimbaChain instance that uses a shared transport.
+     * The instance releases its reference to the transport when close() is called.
+     *
+     * @param endpoint            the endpoint of a contract, e.g. https://api.simbachain.com/v1/
+     * @param contract            the contract or app name.
+     * @param config              the config e.g., credentials required to access the endpoint.
+     * @param signingConfirmation an optional SigningConfirmation instance
+     *                            that is queried before a transaction is signed.
+     * @param transport           a transport that has been retained for this instance.
+     */
+    public SimbaChain(String endpoint,
+        String contract,
+        SimbaChainConfig config,
+        SigningConfirmation signingConfirmation,
+        HttpTransport transport) {
+        super(endpoint, contract, config, transport);
+        setup(config, signingConfirmation);
+    }
+
+    private void setup(SimbaChainConfig config, SigningConfirmation signingConfirmation) {
         this.wallet = config.getWallet();
-        this.apiHeaders.put("APIKEY", this.getConfig()
-                                          .getApiKey());
-        if (this.getConfig()
-                .getManagementKey() != null) {
-            this.managementHeaders.put("APIKEY", this.getConfig()
-                                                     .getManagementKey());
+        this.apiHeaders.put("APIKEY", config.getApiKey());
+        this.apiHeaderArray = toHeaders(this.apiHeaders);
+        if (config.getManagementKey() != null) {
+            this.managementHeaders.put("APIKEY", config.getManagementKey());
         }
         this.signingConfirmation = signingConfirmation;
         this.retrySignAttempts = config.getRetrySignAttempts();
         this.retryTransactionSleep = config.getRetryTransactionSleep();
+        this.defaultDeadlineMillis = config.getDefaultDeadlineMillis();
+        this.sharedRateLimiter = RateLimiter.forKey(config.getApiKey(),
+            config.getRateLimitPolicy());
+        setRateLimiter(this.sharedRateLimiter);
+        setUploadDigestAlgorithms(config.getUploadDigestAlgorithms());
+        this.bundleCache = config.getBundleCache();
+        this.manifestCache = config.getManifestCache();
+        this.manageNonces = config.isManageNonces();
+    }
+
+    /**
+     * The deadline applied to calls that are not given one explicitly.
+     * Derived from SimbaChainConfig.getDefaultDeadlineMillis(), 0 meaning no deadline.
+     *
+     * @return a new Deadline starting now.
+     */
+    @Override
+    protected Deadline defaultDeadline() {
+        return this.defaultDeadlineMillis > 0
+               ? Deadline.after(this.defaultDeadlineMillis)
+               : Deadline.none();
+    }
+
+    /**
+     * Release this instance's references to its transport and its shared nonce manager.
+     */
+    @Override
+    public void close() {
+        NonceManager nonces;
+        RateLimiter limiter;
+        synchronized (this) {
+            nonces = this.nonceManager;
+            this.nonceManager = null;
+            limiter = this.sharedRateLimiter;
+            this.sharedRateLimiter = null;
+        }
+        if (nonces != null) {
+            nonces.detach();
+        }
+        if (limiter != null) {
+            limiter.detach();
+        }
+        super.close();
     }
 
     /**
@@ -113,18 +251,38 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
      */
     @Override
     public Transaction getTransaction(String txnId) throws SimbaException {
+        return getTransaction(txnId, defaultDeadline());
+    }
+
+    @Override
+    public Transaction getTransaction(String txnId, Deadline deadline) throws SimbaException {
         if (log.isDebugEnabled()) {
-            log.debug("ENTER: SimbaChain.getTransaction: " + "txnId = [" + txnId + "]");
+            log.debug("ENTER: SimbaChain.getTransaction: "
+                + "txnId = ["
+                + txnId
+                + "], deadline = ["
+                + deadline
+                + "]");
         }
-        FullTransaction txn = this.get(
-            String.format("%s%s%s/transaction/%s", getEndpoint(), getvPath(), getContract(), txnId),
-            jsonResponseHandler(FullTransaction.class));
-        String method = txn.getMethod();
-        Method m = getMetadata().getMethod(method);
-        if (m != null) {
-            txn.setMethodParameters(m.getParameterMap());
+        FullTransaction txn = this.getHedged(transactionUrl(txnId),
+            jsonResponseHandler(FullTransaction.class), deadline);
+        return populate(txn);
+    }
+
+    /**
+     * get a Transaction given a transaction hash without blocking the calling thread.
+     *
+     * @param txnId a transaction ID
+     * @return a future that completes with the Transaction or a SimbaException.
+     */
+    @Override
+    public CompletableFuture<Transaction> getTransactionAsync(String txnId) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getTransactionAsync: " + "txnId = [" + txnId + "]");
         }
-        return txn;
+        return this.getHedgedAsync(transactionUrl(txnId),
+            jsonResponseHandler(FullTransaction.class))
+                   .thenApply(this::populate);
     }
 
     /**
@@ -139,15 +297,237 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
     @Override
     public CallResponse callMethod(String method, JsonData parameters, UploadFile... files)
         throws SimbaException {
-        return callMethod(this.retrySignAttempts, method, parameters, new HashMap<>(), files);
+        return callMethod(method, parameters, new HashMap<>(), defaultDeadline(), files);
+    }
+
+    @Override
+    public CallResponse callMethod(String method,
+        JsonData parameters,
+        Map<String, String> headers,
+        UploadFile... files) throws SimbaException {
+        return callMethod(method, parameters, headers, defaultDeadline(), files);
+    }
+
+    @Override
+    public CallResponse callMethod(String method,
+        JsonData parameters,
+        Deadline deadline,
+        UploadFile... files) throws SimbaException {
+        return callMethod(method, parameters, new HashMap<>(), deadline, files);
     }
 
     @Override
     public CallResponse callMethod(String method,
         JsonData parameters,
         Map<String, String> headers,
+        Deadline deadline,
         UploadFile... files) throws SimbaException {
-        return callMethod(this.retrySignAttempts, method, parameters, headers, files);
+        if (log.isDebugEnabled()) {
+            Object f = files.length == 0 ? "" : Arrays.asList(files);
+            log.debug("ENTER: SimbaChain.callMethod: "
+                + "method = ["
+                + method
+                + "], parameters = ["
+                + parameters
+                + "], deadline = ["
+                + deadline
+                + "], files = ["
+                + f
+                + "]");
+        }
+        deadline.check("callMethod " + method);
+        HttpPost post = createCall(method, parameters, headers, files);
+        for (int attempt = 1; ; attempt++) {
+            SigningTransaction response = this.execute("POST", post, signingTransactionHandler,
+                deadline);
+            if (!getSigningConfirmation().confirm(response)) {
+                throw new SimbaException(response.toString(),
+                    SimbaException.SimbaError.SIGN_REJECTED);
+            }
+            try {
+                return withDigests(signTransaction(response, deadline), post);
+            } catch (SimbaException e) {
+                long delay = transactionRetryDelay(post, e, attempt, deadline);
+                if (delay < 0) {
+                    if (log.isDebugEnabled()) {
+                        log.warn("SimbaChain.callMethod throwing exception", e);
+                    }
+                    throw e;
+                }
+                deadline.sleep(delay, "callMethod retry");
+                post.reset();
+            }
+        }
+    }
+
+    /**
+     * Invoke a particular method of a smart contract without blocking the calling thread.
+     * Signing takes place once the server has returned the transaction to sign.
+     *
+     * @param method     The method name
+     * @param parameters the parameters
+     * @param files      files to upload with the request
+     * @return a future that completes with the CallResponse or a SimbaException.
+     */
+    @Override
+    public CompletableFuture<CallResponse> callMethodAsync(String method,
+        JsonData parameters,
+        UploadFile... files) {
+        return callMethodAsync(method, parameters, new HashMap<>(), defaultDeadline(), files);
+    }
+
+    @Override
+    public CompletableFuture<CallResponse> callMethodAsync(String method,
+        JsonData parameters,
+        Map<String, String> headers,
+        UploadFile... files) {
+        return callMethodAsync(method, parameters, headers, defaultDeadline(), files);
+    }
+
+    @Override
+    public CompletableFuture<CallResponse> callMethodAsync(String method,
+        JsonData parameters,
+        Map<String, String> headers,
+        Deadline deadline,
+        UploadFile... files) {
+        if (log.isDebugEnabled()) {
+            Object f = files.length == 0 ? "" : Arrays.asList(files);
+            log.debug("ENTER: SimbaChain.callMethodAsync: "
+                + "method = ["
+                + method
+                + "], parameters = ["
+                + parameters
+                + "], deadline = ["
+                + deadline
+                + "], files = ["
+                + f
+                + "]");
+        }
+        HttpPost post;
+        try {
+            deadline.check("callMethodAsync " + method);
+            post = createCall(method, parameters, headers, files);
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+        return sendCallAsync(post, deadline);
+    }
+
+    private CompletableFuture<CallResponse> sendCallAsync(HttpPost post, Deadline deadline) {
+        CompletableFuture<CallResponse> result = new CompletableFuture<>();
+        callMethodAsync(result, post, deadline, 1);
+        return result;
+    }
+
+    /**
+     * Invoke many methods of a smart contract, with up to DEFAULT_BULK_CONCURRENCY calls
+     * in flight.
+     *
+     * @param calls the calls to make.
+     * @return the result of each call, in the same order as the calls.
+     * @throws SimbaException if any call is invalid. No calls are made in this case.
+     */
+    @Override
+    public BatchResult callMethodBatch(List<MethodCall> calls) throws SimbaException {
+        return callMethodBatch(calls, DEFAULT_BULK_CONCURRENCY);
+    }
+
+    /**
+     * Invoke many methods of a smart contract.
+     *
+     * @param calls       the calls to make.
+     * @param concurrency the maximum number of calls in flight.
+     * @return the result of each call, in the same order as the calls.
+     * @throws SimbaException if any call is invalid. No calls are made in this case.
+     */
+    public BatchResult callMethodBatch(List<MethodCall> calls, int concurrency)
+        throws SimbaException {
+        return await("POST", callMethodBatchAsync(calls, concurrency));
+    }
+
+    @Override
+    public CompletableFuture<BatchResult> callMethodBatchAsync(List<MethodCall> calls) {
+        return callMethodBatchAsync(calls, DEFAULT_BULK_CONCURRENCY);
+    }
+
+    /**
+     * Invoke many methods of a smart contract without blocking the calling thread.
+     * All the calls are validated against the metadata before any are sent. They are then
+     * made with at most the given number in flight, starting the next as each completes.
+     * A call that fails does not stop the others, and its SimbaException is returned in
+     * the result. When submitting concurrently from one wallet, setting manageNonces on
+     * the config avoids nonce collisions.
+     *
+     * @param calls       the calls to make.
+     * @param concurrency the maximum number of calls in flight.
+     * @return a future that completes with the result of each call, in the same order as
+     * the calls, or with a SimbaException if any call is invalid.
+     */
+    public CompletableFuture<BatchResult> callMethodBatchAsync(final List<MethodCall> calls,
+        int concurrency) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.callMethodBatchAsync: "
+                + "calls = ["
+                + calls.size()
+                + "], concurrency = ["
+                + concurrency
+                + "]");
+        }
+        final List<Map<String, Object>> fields;
+        try {
+            fields = validateBatch(calls);
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+        final int size = calls.size();
+        final CallResponse[] responses = new CallResponse[size];
+        final SimbaException[] errors = new SimbaException[size];
+        final long[] latencies = new long[size];
+        final long[] starts = new long[size];
+        final long start = System.nanoTime();
+        final CompletableFuture<BatchResult> result = new CompletableFuture<>();
+        if (size == 0) {
+            result.complete(new BatchResult(responses, errors, latencies, 0));
+            return result;
+        }
+        final AtomicInteger remaining = new AtomicInteger(size);
+        fanOut(size, concurrency, i -> {
+            // the calls have been validated, so the request is built without validating again
+            MethodCall methodCall = calls.get(i);
+            starts[i] = System.nanoTime();
+            Deadline deadline = defaultDeadline();
+            HttpPost post;
+            try {
+                deadline.check("callMethodBatchAsync " + methodCall.getMethod());
+                post = createPost(methodUrl(methodCall.getMethod()), methodCall.getParameters(),
+                    fields.get(i), methodCall.getHeaders(), methodCall.getFiles());
+            } catch (SimbaException e) {
+                return failedFuture(e);
+            }
+            return sendCallAsync(post, deadline);
+        }, (i, response, throwable) -> {
+            long now = System.nanoTime();
+            latencies[i] = TimeUnit.NANOSECONDS.toMillis(now - starts[i]);
+            if (throwable == null) {
+                responses[i] = response;
+            } else {
+                Throwable cause = unwrap(throwable);
+                errors[i] = cause instanceof SimbaException
+                    ? (SimbaException) cause
+                    : new SimbaException("Error in method call: " + cause.getMessage(),
+                        SimbaException.SimbaError.EXECUTION_ERROR, cause);
+            }
+            if (remaining.decrementAndGet() == 0) {
+                BatchResult batch = new BatchResult(responses, errors, latencies,
+                    TimeUnit.NANOSECONDS.toMillis(now - start));
+                if (log.isDebugEnabled()) {
+                    log.debug("EXIT: SimbaChain.callMethodBatchAsync: returning " + batch);
+                }
+                result.complete(batch);
+            }
+            return true;
+        });
+        return result;
     }
 
     /**
@@ -166,17 +546,214 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
                 + transactionIdOrHash
                 + "]");
         }
-        ManifestWrapper wrapper = this.get(
-            String.format("%s%s%s/transaction/%s/bundle/?no_files=true", getEndpoint(), getvPath(),
-                getContract(), transactionIdOrHash), jsonResponseHandler(ManifestWrapper.class));
-        Manifest m = new Manifest();
-        m.setFiles(wrapper.getManifest());
+        ManifestCache cache = this.manifestCache;
+        Manifest m = cache == null ? null : cache.get(transactionIdOrHash);
+        if (m == null) {
+            ManifestWrapper wrapper = this.getHedged(bundleMetadataUrl(transactionIdOrHash),
+                jsonResponseHandler(ManifestWrapper.class));
+            m = toManifest(wrapper);
+            if (cache != null) {
+                cache.put(transactionIdOrHash, m);
+            }
+        }
         if (log.isDebugEnabled()) {
             log.debug("EXIT: SimbaChain.getBundleMetadataForTransaction: returning " + m);
         }
         return m;
     }
 
+    /**
+     * Get the metadata for a bundle without blocking the calling thread.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @return a future that completes with the Manifest or a SimbaException.
+     */
+    @Override
+    public CompletableFuture<Manifest> getBundleMetadataForTransactionAsync(
+        String transactionIdOrHash) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBundleMetadataForTransactionAsync: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "]");
+        }
+        ManifestCache cache = this.manifestCache;
+        if (cache != null) {
+            Manifest m = cache.get(transactionIdOrHash);
+            if (m != null) {
+                return CompletableFuture.completedFuture(m);
+            }
+        }
+        return this.getHedgedAsync(bundleMetadataUrl(transactionIdOrHash),
+            jsonResponseHandler(ManifestWrapper.class))
+                   .thenApply(wrapper -> {
+                       Manifest m = toManifest(wrapper);
+                       if (cache != null) {
+                           cache.put(transactionIdOrHash, m);
+                       }
+                       return m;
+                   });
+    }
+
+    /**
+     * Get the metadata for the bundles of many transactions.
+     *
+     * @param transactionIdsOrHashes The transaction IDs or hashes
+     * @return the manifests, in the same order as the IDs.
+     * @throws SimbaException if any manifest cannot be fetched.
+     */
+    @Override
+    public List<Manifest> getBundleMetadataForTransactions(List<String> transactionIdsOrHashes)
+        throws SimbaException {
+        return await("GET", getBundleMetadataForTransactionsAsync(transactionIdsOrHashes));
+    }
+
+    /**
+     * Get the metadata for the bundles of many transactions without blocking the calling
+     * thread, with up to DEFAULT_BULK_CONCURRENCY requests in flight.
+     *
+     * @param transactionIdsOrHashes The transaction IDs or hashes
+     * @return a future that completes with the manifests, in the same order as the IDs.
+     */
+    @Override
+    public CompletableFuture<List<Manifest>> getBundleMetadataForTransactionsAsync(
+        List<String> transactionIdsOrHashes) {
+        return getBundleMetadataForTransactionsAsync(transactionIdsOrHashes,
+            DEFAULT_BULK_CONCURRENCY);
+    }
+
+    /**
+     * Get the metadata for the bundles of many transactions without blocking the calling
+     * thread. Manifests in the manifest cache are returned without a request, and each
+     * distinct ID is only fetched once. The rest are fetched over pooled connections with at
+     * most the given number of requests in flight, starting the next as each completes.
+     * If a request fails, no more are started and the future fails with its exception.
+     *
+     * @param transactionIdsOrHashes The transaction IDs or hashes
+     * @param concurrency            the maximum number of requests in flight.
+     * @return a future that completes with the manifests, in the same order as the IDs.
+     */
+    public CompletableFuture<List<Manifest>> getBundleMetadataForTransactionsAsync(
+        List<String> transactionIdsOrHashes,
+        int concurrency) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBundleMetadataForTransactionsAsync: "
+                + "transactionIdsOrHashes = ["
+                + transactionIdsOrHashes
+                + "], concurrency = ["
+                + concurrency
+                + "]");
+        }
+        final Manifest[] manifests = new Manifest[transactionIdsOrHashes.size()];
+        final Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        ManifestCache cache = this.manifestCache;
+        for (int i = 0; i < manifests.length; i++) {
+            String id = transactionIdsOrHashes.get(i);
+            List<Integer> positions = missing.get(id);
+            if (positions == null) {
+                manifests[i] = cache == null ? null : cache.get(id);
+                if (manifests[i] != null) {
+                    continue;
+                }
+                positions = new ArrayList<>();
+                missing.put(id, positions);
+            }
+            positions.add(i);
+        }
+        final CompletableFuture<List<Manifest>> result = new CompletableFuture<>();
+        if (missing.isEmpty()) {
+            result.complete(Arrays.asList(manifests));
+            return result;
+        }
+        final List<String> ids = new ArrayList<>(missing.keySet());
+        final AtomicInteger remaining = new AtomicInteger(ids.size());
+        fanOut(ids.size(), concurrency, i -> getBundleMetadataForTransactionAsync(ids.get(i)),
+            (i, manifest, throwable) -> {
+                if (throwable != null) {
+                    result.completeExceptionally(unwrap(throwable));
+                    return false;
+                }
+                for (int position : missing.get(ids.get(i))) {
+                    manifests[position] = manifest;
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    result.complete(Arrays.asList(manifests));
+                }
+                return true;
+            });
+        return result;
+    }
+
+    /**
+     * Receives the outcome of each task run by {@link #fanOut}.
+     */
+    private interface FanOutCallback<T> {
+
+        /**
+         * Accept the outcome of a task.
+         *
+         * @param i         the index of the task.
+         * @param value     the value the task completed with, or null if it failed.
+         * @param throwable the failure, or null if it succeeded.
+         * @return false to stop starting further tasks.
+         */
+        boolean accept(int i, T value, Throwable throwable);
+    }
+
+    /**
+     * Run n asynchronous tasks with at most the given number in flight, starting the next
+     * as each completes. The callback is called once for each task that was started,
+     * on the thread that completed it.
+     */
+    private static <T> void fanOut(final int n,
+        int concurrency,
+        final IntFunction<CompletableFuture<T>> task,
+        final FanOutCallback<T> callback) {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                // loops rather than recursing when a task completes immediately
+                while (!stopped.get()) {
+                    int i = next.getAndIncrement();
+                    if (i >= n) {
+                        return;
+                    }
+                    CompletableFuture<T> future = task.apply(i);
+                    if (!future.isDone()) {
+                        future.whenComplete((value, throwable) -> {
+                            if (accept(i, value, throwable)) {
+                                run();
+                            }
+                        });
+                        return;
+                    }
+                    T value = null;
+                    Throwable throwable = null;
+                    try {
+                        value = future.join();
+                    } catch (RuntimeException e) {
+                        throwable = e;
+                    }
+                    if (!accept(i, value, throwable)) {
+                        return;
+                    }
+                }
+            }
+
+            private boolean accept(int i, T value, Throwable throwable) {
+                if (!callback.accept(i, value, throwable)) {
+                    stopped.set(true);
+                }
+                return !stopped.get();
+            }
+        };
+        for (int i = 0; i < Math.min(Math.max(1, concurrency), n); i++) {
+            worker.run();
+        }
+    }
+
     /**
      * Get the bundle file itself for a given transaction.
      * The output stream is closed once complete.
@@ -251,10 +828,41 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
                 + close
                 + "]");
         }
+        String key = bundleKey(transactionIdOrHash);
+        if (key != null) {
+            return cachedDownload(key, bundleUrl(transactionIdOrHash), null,
+                transactionIdOrHash, outputStream, close);
+        }
+        return this.getOnce(bundleUrl(transactionIdOrHash),
+            streamResponseHandler(outputStream, close));
+    }
 
-        return this.get(
-            String.format("%s%s%s/transaction/%s/bundle_raw/", getEndpoint(), getvPath(),
-                getContract(), transactionIdOrHash), streamResponseHandler(outputStream, close));
+    /**
+     * Get the bundle file itself for a given transaction without blocking the calling thread.
+     * The bundle is read into memory before being written to the output stream, so
+     * this is not suitable for very large bundles.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param outputStream        An output stream to write the bundle file to.
+     * @param close               Whether or not to close the output stream on completion.
+     * @return a future that completes with the number of bytes written to the output stream.
+     */
+    @Override
+    public CompletableFuture<Long> getBundleForTransactionAsync(String transactionIdOrHash,
+        OutputStream outputStream,
+        boolean close) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBundleForTransactionAsync: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "], outputStream = ["
+                + outputStream
+                + "], close = ["
+                + close
+                + "]");
+        }
+        return this.getOnceAsync(bundleUrl(transactionIdOrHash),
+            streamResponseHandler(outputStream, close));
     }
 
     /**
@@ -286,41 +894,301 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
                 + "]");
         }
 
-        return this.get(
-            String.format("%s%s%s/transaction/%s/fileByName/%s", getEndpoint(), getvPath(),
-                getContract(), transactionIdOrHash, fileName),
+        return this.getOnce(bundleFileUrl(transactionIdOrHash, fileName),
             streamResponseHandler(outputStream, close));
     }
 
     /**
-     * Query for a transactions and get back a paged result.
+     * Get a file from the bundle for a given transaction, verifying its hash and size
+     * against the manifest as it is written.
      *
-     * @return A PagedResult containing zero or more results.
-     * @throws SimbaException if an error occurs
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param file                the file from the bundle manifest.
+     * @param outputStream        An output stream to write the file to.
+     * @param close               Whether or not to close the output stream on completion.
+     * @return the number of bytes written to the output stream
+     * @throws SimbaException if an error occurs, or an INTEGRITY_ERROR if the file does
+     *                        not match the manifest.
      */
-    public PagedResult<Transaction> getTransactions() throws SimbaException {
+    @Override
+    public long getBundleFileForTransaction(String transactionIdOrHash,
+        ManifestFile file,
+        OutputStream outputStream,
+        boolean close) throws SimbaException {
         if (log.isDebugEnabled()) {
-            log.debug("ENTER: SimbaChain.getTransactions: " + "");
+            log.debug("ENTER: SimbaChain.getBundleFileForTransaction: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "], file = ["
+                + file
+                + "], outputStream = ["
+                + outputStream
+                + "], close = ["
+                + close
+                + "]");
+        }
+        if (!Digests.canVerify(file)) {
+            throw new SimbaException("Manifest file " + file.getName() + " has no hash to verify",
+                SimbaException.SimbaError.MESSAGE_ERROR);
         }
+        Digests.create(file.getAlg());
+        String url = bundleFileUrl(transactionIdOrHash, file.getName());
+        if (this.bundleCache != null) {
+            return cachedDownload(BundleCache.fileKey(file), url, file, null, outputStream,
+                close);
+        }
+        return this.getOnce(url, streamResponseHandler(outputStream, close, file));
+    }
 
-        String endpoint = String.format("%s%s%s/transaction/", getEndpoint(), getvPath(),
-            getContract());
-        Page page = this.get(endpoint, jsonResponseHandler(Page.class));
-        PagedResult<Transaction> result = new PagedResult<>();
-        result.setCount(page.getCount());
-        result.setNext(page.getNext());
-        result.setPrevious(page.getPrevious());
-        List<FullTransaction> txs = page.getResults();
-        for (FullTransaction tx : txs) {
-            tx.setApp(getContract());
+    /**
+     * Read the files in the bundle for a given transaction as the bundle is downloaded,
+     * matching and verifying them against the bundle manifest.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param handler             the handler for each file.
+     * @return the number of files read.
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public int readBundleForTransaction(String transactionIdOrHash,
+        BundleEntryHandler handler) throws SimbaException {
+        return readBundleForTransaction(transactionIdOrHash,
+            getBundleMetadataForTransaction(transactionIdOrHash), handler);
+    }
+
+    /**
+     * Read the files in the bundle for a given transaction as the bundle is downloaded.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param manifest            the bundle manifest, or null to not match or verify files.
+     * @param handler             the handler for each file.
+     * @return the number of files read.
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public int readBundleForTransaction(String transactionIdOrHash,
+        Manifest manifest,
+        BundleEntryHandler handler) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.readBundleForTransaction: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "], manifest = ["
+                + manifest
+                + "], handler = ["
+                + handler
+                + "]");
         }
-        result.setResults(txs);
+        return getOnce(bundleUrl(transactionIdOrHash), response -> {
+            int status = response.getStatusLine()
+                                 .getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status < 200 || status >= 300) {
+                throw responseException(response);
+            }
+            if (entity == null) {
+                return 0;
+            }
+            try (BundleReader reader = new BundleReader(entity.getContent(), manifest)) {
+                return reader.read(handler);
+            }
+        }, defaultDeadline());
+    }
+
+    /**
+     * Extract the files in the bundle for a given transaction into a directory as the
+     * bundle is downloaded.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param directory           the directory to extract into.
+     * @return the number of files extracted.
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public int extractBundleForTransaction(String transactionIdOrHash,
+        Path directory) throws SimbaException {
+        return readBundleForTransaction(transactionIdOrHash, BundleReader.extractTo(directory));
+    }
+
+    /**
+     * Download the bundle file for a given transaction to a file. The file is created,
+     * or replaced if it exists. If the connection fails part way through, the download
+     * resumes from the bytes already written.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param path                the file to write to.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public long getBundleForTransaction(String transactionIdOrHash,
+        Path path) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBundleForTransaction: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "], path = ["
+                + path
+                + "]");
+        }
+        String key = bundleKey(transactionIdOrHash);
+        if (key == null) {
+            return download(bundleUrl(transactionIdOrHash), path, defaultDeadline());
+        }
+        return cachedDownload(key, path, null, transactionIdOrHash,
+            () -> download(bundleUrl(transactionIdOrHash), path, defaultDeadline()));
+    }
+
+    /**
+     * Download the bundle file for a given transaction to a file channel, starting at
+     * position zero. If the channel already contains data, the download resumes from
+     * the end of that data. The channel is not closed.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param channel             the channel to write to.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public long getBundleForTransaction(String transactionIdOrHash,
+        FileChannel channel) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBundleForTransaction: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "], channel = ["
+                + channel
+                + "]");
+        }
+        return download(bundleUrl(transactionIdOrHash), channel, defaultDeadline());
+    }
+
+    /**
+     * Download a file from the bundle for a given transaction to a file. The file is created,
+     * or replaced if it exists. If the connection fails part way through, the download
+     * resumes from the bytes already written.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param fileName            the file name
+     * @param path                the file to write to.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public long getBundleFileForTransaction(String transactionIdOrHash,
+        String fileName,
+        Path path) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBundleFileForTransaction: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "], fileName = ["
+                + fileName
+                + "], path = ["
+                + path
+                + "]");
+        }
+        return download(bundleFileUrl(transactionIdOrHash, fileName), path, defaultDeadline());
+    }
+
+    /**
+     * Download a file from the bundle for a given transaction to a file. The file is
+     * created, or replaced if it exists. The size of the file is taken from the manifest.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param file                the file from the bundle manifest.
+     * @param path                the file to write to.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public long getBundleFileForTransaction(String transactionIdOrHash,
+        ManifestFile file,
+        Path path) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBundleFileForTransaction: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "], file = ["
+                + file
+                + "], path = ["
+                + path
+                + "]");
+        }
+        String url = bundleFileUrl(transactionIdOrHash, file.getName());
+        String key = this.bundleCache == null ? null : BundleCache.fileKey(file);
+        if (key != null) {
+            return cachedDownload(key, path, file, null, () -> file.getSize() <= 0
+                ? download(url, path, defaultDeadline())
+                : download(url, path, file.getSize(), defaultDeadline()));
+        }
+        if (file.getSize() <= 0) {
+            return download(url, path, defaultDeadline());
+        }
+        return download(url, path, file.getSize(), defaultDeadline());
+    }
+
+    /**
+     * Download a file from the bundle for a given transaction to a file channel, starting at
+     * position zero. If the channel already contains data, the download resumes from
+     * the end of that data. The channel is not closed.
+     *
+     * @param transactionIdOrHash The transaction ID or hash
+     * @param fileName            the file name
+     * @param channel             the channel to write to.
+     * @return the size of the file.
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public long getBundleFileForTransaction(String transactionIdOrHash,
+        String fileName,
+        FileChannel channel) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBundleFileForTransaction: "
+                + "transactionIdOrHash = ["
+                + transactionIdOrHash
+                + "], fileName = ["
+                + fileName
+                + "], channel = ["
+                + channel
+                + "]");
+        }
+        return download(bundleFileUrl(transactionIdOrHash, fileName), channel, defaultDeadline());
+    }
+
+    /**
+     * Query for a transactions and get back a paged result.
+     *
+     * @return A PagedResult containing zero or more results.
+     * @throws SimbaException if an error occurs
+     */
+    public PagedResult<Transaction> getTransactions() throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getTransactions: " + "");
+        }
+
+        Page page = this.get(transactionsUrl(), jsonResponseHandler(Page.class));
+        PagedResult<Transaction> result = toPagedResult(page);
         if (log.isDebugEnabled()) {
             log.debug("EXIT: SimbaChain.getTransactions: returning " + result);
         }
         return result;
     }
 
+    /**
+     * Query for a transactions without blocking the calling thread.
+     *
+     * @return a future that completes with a PagedResult containing zero or more results.
+     */
+    @Override
+    public CompletableFuture<PagedResult<Transaction>> getTransactionsAsync() {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getTransactionsAsync: " + "");
+        }
+        return this.getAsync(transactionsUrl(), jsonResponseHandler(Page.class))
+                   .thenApply(this::toPagedResult);
+    }
+
     /**
      * Query for a transactions on a particular method and get back a paged result.
      *
@@ -339,26 +1207,42 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
                 + "]");
         }
         validateQueryParameters(getMetadata(), method, params);
-        String endpoint = String.format("%s%s%s/%s/%s", getEndpoint(), getvPath(), getContract(),
-            method, params.toString());
-        Page page = this.get(endpoint, jsonResponseHandler(Page.class));
-        PagedResult<Transaction> result = new PagedResult<>();
-        result.setCount(page.getCount());
-        result.setNext(page.getNext());
-        result.setPrevious(page.getPrevious());
-        Method m = getMetadata().getMethod(method);
-        List<FullTransaction> txs = page.getResults();
-        for (FullTransaction tx : txs) {
-            tx.setApp(getContract());
-            tx.setMethodParameters(m.getParameterMap());
-        }
-        result.setResults(txs);
+        Page page = this.get(methodQueryUrl(method, params), jsonResponseHandler(Page.class));
+        PagedResult<Transaction> result = toPagedResult(page, getMetadata().getMethod(method));
         if (log.isDebugEnabled()) {
             log.debug("EXIT: SimbaChain.getTransactions: returning " + result);
         }
         return result;
     }
 
+    /**
+     * Query for a transactions on a particular method without blocking the calling thread.
+     *
+     * @param method the contract method to get transactions for.
+     * @param params the query parameters.
+     * @return a future that completes with a PagedResult containing zero or more results.
+     */
+    @Override
+    public CompletableFuture<PagedResult<Transaction>> getTransactionsAsync(String method,
+        Query.Params params) {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getTransactionsAsync: "
+                + "method = ["
+                + method
+                + "], params = ["
+                + params
+                + "]");
+        }
+        try {
+            validateQueryParameters(getMetadata(), method, params);
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+        final Method m = getMetadata().getMethod(method);
+        return this.getAsync(methodQueryUrl(method, params), jsonResponseHandler(Page.class))
+                   .thenApply(page -> toPagedResult(page, m));
+    }
+
     /**
      * Get the next paged result if available.
      *
@@ -372,13 +1256,23 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
             return null;
         }
         Page page = this.get(results.getNext(), jsonResponseHandler(Page.class));
-        PagedResult<Transaction> result = new PagedResult<>();
-        result.setCount(page.getCount());
-        result.setNext(page.getNext());
-        result.setPrevious(page.getPrevious());
-        List<FullTransaction> txns = page.getResults();
-        result.setResults(populate(txns));
-        return result;
+        return toPagedResult(page);
+    }
+
+    /**
+     * Get the next paged result if available without blocking the calling thread.
+     *
+     * @param results the current paged result.
+     * @return a future that completes with the next page or null if there is no next URL.
+     */
+    @Override
+    public CompletableFuture<PagedResult<Transaction>> nextAsync(
+        PagedResult<Transaction> results) {
+        if (results.getNext() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.getAsync(results.getNext(), jsonResponseHandler(Page.class))
+                   .thenApply(this::toPagedResult);
     }
 
     /**
@@ -394,13 +1288,24 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
             return null;
         }
         Page page = this.get(results.getPrevious(), jsonResponseHandler(Page.class));
-        PagedResult<Transaction> result = new PagedResult<>();
-        result.setCount(page.getCount());
-        result.setNext(page.getNext());
-        result.setPrevious(page.getPrevious());
-        List<FullTransaction> txns = page.getResults();
-        result.setResults(populate(txns));
-        return result;
+        return toPagedResult(page);
+    }
+
+    /**
+     * Get the previous paged result if available without blocking the calling thread.
+     *
+     * @param results the current paged result.
+     * @return a future that completes with the previous page or null if there is no previous
+     * URL.
+     */
+    @Override
+    public CompletableFuture<PagedResult<Transaction>> previousAsync(
+        PagedResult<Transaction> results) {
+        if (results.getPrevious() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return this.getAsync(results.getPrevious(), jsonResponseHandler(Page.class))
+                   .thenApply(this::toPagedResult);
     }
 
     /**
@@ -463,9 +1368,7 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
                                 .and("value", "1")
                                 .and("currency", "ether");
 
-        Funds f = this.post(
-            String.format("%s%s%s/balance/%s", getEndpoint(), getvPath(), getContract(), address),
-            data, jsonResponseHandler(Funds.class));
+        Funds f = this.post(balanceUrl(address), data, jsonResponseHandler(Funds.class));
         f.setPoa(false);
         f.setFaucetUrl(this.getMetadata()
                            .getFaucet());
@@ -504,9 +1407,7 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
         }
         String address = this.wallet.getAddress();
 
-        Balance b = this.get(
-            String.format("%s%s%s/balance/%s", getEndpoint(), getvPath(), getContract(), address),
-            jsonResponseHandler(Balance.class));
+        Balance b = this.get(balanceUrl(address), jsonResponseHandler(Balance.class));
         b.setPoa(false);
         if (log.isDebugEnabled()) {
             log.debug("EXIT: SimbaChain.getBalance: returning " + b);
@@ -514,6 +1415,42 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
         return b;
     }
 
+    /**
+     * Get the current balance of the account associated with the Wallet without blocking
+     * the calling thread.
+     *
+     * @return a future that completes with a Balance object.
+     */
+    @Override
+    public CompletableFuture<Balance> getBalanceAsync() {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: SimbaChain.getBalanceAsync: " + "");
+        }
+        if (this.getMetadata() == null) {
+            return failedFuture(new SimbaException("App Metadata not yet retrieved",
+                SimbaException.SimbaError.METADATA_NOT_AVAILABLE));
+        }
+        if (this.wallet == null) {
+            return failedFuture(
+                new SimbaException("No Wallet found", SimbaException.SimbaError.WALLET_NOT_FOUND));
+        }
+        if (this.getMetadata()
+                .isPoa()) {
+            return CompletableFuture.completedFuture(new Balance(true, "", "0"));
+        }
+        String address;
+        try {
+            address = this.wallet.getAddress();
+        } catch (SimbaException e) {
+            return failedFuture(e);
+        }
+        return this.getAsync(balanceUrl(address), jsonResponseHandler(Balance.class))
+                   .thenApply(b -> {
+                       b.setPoa(false);
+                       return b;
+                   });
+    }
+
     /**
      * Get the HTTP headers used by the client.
      *
@@ -525,6 +1462,35 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
         return this.apiHeaders;
     }
 
+    @Override
+    protected Header[] getApiHeaderArray() throws SimbaException {
+        return this.apiHeaderArray;
+    }
+
+    /**
+     * Initialize the client, retrieve the application metadata and build the URL
+     * prefixes used for requests.
+     *
+     * @throws SimbaException if an error occurs
+     */
+    @Override
+    public void init() throws SimbaException {
+        resetUrls();
+        super.init();
+        contractUrl();
+    }
+
+    @Override
+    public void setvPath(String vPath) {
+        super.setvPath(vPath);
+        resetUrls();
+    }
+
+    private void resetUrls() {
+        this.contractUrl = null;
+        this.methodUrls.clear();
+    }
+
     /**
      * Get the signing confirmation implementation.
      *
@@ -534,6 +1500,183 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
         return signingConfirmation;
     }
 
+    /**
+     * Get the cache for downloaded bundles and bundle files.
+     *
+     * @return the cache, or null if downloads are not cached.
+     */
+    public BundleCache getBundleCache() {
+        return bundleCache;
+    }
+
+    public void setBundleCache(BundleCache bundleCache) {
+        this.bundleCache = bundleCache;
+    }
+
+    /**
+     * Get the cache for bundle manifests.
+     *
+     * @return the cache, or null if manifests are not cached.
+     */
+    public ManifestCache getManifestCache() {
+        return manifestCache;
+    }
+
+    public void setManifestCache(ManifestCache manifestCache) {
+        this.manifestCache = manifestCache;
+    }
+
+    /**
+     * Get the cache key for the bundle of a transaction. This needs the transaction's
+     * bundle hash, which is fetched with a request for the transaction the first time and
+     * then remembered by the cache.
+     *
+     * @return the key, or null if there is no cache or the transaction has no bundle hash.
+     */
+    private String bundleKey(String transactionIdOrHash) throws SimbaException {
+        BundleCache cache = this.bundleCache;
+        if (cache == null) {
+            return null;
+        }
+        String bundleHash = cache.getBundleHash(transactionIdOrHash);
+        if (bundleHash == null) {
+            bundleHash = getTransaction(transactionIdOrHash).getBundleHash();
+            if (bundleHash == null) {
+                return null;
+            }
+            cache.putBundleHash(transactionIdOrHash, bundleHash);
+        }
+        return BundleCache.bundleKey(bundleHash);
+    }
+
+    /**
+     * Check a downloaded bundle against the manifest of its transaction before it is
+     * cached, so that a truncated or corrupt body is not stored under the bundle hash.
+     */
+    private void verifyBundle(String transactionIdOrHash, Path path) throws IOException {
+        Manifest manifest = getBundleMetadataForTransaction(transactionIdOrHash);
+        try (BundleReader reader = new BundleReader(Files.newInputStream(path), manifest)) {
+            reader.read(entry -> {
+                // reading verifies each file
+            });
+        }
+    }
+
+    /**
+     * Write a cached entry to the stream, or download it while writing it to both the
+     * stream and the cache. A file is verified against its manifest entry, and a whole
+     * bundle against the manifest of its transaction, before it is cached.
+     */
+    private long cachedDownload(String key,
+        String url,
+        ManifestFile verify,
+        String bundleOf,
+        OutputStream outputStream,
+        boolean close) throws SimbaException {
+        try {
+            try {
+                long size = this.bundleCache.copyTo(key, outputStream);
+                if (size >= 0) {
+                    return size;
+                }
+                long[] written = new long[1];
+                this.bundleCache.put(key, temp -> {
+                    try (OutputStream file = Files.newOutputStream(temp)) {
+                        written[0] = this.getOnce(url,
+                            streamResponseHandler(new TeeOutputStream(outputStream, file),
+                                false, verify));
+                    }
+                    if (bundleOf != null) {
+                        verifyBundle(bundleOf, temp);
+                    }
+                });
+                return written[0];
+            } finally {
+                if (close) {
+                    outputStream.close();
+                }
+            }
+        } catch (SimbaException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SimbaException("Error reading bundle cache: " + e.getMessage(),
+                SimbaException.SimbaError.FILE_ERROR, e);
+        }
+    }
+
+    /**
+     * Copy a cached entry to the file, or download the file and add it to the cache once
+     * it has been verified.
+     */
+    private long cachedDownload(String key,
+        Path path,
+        ManifestFile verify,
+        String bundleOf,
+        Download download) throws SimbaException {
+        try {
+            long size = this.bundleCache.copyTo(key, path);
+            if (size >= 0) {
+                return size;
+            }
+            size = download.download();
+            if (bundleOf != null) {
+                verifyBundle(bundleOf, path);
+            }
+            this.bundleCache.put(key, path, verify);
+            return size;
+        } catch (SimbaException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new SimbaException("Error reading bundle cache: " + e.getMessage(),
+                SimbaException.SimbaError.FILE_ERROR, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Download {
+
+        long download() throws SimbaException;
+    }
+
+    /**
+     * Writes to two streams.
+     */
+    private static final class TeeOutputStream extends FilterOutputStream {
+
+        private final OutputStream copy;
+
+        private TeeOutputStream(OutputStream out, OutputStream copy) {
+            super(out);
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            copy.flush();
+        }
+    }
+
+    private Transaction populate(FullTransaction txn) {
+        Method m = getMetadata().getMethod(txn.getMethod());
+        if (m != null) {
+            txn.setMethodParameters(m.getParameterMap());
+        }
+        return txn;
+    }
+
     private List<FullTransaction> populate(List<FullTransaction> txns) {
         List<FullTransaction> populated = new ArrayList<>();
         for (FullTransaction tx : txns) {
@@ -547,110 +1690,500 @@ public class SimbaChain extends Simba<SimbaChainConfig> {
         return populated;
     }
 
-    private CallResponse callMethod(int attempt,
-        String method,
+    private PagedResult<Transaction> toPagedResult(Page page) {
+        PagedResult<Transaction> result = new PagedResult<>();
+        result.setCount(page.getCount());
+        result.setNext(page.getNext());
+        result.setPrevious(page.getPrevious());
+        result.setResults(populate(page.getResults()));
+        return result;
+    }
+
+    private PagedResult<Transaction> toPagedResult(Page page, Method m) {
+        PagedResult<Transaction> result = new PagedResult<>();
+        result.setCount(page.getCount());
+        result.setNext(page.getNext());
+        result.setPrevious(page.getPrevious());
+        List<FullTransaction> txs = page.getResults();
+        for (FullTransaction tx : txs) {
+            tx.setApp(getContract());
+            tx.setMethodParameters(m.getParameterMap());
+        }
+        result.setResults(txs);
+        return result;
+    }
+
+    private Manifest toManifest(ManifestWrapper wrapper) {
+        Manifest m = new Manifest();
+        m.setFiles(wrapper.getManifest());
+        return m;
+    }
+
+    /**
+     * Get the URL prefix for this contract, e.g. https://api.simbachain.com/v1/mycontract/
+     * This is built once and reset if the version path changes.
+     */
+    private String contractUrl() {
+        String url = this.contractUrl;
+        if (url == null) {
+            url = getEndpoint() + getvPath() + getContract() + "/";
+            this.transactionUrl = url + "transaction/";
+            this.contractUrl = url;
+        }
+        return url;
+    }
+
+    private String transactionUrl(String txnId) {
+        contractUrl();
+        return this.transactionUrl + txnId;
+    }
+
+    private String transactionsUrl() {
+        contractUrl();
+        return this.transactionUrl;
+    }
+
+    private String signedTransactionUrl(String txnId) {
+        return transactionUrl(txnId) + "/";
+    }
+
+    private String methodUrl(String method) {
+        String url = this.methodUrls.get(method);
+        if (url == null) {
+            url = contractUrl() + method + "/";
+            this.methodUrls.put(method, url);
+        }
+        return url;
+    }
+
+    private String methodQueryUrl(String method, Query.Params params) {
+        return contractUrl() + method + "/" + params.toString();
+    }
+
+    private String bundleMetadataUrl(String transactionIdOrHash) {
+        return transactionUrl(transactionIdOrHash) + "/bundle/?no_files=true";
+    }
+
+    private String bundleUrl(String transactionIdOrHash) {
+        return transactionUrl(transactionIdOrHash) + "/bundle_raw/";
+    }
+
+    private String bundleFileUrl(String transactionIdOrHash, String fileName) {
+        return transactionUrl(transactionIdOrHash) + "/fileByName/" + fileName;
+    }
+
+    private String balanceUrl(String address) {
+        return contractUrl() + "balance/" + address;
+    }
+
+    /**
+     * Validate the parameters and create the request for a method call. The request is
+     * reused if the call is retried.
+     */
+    protected HttpPost createCall(String method,
         JsonData parameters,
         Map<String, String> headers,
         UploadFile... files) throws SimbaException {
+        Map<String, Object> fields = prepareFields(method, parameters, files);
+        return createPost(methodUrl(method), parameters, fields, headers, files);
+    }
+
+    /**
+     * Get the delay before submitting a new transaction for a call whose signing failed.
+     * The delay grows exponentially from retryTransactionSleep with jitter.
+     *
+     * @return the delay in milliseconds, or -1 if the call should not be retried.
+     */
+    private long transactionRetryDelay(HttpPost post,
+        SimbaException error,
+        int attempt,
+        Deadline deadline) {
+        if (attempt >= this.retrySignAttempts
+            || error.getType() == SimbaException.SimbaError.DEADLINE_EXCEEDED
+            || !post.getEntity()
+                    .isRepeatable()) {
+            return -1;
+        }
+        long delay = RetryPolicy.backoff(this.retryTransactionSleep,
+            this.retryTransactionSleep * MAX_TRANSACTION_BACKOFF_FACTOR, 2.0, attempt);
+        if (!deadline.allows(delay)) {
+            if (log.isWarnEnabled()) {
+                log.warn("WARN: SimbaChain.callMethod: No time left to retry before deadline.");
+            }
+            return -1;
+        }
         if (log.isDebugEnabled()) {
-            Object f = files.length == 0 ? "" : Arrays.asList(files);
-            log.debug("ENTER: SimbaChain.callMethod: "
-                + "attempt = ["
-                + attempt
-                + "], method = ["
-                + method
-                + "], parameters = ["
-                + parameters
-                + "], files = ["
-                + f
-                + "]");
+            log.debug("EXIT: SimbaChain.callMethod: trying again in "
+                + delay
+                + "ms with attempts left: "
+                + (this.retrySignAttempts - attempt));
+        }
+        return delay;
+    }
+
+    private void callMethodAsync(final CompletableFuture<CallResponse> result,
+        final HttpPost post,
+        final Deadline deadline,
+        final int attempt) {
+        if (result.isDone()) {
+            return;
+        }
+        this.executeAsync("POST", post, signingTransactionHandler, deadline)
+            .whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    result.completeExceptionally(unwrap(throwable));
+                    return;
+                }
+                if (!getSigningConfirmation().confirm(response)) {
+                    result.completeExceptionally(new SimbaException(response.toString(),
+                        SimbaException.SimbaError.SIGN_REJECTED));
+                    return;
+                }
+                signTransactionAsync(response, deadline).whenComplete((callResponse, t) -> {
+                    if (t == null) {
+                        result.complete(withDigests(callResponse, post));
+                        return;
+                    }
+                    Throwable cause = unwrap(t);
+                    long delay = cause instanceof SimbaException ? transactionRetryDelay(post,
+                        (SimbaException) cause, attempt, deadline) : -1;
+                    if (delay < 0) {
+                        result.completeExceptionally(cause);
+                        return;
+                    }
+                    post.reset();
+                    Scheduling.schedule(
+                        () -> callMethodAsync(result, post, deadline, attempt + 1), delay);
+                });
+            });
+    }
+
+    /**
+     * The prepare stage of a pipelined call. Create the transaction on the server from the
+     * request made by createCall and check it may be signed.
+     */
+    CompletableFuture<SigningTransaction> prepareAsync(String method,
+        HttpPost post,
+        Deadline deadline) {
+        try {
+            deadline.check("pipeline " + method);
+        } catch (SimbaException e) {
+            return failedFuture(e);
         }
+        CompletableFuture<SigningTransaction> result = new CompletableFuture<>();
+        this.executeAsync("POST", post, signingTransactionHandler, deadline)
+            .whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    result.completeExceptionally(unwrap(throwable));
+                } else if (!getSigningConfirmation().confirm(response)) {
+                    result.completeExceptionally(new SimbaException(response.toString(),
+                        SimbaException.SimbaError.SIGN_REJECTED));
+                } else {
+                    result.complete(response);
+                }
+            });
+        return result;
+    }
+
+    /**
+     * The submit stage of a pipelined call. Post the signed transaction. The digests of
+     * any files are taken from the method request, post.
+     */
+    CompletableFuture<CallResponse> submitAsync(SigningTransaction response,
+        String signed,
+        Deadline deadline,
+        HttpPost post) {
+        final String txnId = response.getId();
+        CompletableFuture<CallResponse> result = new CompletableFuture<>();
+        this.postAsync(signedTransactionUrl(txnId), JsonData.with("payload", signed),
+            Collections.emptyMap(), stringHandler, Collections.emptyMap(), deadline)
+            .whenComplete((signedResponse, throwable) -> {
+                if (throwable != null) {
+                    result.completeExceptionally(unwrap(throwable));
+                } else {
+                    result.complete(withDigests(new CallResponse(txnId), post));
+                }
+            });
+        return result;
+    }
 
+    /**
+     * Get the nonce manager for the wallet, whether or not nonces are managed for calls
+     * made outside a pipeline.
+     */
+    NonceManager pipelineNonces() throws SimbaException {
         if (this.wallet == null) {
             throw new SimbaException("No Wallet found", SimbaException.SimbaError.WALLET_NOT_FOUND);
         }
-        validateParameters(getMetadata(), method, parameters, files.length > 0);
-        JsonData realParams = parameters.copy();
-        realParams.and("from", this.wallet.getAddress());
+        return sharedNonces();
+    }
+
+    /**
+     * Get the nonce the server put in the transaction, or null if there is none.
+     */
+    BigInteger serverNonce(SigningTransaction response) {
+        String nonce = response.getPayload()
+                               .getRaw()
+                               .getNonce();
+        if (nonce == null || nonce.trim()
+                                  .length() == 0) {
+            return null;
+        }
+        return getBitInt(nonce);
+    }
+
+    int getRetrySignAttempts() {
+        return retrySignAttempts;
+    }
 
-        String endpoint = String.format("%s%s%s/%s/", getEndpoint(), getvPath(), getContract(),
-            method);
-        SigningTransaction response = this.post(endpoint, realParams,
-            jsonResponseHandler(SigningTransaction.class), headers, files);
-        if (!getSigningConfirmation().confirm(response)) {
-            throw new SimbaException(response.toString(), SimbaException.SimbaError.SIGN_REJECTED);
+    /**
+     * Add the digests computed while uploading the files of the method request to the
+     * response.
+     */
+    private CallResponse withDigests(CallResponse response, HttpPost post) {
+        HttpEntity entity = post.getEntity();
+        if (!(entity instanceof UploadEntity) || getUploadDigestAlgorithms().isEmpty()) {
+            return response;
         }
+        response.setFileDigests(((UploadEntity) entity).getFileDigests());
+        return response;
+    }
+
+    private CompletableFuture<CallResponse> signTransactionAsync(final SigningTransaction response,
+        final Deadline deadline) {
+        CompletableFuture<CallResponse> result = new CompletableFuture<>();
+        final NonceManager nonces;
+        final BigInteger nonce;
         try {
-            return signTransaction(response, null, this.retrySignAttempts);
+            nonces = nonceManager();
+            nonce = firstNonce(nonces, response);
         } catch (SimbaException e) {
-            attempt -= 1;
-            if(attempt == 0) {
-                if (log.isDebugEnabled()) {
-                    log.warn("SimbaChain.callMethod throwing exception", e);
+            result.completeExceptionally(e);
+            return result;
+        }
+        signTransactionAsync(result, response, nonces, nonce, 1, deadline);
+        return result;
+    }
+
+    private void signTransactionAsync(final CompletableFuture<CallResponse> result,
+        final SigningTransaction response,
+        final NonceManager nonces,
+        final BigInteger nonce,
+        final int attempt,
+        final Deadline deadline) {
+        final String txnId = response.getId();
+        signPayloadAsync(response, nonce).thenCompose(
+            signed -> this.postAsync(signedTransactionUrl(txnId), JsonData.with("payload", signed),
+                Collections.emptyMap(), stringHandler, Collections.emptyMap(), deadline))
+            .whenComplete((signedResponse, throwable) -> {
+                if (throwable == null) {
+                    if (nonces != null) {
+                        nonces.confirm(nonce);
+                    }
+                    CallResponse mr = new CallResponse(txnId);
+                    if (log.isDebugEnabled()) {
+                        log.debug("EXIT: SimbaChain.callMethodAsync: returning " + mr);
+                    }
+                    result.complete(mr);
+                    return;
                 }
-                throw e;
-            }
+                Throwable cause = unwrap(throwable);
+                BigInteger retryNonce = null;
+                if (cause instanceof SimbaException) {
+                    retryNonce = nextNonce(nonces, response, nonce, (SimbaException) cause,
+                        attempt < this.retrySignAttempts);
+                } else if (nonces != null) {
+                    nonces.abandon(nonce);
+                }
+                if (retryNonce != null) {
+                    signTransactionAsync(result, response, nonces, retryNonce, attempt + 1,
+                        deadline);
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            });
+    }
+
+    /**
+     * Validate all the calls in a batch before any are made.
+     *
+     * @return the fields to add to the parameters of each call.
+     */
+    private List<Map<String, Object>> validateBatch(List<MethodCall> calls)
+        throws SimbaException {
+        List<Map<String, Object>> fields = new ArrayList<>(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            MethodCall call = calls.get(i);
             try {
-                Thread.sleep(this.retryTransactionSleep);
-            } catch (InterruptedException e1) {
-                if(log.isWarnEnabled()) {
-                    log.warn("WARN: SimbaChain.callMethod: Transaction retry sleep was interrupted.");
+                fields.add(prepareFields(call.getMethod(), call.getParameters(), call.getFiles()));
+            } catch (SimbaException e) {
+                if (e.getType() == SimbaException.SimbaError.WALLET_NOT_FOUND) {
+                    throw e;
                 }
-                throw e;
-            }
-            if (log.isDebugEnabled()) {
-                log.debug("EXIT: SimbaChain.callMethod: tryng again with attempts left: " + attempt);
+                throw new SimbaException("Invalid call " + i + " in batch: " + e.getMessage(),
+                    e.getType(), e);
             }
-            return callMethod(attempt, method, parameters, headers, files);
         }
+        return fields;
     }
-    
-    private CallResponse signTransaction(SigningTransaction response, String suggestedNonce, int attempt) throws SimbaException {
-        String txnId = response.getId();
+
+    /**
+     * Validate the parameters and get the fields added to them when calling a method.
+     */
+    private Map<String, Object> prepareFields(String method,
+        JsonData parameters,
+        UploadFile... files) throws SimbaException {
+        if (this.wallet == null) {
+            throw new SimbaException("No Wallet found", SimbaException.SimbaError.WALLET_NOT_FOUND);
+        }
+        validateParameters(getMetadata(), method, parameters, files.length > 0);
+        return Collections.singletonMap("from", this.wallet.getAddress());
+    }
+
+    private String signPayload(SigningTransaction response, BigInteger nonce)
+        throws SimbaException {
+        return this.wallet.sign(rawTransaction(response, nonce));
+    }
+
+    /**
+     * Sign on the wallet's signing executor, so that the thread completing an HTTP
+     * request is not blocked while the signature is computed.
+     */
+    CompletableFuture<String> signPayloadAsync(SigningTransaction response, BigInteger nonce) {
+        return this.wallet.signAsync(rawTransaction(response, nonce));
+    }
+
+    private RawTransaction rawTransaction(SigningTransaction response, BigInteger nonce) {
         Payload payload = response.getPayload();
         Raw raw = payload.getRaw();
 
-        String nonce = suggestedNonce != null ? suggestedNonce : raw.getNonce();
         String gasPrice = raw.getGasPrice();
         String gasLimit = raw.getGasLimit();
         BigInteger value = getBitInt(raw.getValue());
         String to = raw.getTo();
         String data = raw.getData();
 
-        RawTransaction rt = RawTransaction.createTransaction(getBitInt(nonce),
-            getBitInt(gasPrice), getBitInt(gasLimit), to, value, data);
-        String signed = this.wallet.sign(rt);
+        return RawTransaction.createTransaction(nonce, getBitInt(gasPrice), getBitInt(gasLimit),
+            to, value, data);
+    }
 
-        try {
-            String signedResponse = this.post(
-                String.format("%s%s%s/transaction/%s/", getEndpoint(), getvPath(), getContract(),
-                    txnId), JsonData.with("payload", signed), stringResponseHandler());
-            CallResponse mr = new CallResponse(txnId);
-            if (log.isDebugEnabled()) {
-                log.debug("EXIT: SimbaChain.callMethod: returning " + mr);
+    BigInteger suggestedNonce(SimbaException e) {
+        Object suggestion = e.getProperty("suggested_nonce");
+        if (suggestion != null) {
+            return getBitInt(suggestion.toString());
+        }
+        return null;
+    }
+
+    /**
+     * Get the nonce manager for the wallet, or null if nonces are not managed.
+     */
+    private NonceManager nonceManager() throws SimbaException {
+        if (!this.manageNonces) {
+            return null;
+        }
+        return sharedNonces();
+    }
+
+    /**
+     * Get the shared nonce manager for the wallet on the app's network, attaching to it on
+     * first use. The instance detaches from it in close().
+     */
+    private synchronized NonceManager sharedNonces() throws SimbaException {
+        NonceManager nonces = this.nonceManager;
+        if (nonces == null) {
+            Metadata metadata = getMetadata();
+            nonces = NonceManager.forAddress(getEndpoint(),
+                metadata == null ? null : metadata.getNetwork(), this.wallet.getAddress());
+            this.nonceManager = nonces;
+        }
+        return nonces;
+    }
+
+    /**
+     * Get the nonce to sign the transaction with on the first attempt.
+     */
+    private BigInteger firstNonce(NonceManager nonces, SigningTransaction response) {
+        BigInteger serverNonce = serverNonce(response);
+        if (nonces == null) {
+            return serverNonce == null ? BigInteger.ZERO : serverNonce;
+        }
+        return nonces.allocate(serverNonce);
+    }
+
+    /**
+     * Get the nonce to try again with after the signed transaction failed,
+     * or null if the failure should be thrown.
+     */
+    private BigInteger nextNonce(NonceManager nonces,
+        SigningTransaction response,
+        BigInteger nonce,
+        SimbaException e,
+        boolean canRetry) {
+        boolean nonceError = e.getType() == SimbaException.SimbaError.TRANSACTION_ERROR;
+        if (nonces == null) {
+            if (!nonceError || !canRetry) {
+                return null;
             }
-            return mr;
-        } catch (SimbaException e) {
-            attempt -= 1;
-            if (e.getType() == SimbaException.SimbaError.TRANSACTION_ERROR && attempt > 0) {
-                String suggested = null;
-                Object suggestion = e.getProperty("suggested_nonce");
-                if (suggestion != null) {
-                    suggested = suggestion.toString();
+            BigInteger suggested = suggestedNonce(e);
+            return suggested != null ? suggested : firstNonce(null, response);
+        }
+        if (nonceError) {
+            nonces.reject(nonce, suggestedNonce(e));
+            return canRetry ? nonces.allocate(null) : null;
+        }
+        if (e.getCause() instanceof IOException) {
+            // the transaction may have been accepted
+            nonces.abandon(nonce);
+        } else {
+            nonces.release(nonce);
+        }
+        return null;
+    }
+
+    private CallResponse signTransaction(SigningTransaction response, Deadline deadline)
+        throws SimbaException {
+        String txnId = response.getId();
+        NonceManager nonces = nonceManager();
+        BigInteger nonce = firstNonce(nonces, response);
+        for (int attempt = 1; ; attempt++) {
+            String signed;
+            try {
+                signed = signPayload(response, nonce);
+            } catch (SimbaException e) {
+                if (nonces != null) {
+                    nonces.release(nonce);
                 }
+                throw e;
+            }
+            try {
+                String signedResponse = this.post(signedTransactionUrl(txnId),
+                    JsonData.with("payload", signed), Collections.emptyMap(), stringHandler,
+                    Collections.emptyMap(), deadline);
+                if (nonces != null) {
+                    nonces.confirm(nonce);
+                }
+                CallResponse mr = new CallResponse(txnId);
                 if (log.isDebugEnabled()) {
-                    log.debug("EXIT: SimbaChain.signTransaction: tryng again with attempts left: " + attempt);
+                    log.debug("EXIT: SimbaChain.callMethod: returning " + mr);
+                }
+                return mr;
+            } catch (SimbaException e) {
+                nonce = nextNonce(nonces, response, nonce, e, attempt < this.retrySignAttempts);
+                if (nonce == null) {
+                    if (log.isDebugEnabled()) {
+                        log.warn("SimbaChain.signTransaction throwing exception", e);
+                    }
+                    throw e;
                 }
-                return signTransaction(response, suggested, attempt);
-            } else {
                 if (log.isDebugEnabled()) {
-                    log.warn("SimbaChain.signTransaction throwing exception", e);
+                    log.debug("EXIT: SimbaChain.signTransaction: trying again with attempts left: "
+                        + (this.retrySignAttempts - attempt));
                 }
-                throw e;
             }
         }
     }
-    
+
     private BigInteger getBitInt(String value) {
         if(value == null || value.trim().length() == 0) {
             return BigInteger.ZERO;
@@ -22,7 +22,14 @@
 
 package com.simbachain.simba.com;
 
+import java.util.Collections;
+import java.util.List;
+
+import com.simbachain.simba.BundleCache;
+import com.simbachain.simba.ManifestCache;
 import com.simbachain.simba.SimbaConfig;
+import com.simbachain.simba.http.HttpConfig;
+import com.simbachain.simba.http.RateLimitPolicy;
 import com.simbachain.wallet.Wallet;
 
 /**
@@ -35,6 +42,13 @@ public class SimbaChainConfig implements SimbaConfig {
     private String managementKey;
     private int retrySignAttempts;
     private long retryTransactionSleep;
+    private HttpConfig httpConfig = new HttpConfig();
+    private long defaultDeadlineMillis = 0;
+    private RateLimitPolicy rateLimitPolicy = new RateLimitPolicy();
+    private List<String> uploadDigestAlgorithms = Collections.emptyList();
+    private BundleCache bundleCache;
+    private ManifestCache manifestCache;
+    private boolean manageNonces = false;
 
     /**
      * Create a SimbaChain config.
@@ -45,7 +59,8 @@ public class SimbaChainConfig implements SimbaConfig {
      * 'retrySignAttempts'.
      * 
      * 'retryTransactionSleep' determines how many milliseconds to sleep between attempting
-     * to submit the a new transaction with the same payload.
+     * to submit the a new transaction with the same payload. The sleep doubles on each
+     * attempt and is randomised between half and all of that value.
      * 
      * All retries and sleeps takes place inside the 'callMethod' method.
      * 
@@ -97,4 +112,109 @@ public class SimbaChainConfig implements SimbaConfig {
     public long getRetryTransactionSleep() {
         return retryTransactionSleep;
     }
+
+    /**
+     * Get the config for the HTTP transport. The defaults are suitable for a
+     * moderate number of concurrent calls. Increase the pool sizes if many
+     * calls are made concurrently from a single instance.
+     *
+     * @return the HTTP config.
+     */
+    @Override
+    public HttpConfig getHttpConfig() {
+        return httpConfig;
+    }
+
+    public void setHttpConfig(HttpConfig httpConfig) {
+        this.httpConfig = httpConfig;
+    }
+
+    /**
+     * Get the time budget in milliseconds for calls that are not given a Deadline.
+     * The budget covers every request, retry and sleep made by the call.
+     * Zero, the default, means no deadline.
+     *
+     * @return the default deadline in milliseconds.
+     */
+    public long getDefaultDeadlineMillis() {
+        return defaultDeadlineMillis;
+    }
+
+    public void setDefaultDeadlineMillis(long defaultDeadlineMillis) {
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+    }
+
+    /**
+     * Get the policy for pacing requests. All SimbaChain instances using the same API key
+     * share one rate limiter, which is created from the policy of the first instance.
+     * A different policy for the same key is ignored with a warning. The limiter is
+     * dropped once every instance using it has been closed.
+     *
+     * @return the rate limit policy.
+     */
+    public RateLimitPolicy getRateLimitPolicy() {
+        return rateLimitPolicy;
+    }
+
+    public void setRateLimitPolicy(RateLimitPolicy rateLimitPolicy) {
+        this.rateLimitPolicy = rateLimitPolicy;
+    }
+
+    /**
+     * Get the digest algorithms computed over files attached to method calls, e.g.
+     * sha256 or keccak256. The digests are computed as the files are sent and are
+     * returned in the CallResponse. Empty, the default, means no digests are computed.
+     *
+     * @return the algorithm names.
+     */
+    public List<String> getUploadDigestAlgorithms() {
+        return uploadDigestAlgorithms;
+    }
+
+    public void setUploadDigestAlgorithms(List<String> uploadDigestAlgorithms) {
+        this.uploadDigestAlgorithms = uploadDigestAlgorithms;
+    }
+
+    /**
+     * Get the local cache for downloaded bundles and bundle files. Null, the default,
+     * means downloads are not cached.
+     *
+     * @return the cache.
+     */
+    public BundleCache getBundleCache() {
+        return bundleCache;
+    }
+
+    public void setBundleCache(BundleCache bundleCache) {
+        this.bundleCache = bundleCache;
+    }
+
+    /**
+     * Get the cache for bundle manifests. Null, the default, means manifests are fetched
+     * on every call.
+     *
+     * @return the cache.
+     */
+    public ManifestCache getManifestCache() {
+        return manifestCache;
+    }
+
+    public void setManifestCache(ManifestCache manifestCache) {
+        this.manifestCache = manifestCache;
+    }
+
+    /**
+     * Whether nonces are allocated on the client rather than taken from the transaction
+     * built by the server. This avoids nonce collisions, and so signing retries, when
+     * many transactions are submitted concurrently from one wallet. Defaults to false.
+     *
+     * @return true if nonces are managed on the client.
+     */
+    public boolean isManageNonces() {
+        return manageNonces;
+    }
+
+    public void setManageNonces(boolean manageNonces) {
+        this.manageNonces = manageNonces;
+    }
 }
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.com;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.simbachain.SimbaException;
+import com.simbachain.simba.CallResponse;
+import com.simbachain.simba.Deadline;
+import com.simbachain.simba.JsonData;
+import com.simbachain.simba.SimbaClient.UploadFile;
+import com.simbachain.wallet.Signing;
+import org.apache.http.client.methods.HttpPost;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Submits method calls from one wallet in three overlapping stages, so that many
+ * transactions are in flight at once.
+ * <p>
+ * In the prepare stage the method is posted and the server returns the transaction to
+ * sign. Many calls can be in this stage concurrently. Prepared transactions are queued
+ * for the sign stage, where a single thread gives each one the next nonce from the
+ * wallet's NonceManager and signs it on the wallet's signing executor, with up to one
+ * signature per processor being computed at once. Signed transactions are posted in the
+ * submit stage in nonce order, with a bounded number of posts in flight.
+ * <p>
+ * The number of calls in the pipeline is bounded, and submit blocks while it is full.
+ * If the server rejects a nonce, the transaction is signed again with a new nonce up to
+ * the retrySignAttempts on the config. Other failures complete the call's future
+ * exceptionally.
+ */
+public class TransactionPipeline implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionPipeline.class);
+
+    /**
+     * The default maximum number of calls in the pipeline.
+     */
+    public static final int DEFAULT_MAX_PENDING = 64;
+
+    /**
+     * The default maximum number of signed transactions being posted at once.
+     */
+    public static final int DEFAULT_MAX_SUBMITTING = 16;
+
+    private final SimbaChain simba;
+    private final NonceManager nonces;
+    private final int maxPending;
+    private final Semaphore pending;
+    private final Semaphore submitting;
+    private final BlockingQueue<Call> signQueue = new LinkedBlockingQueue<>();
+    private final Thread signer;
+    private volatile boolean closed = false;
+    private volatile boolean stopped = false;
+
+    /**
+     * Create a pipeline with the default limits.
+     *
+     * @param simba the client to submit with. It must have a wallet.
+     * @throws SimbaException if there is no wallet.
+     */
+    public TransactionPipeline(SimbaChain simba) throws SimbaException {
+        this(simba, DEFAULT_MAX_PENDING, DEFAULT_MAX_SUBMITTING);
+    }
+
+    /**
+     * Create a pipeline.
+     *
+     * @param simba         the client to submit with. It must have a wallet.
+     * @param maxPending    the maximum number of calls in the pipeline.
+     * @param maxSubmitting the maximum number of signed transactions being posted at once.
+     * @throws SimbaException if there is no wallet.
+     */
+    public TransactionPipeline(SimbaChain simba, int maxPending, int maxSubmitting)
+        throws SimbaException {
+        if (maxPending < 1 || maxSubmitting < 1) {
+            throw new IllegalArgumentException("Pipeline limits must be at least 1");
+        }
+        this.simba = simba;
+        this.nonces = simba.pipelineNonces();
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+        this.submitting = new Semaphore(maxSubmitting);
+        this.signer = new Thread(this::signLoop, "simba-pipeline-signer");
+        this.signer.setDaemon(true);
+        this.signer.start();
+    }
+
+    /**
+     * Submit a method call, blocking while the pipeline is full.
+     *
+     * @param method     the method name.
+     * @param parameters the parameters.
+     * @param files      files to upload with the request.
+     * @return a future that completes with the CallResponse or a SimbaException.
+     * @throws SimbaException if the pipeline is closed or the wait is interrupted.
+     */
+    public CompletableFuture<CallResponse> submit(String method,
+        JsonData parameters,
+        UploadFile... files) throws SimbaException {
+        return submit(method, parameters, new HashMap<>(), simba.defaultDeadline(), files);
+    }
+
+    /**
+     * Submit a method call, blocking while the pipeline is full.
+     *
+     * @param method     the method name.
+     * @param parameters the parameters.
+     * @param headers    headers to add to the method request.
+     * @param deadline   the deadline for the call, including the wait to enter the pipeline.
+     * @param files      files to upload with the request.
+     * @return a future that completes with the CallResponse or a SimbaException.
+     * @throws SimbaException if the pipeline is closed, the deadline passes before there is
+     *                        room in the pipeline or the wait is interrupted.
+     */
+    public CompletableFuture<CallResponse> submit(String method,
+        JsonData parameters,
+        Map<String, String> headers,
+        Deadline deadline,
+        UploadFile... files) throws SimbaException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: TransactionPipeline.submit: "
+                + "method = ["
+                + method
+                + "], deadline = ["
+                + deadline
+                + "], pending = ["
+                + getPending()
+                + "]");
+        }
+        if (closed) {
+            throw closedException();
+        }
+        try {
+            if (!pending.tryAcquire(deadline.remainingMillis(), TimeUnit.MILLISECONDS)) {
+                throw deadline.exceeded("pipeline wait for " + method);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new SimbaException("Interrupted during pipeline wait for " + method,
+                SimbaException.SimbaError.EXECUTION_ERROR, e);
+        }
+        CompletableFuture<CallResponse> result = new CompletableFuture<>();
+        result.whenComplete((response, throwable) -> pending.release());
+        final HttpPost post;
+        CompletableFuture<SigningTransaction> prepare;
+        try {
+            post = simba.createCall(method, parameters, headers, files);
+            prepare = simba.prepareAsync(method, post, deadline);
+        } catch (SimbaException | RuntimeException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        prepare.whenComplete((prepared, throwable) -> {
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                sign(result, prepared, 1, deadline, post);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Get the number of calls in the pipeline.
+     *
+     * @return the number of calls submitted and not yet complete.
+     */
+    public int getPending() {
+        return maxPending - pending.availablePermits();
+    }
+
+    /**
+     * Stop accepting calls and wait for the calls in the pipeline to complete.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pending.acquireUninterruptibly(maxPending);
+        pending.release(maxPending);
+        stopped = true;
+        signer.interrupt();
+    }
+
+    /**
+     * Queue a prepared transaction for the sign stage.
+     */
+    private void sign(CompletableFuture<CallResponse> result,
+        SigningTransaction prepared,
+        int attempt,
+        Deadline deadline,
+        HttpPost post) {
+        if (stopped) {
+            result.completeExceptionally(closedException());
+            return;
+        }
+        signQueue.add(new Call(result, prepared, attempt, deadline, post));
+        if (stopped) {
+            // the sign stage stopped while the call was being queued
+            failQueued();
+        }
+    }
+
+    /**
+     * Fail the calls waiting for the sign stage.
+     */
+    private void failQueued() {
+        Call call;
+        while ((call = signQueue.poll()) != null) {
+            fail(call, closedException());
+        }
+    }
+
+    /**
+     * Fail a call, releasing its nonce if it has one.
+     */
+    private void fail(Call call, Throwable cause) {
+        if (call.nonce != null) {
+            nonces.release(call.nonce);
+        }
+        call.result.completeExceptionally(cause);
+    }
+
+    private static SimbaException closedException() {
+        return new SimbaException("Pipeline is closed", SimbaException.SimbaError.EXECUTION_ERROR);
+    }
+
+    /**
+     * The sign stage. Nonces are allocated on this thread, and a window of transactions is
+     * signed in parallel. Each is posted once it and all those before it are signed,
+     * so transactions are submitted in nonce order.
+     */
+    private void signLoop() {
+        Deque<Call> window = new ArrayDeque<>();
+        int parallelism = Signing.getParallelism();
+        try {
+            while (true) {
+                Call call = window.isEmpty() ? signQueue.take() : signQueue.poll();
+                if (call != null) {
+                    if (startSigning(call)) {
+                        window.add(call);
+                    }
+                    if (window.size() < parallelism) {
+                        continue;
+                    }
+                }
+                if (!window.isEmpty()) {
+                    submit(window.poll());
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } finally {
+            stopped = true;
+            for (Call call : window) {
+                fail(call, closedException());
+            }
+            failQueued();
+        }
+    }
+
+    /**
+     * Allocate a nonce for the call and start signing it, returning false if the call has
+     * failed.
+     */
+    private boolean startSigning(Call call) {
+        try {
+            call.deadline.check("pipeline sign " + call.prepared.getId());
+            // after a rejection the nonce manager has the server's suggestion
+            call.nonce = nonces.allocate(
+                call.attempt == 1 ? simba.serverNonce(call.prepared) : null);
+            call.signed = simba.signPayloadAsync(call.prepared, call.nonce);
+            return true;
+        } catch (SimbaException | RuntimeException e) {
+            // e.g., a malformed payload, which fails this call but not the pipeline
+            fail(call, e);
+            return false;
+        }
+    }
+
+    /**
+     * Wait for the call to be signed and post it.
+     */
+    private void submit(Call call) throws InterruptedException {
+        String signed;
+        try {
+            signed = call.signed.get();
+        } catch (ExecutionException e) {
+            fail(call, e.getCause());
+            return;
+        }
+        // bounds the posts in flight, holding back later nonces until there is room
+        submitting.acquire();
+        final BigInteger nonce = call.nonce;
+        CompletableFuture<CallResponse> submitted;
+        try {
+            submitted = simba.submitAsync(call.prepared, signed, call.deadline, call.post);
+        } catch (RuntimeException e) {
+            submitting.release();
+            fail(call, e);
+            return;
+        }
+        submitted.whenComplete((response, throwable) -> {
+                 submitting.release();
+                 if (throwable == null) {
+                     nonces.confirm(nonce);
+                     if (log.isDebugEnabled()) {
+                         log.debug("EXIT: TransactionPipeline.submit: returning " + response);
+                     }
+                     call.result.complete(response);
+                     return;
+                 }
+                 if (!(throwable instanceof SimbaException)) {
+                     nonces.abandon(nonce);
+                     call.result.completeExceptionally(throwable);
+                     return;
+                 }
+                 SimbaException e = (SimbaException) throwable;
+                 if (e.getType() == SimbaException.SimbaError.TRANSACTION_ERROR) {
+                     nonces.reject(nonce, simba.suggestedNonce(e));
+                     if (call.attempt < simba.getRetrySignAttempts()) {
+                         if (log.isDebugEnabled()) {
+                             log.debug("TransactionPipeline.submit: nonce "
+                                 + nonce
+                                 + " rejected, signing again with attempts left: "
+                                 + (simba.getRetrySignAttempts() - call.attempt));
+                         }
+                         sign(call.result, call.prepared, call.attempt + 1, call.deadline,
+                             call.post);
+                         return;
+                     }
+                 } else if (e.getCause() instanceof IOException) {
+                     // the transaction may have been accepted
+                     nonces.abandon(nonce);
+                 } else {
+                     nonces.release(nonce);
+                 }
+                 call.result.completeExceptionally(e);
+             });
+    }
+
+    /**
+     * A prepared call moving through the sign and submit stages.
+     */
+    private static final class Call {
+
+        private final CompletableFuture<CallResponse> result;
+        private final SigningTransaction prepared;
+        private final int attempt;
+        private final Deadline deadline;
+        private final HttpPost post;
+        private BigInteger nonce;
+        private CompletableFuture<String> signed;
+
+        private Call(CompletableFuture<CallResponse> result,
+            SigningTransaction prepared,
+            int attempt,
+            Deadline deadline,
+            HttpPost post) {
+            this.result = result;
+            this.prepared = prepared;
+            this.attempt = attempt;
+            this.deadline = deadline;
+            this.post = post;
+        }
+    }
+}
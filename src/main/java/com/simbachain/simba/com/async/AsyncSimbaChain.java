@@ -35,6 +35,7 @@ import com.simbachain.simba.JsonData;
 import com.simbachain.simba.Transaction;
 import com.simbachain.simba.com.SigningConfirmation;
 import com.simbachain.simba.com.SimbaChain;
+import com.simbachain.simba.http.HttpTransport;
 
 /**
  * A Simba class that controls how transactions are submitted to simbachain
@@ -78,6 +79,29 @@ public class AsyncSimbaChain extends SimbaChain {
         AsyncSimbaChainConfig config,
         SigningConfirmation signingConfirmation) {
         super(endpoint, contract, config, signingConfirmation);
+        setup(config);
+    }
+
+    /**
+     * Create an async simba instance that uses a shared transport.
+     * The instance releases its reference to the transport when close() is called.
+     *
+     * @param endpoint            the host endpoint.
+     * @param contract            the contract or app name.
+     * @param config              an AsyncSimbaChainConfig object.
+     * @param signingConfirmation a signing confirmation instance.
+     * @param transport           a transport that has been retained for this instance.
+     */
+    public AsyncSimbaChain(String endpoint,
+        String contract,
+        AsyncSimbaChainConfig config,
+        SigningConfirmation signingConfirmation,
+        HttpTransport transport) {
+        super(endpoint, contract, config, signingConfirmation, transport);
+        setup(config);
+    }
+
+    private void setup(AsyncSimbaChainConfig config) {
         this.poll = config.getPollInterval();
         this.totalWait = config.getTotalWaitSeconds();
         this.state = config.getState();
@@ -186,4 +210,13 @@ public class AsyncSimbaChain extends SimbaChain {
         }
     }
 
+    /**
+     * Shut down the thread pool and release the transport.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        super.close();
+    }
+
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * Reference counting shared by the transport implementations.
+ * Subclasses release their resources in closeTransport(), which is called once.
+ */
+public abstract class AbstractHttpTransport implements HttpTransport {
+
+    private int references = 1;
+    private boolean closed = false;
+
+    @Override
+    public synchronized boolean retain() {
+        if (closed) {
+            return false;
+        }
+        references++;
+        return true;
+    }
+
+    @Override
+    public void release() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            references--;
+            if (references > 0) {
+                return;
+            }
+        }
+        close();
+    }
+
+    @Override
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            references = 0;
+        }
+        closeTransport();
+    }
+
+    /**
+     * Release the resources held by this transport.
+     */
+    protected abstract void closeTransport();
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.simbachain.SimbaException;
+import org.apache.http.client.HttpResponseException;
+
+/**
+ * Admission control for requests made by a client. A shared concurrency limiter bounds
+ * the number of requests in flight and a circuit breaker per endpoint fails fast while
+ * that endpoint is failing. Either may be disabled.
+ * <p>
+ * Server errors, 429 responses and I/O errors count as failures. Other error responses
+ * mean the server is healthy and count as successes. Cancelled requests and requests
+ * that ran out of time on the client are ignored.
+ * <p>
+ * The latency fed to the limiter is the time until the response headers arrived, if
+ * {@link Permit#onResponse()} was called, so that streaming a large body does not count
+ * as the server slowing down.
+ */
+public class AdmissionControl {
+
+    private final ConcurrencyLimiter limiter;
+    private final CircuitBreakerPolicy breakerPolicy;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public AdmissionControl(ConcurrencyLimitPolicy limitPolicy,
+        CircuitBreakerPolicy breakerPolicy) {
+        this.limiter = limitPolicy != null && limitPolicy.isEnabled()
+                       ? new ConcurrencyLimiter(limitPolicy)
+                       : null;
+        this.breakerPolicy = breakerPolicy != null && breakerPolicy.isEnabled()
+                             ? breakerPolicy
+                             : null;
+    }
+
+    /**
+     * Whether or not either the limiter or the circuit breakers are enabled.
+     *
+     * @return true if requests are subject to admission control.
+     */
+    public boolean isEnabled() {
+        return limiter != null || breakerPolicy != null;
+    }
+
+    /**
+     * Get the concurrency limiter.
+     *
+     * @return the limiter or null if it is disabled.
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Get the state of the circuit breaker for an endpoint.
+     *
+     * @param key the endpoint key.
+     * @return the state. CLOSED if there is no breaker for the endpoint.
+     */
+    public CircuitBreaker.State getState(String key) {
+        CircuitBreaker breaker = breakers.get(key);
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.getState();
+    }
+
+    /**
+     * Get the state of the circuit breakers for all endpoints that have been used.
+     *
+     * @return a map of endpoint key to breaker state.
+     */
+    public Map<String, CircuitBreaker.State> getStates() {
+        Map<String, CircuitBreaker.State> states = new HashMap<>();
+        for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+            states.put(entry.getKey(), entry.getValue()
+                                            .getState());
+        }
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * Admit a request to an endpoint.
+     *
+     * @param key the endpoint key.
+     * @return a permit that must be released when the request completes.
+     * @throws SimbaException CIRCUIT_OPEN if the breaker for the endpoint is open or
+     *                        CONCURRENCY_LIMIT_EXCEEDED if too many requests are in flight.
+     */
+    public Permit acquire(String key) throws SimbaException {
+        CircuitBreaker breaker = null;
+        if (breakerPolicy != null) {
+            breaker = breakers.computeIfAbsent(key, k -> new CircuitBreaker(breakerPolicy));
+            if (!breaker.tryAcquire()) {
+                throw new SimbaException("Circuit breaker is open for " + key,
+                    SimbaException.SimbaError.CIRCUIT_OPEN);
+            }
+        }
+        if (limiter != null && !limiter.tryAcquire()) {
+            if (breaker != null) {
+                breaker.onIgnored();
+            }
+            throw new SimbaException(
+                "Concurrency limit of " + limiter.getLimit() + " reached for " + key,
+                SimbaException.SimbaError.CONCURRENCY_LIMIT_EXCEEDED);
+        }
+        return new Permit(breaker);
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        FAILURE,
+        IGNORED
+    }
+
+    private static Outcome outcome(Throwable error) {
+        if (error == null) {
+            return Outcome.SUCCESS;
+        }
+        if (error instanceof CancellationException) {
+            return Outcome.IGNORED;
+        }
+        int status = -1;
+        if (error instanceof HttpResponseException) {
+            status = ((HttpResponseException) error).getStatusCode();
+        } else if (error instanceof SimbaException) {
+            SimbaException e = (SimbaException) error;
+            if (e.getType() == SimbaException.SimbaError.DEADLINE_EXCEEDED) {
+                return Outcome.IGNORED;
+            }
+            status = e.getHttpStatus();
+        }
+        if (status > 0) {
+            return status >= 500 || status == 429 ? Outcome.FAILURE : Outcome.SUCCESS;
+        }
+        if (error instanceof IOException && !(error instanceof SimbaException)) {
+            return Outcome.FAILURE;
+        }
+        return Outcome.SUCCESS;
+    }
+
+    /**
+     * Held for the duration of an admitted request.
+     */
+    public final class Permit {
+
+        private final CircuitBreaker breaker;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long responded;
+
+        private Permit(CircuitBreaker breaker) {
+            this.breaker = breaker;
+        }
+
+        /**
+         * Record that the response headers arrived. The latency of the request is measured
+         * up to the first call, so that the time taken to read the body is not included.
+         */
+        public void onResponse() {
+            if (responded == 0) {
+                responded = System.nanoTime();
+            }
+        }
+
+        /**
+         * Release the permit, recording the result of the request. Only the first call
+         * has any effect.
+         *
+         * @param error the error the request failed with, or null if it succeeded.
+         */
+        public void release(Throwable error) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            Outcome outcome = outcome(error);
+            if (limiter != null) {
+                if (outcome == Outcome.IGNORED) {
+                    limiter.ignore();
+                } else {
+                    long end = responded == 0 ? System.nanoTime() : responded;
+                    limiter.release((end - start) / 1000000L,
+                        outcome == Outcome.FAILURE);
+                }
+            }
+            if (breaker != null) {
+                if (outcome == Outcome.SUCCESS) {
+                    breaker.onSuccess();
+                } else if (outcome == Outcome.FAILURE) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onIgnored();
+                }
+            }
+        }
+    }
+}
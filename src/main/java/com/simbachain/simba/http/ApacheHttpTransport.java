@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The default transport, a pooled Apache HttpClient that can be shared between many
+ * Simba instances talking to the same endpoint.
+ * <p>
+ * Asynchronous requests are served by a non-blocking client with its own connection pool
+ * that uses a small, fixed number of I/O threads. This client is created on first use.
+ * Both clients request gzip or deflate encoded responses unless compression is disabled
+ * in the config.
+ */
+public class ApacheHttpTransport extends AbstractHttpTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(ApacheHttpTransport.class);
+
+    private final HttpConfig config;
+    private final SimbaConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final RequestConfig requestConfig;
+    private final ConnectionKeepAliveStrategy keepAlive;
+    private CloseableHttpAsyncClient asyncClient;
+
+    /**
+     * Create a transport with a connection pool configured from the given config.
+     *
+     * @param config the HTTP config.
+     */
+    public ApacheHttpTransport(final HttpConfig config) {
+        this.config = config;
+        this.connectionManager = new SimbaConnectionManager(config);
+        this.requestConfig = RequestConfig.custom()
+                                                   .setConnectTimeout(config.getConnectTimeout())
+                                                   .setSocketTimeout(config.getSocketTimeout())
+                                                   .setConnectionRequestTimeout(
+                                                       config.getConnectionRequestTimeout())
+                                                   .build();
+        this.keepAlive = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(
+                response, context);
+            return duration > 0 ? duration : config.getKeepAliveMillis();
+        };
+        HttpClientBuilder builder = HttpClients.custom()
+                                               .setConnectionManager(this.connectionManager)
+                                               .setDefaultRequestConfig(this.requestConfig)
+                                               .setKeepAliveStrategy(this.keepAlive)
+                                               .evictExpiredConnections();
+        if (config.getIdleEvictionMillis() > 0) {
+            builder.evictIdleConnections(config.getIdleEvictionMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (!config.isCompressionEnabled()) {
+            builder.disableContentCompression();
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * Get the config used to create this transport.
+     *
+     * @return the HTTP config.
+     */
+    @Override
+    public HttpConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Execute a request and process the response with the given handler.
+     *
+     * @param request the request.
+     * @param handler the response handler.
+     * @param <R>     the return type of the handler.
+     * @return the value returned by the handler.
+     * @throws IOException if an error occurs.
+     */
+    @Override
+    public <R> R execute(HttpUriRequest request, ResponseHandler<? extends R> handler)
+        throws IOException {
+        return this.client.execute(request, handler);
+    }
+
+    /**
+     * Execute a request without blocking the calling thread. The response is read into
+     * memory and the handler is invoked on an I/O thread, so handlers should not block.
+     * Cancelling the returned future aborts the request.
+     *
+     * @param request the request.
+     * @param handler the response handler.
+     * @param <R>     the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    @Override
+    public <R> CompletableFuture<R> executeAsync(HttpUriRequest request,
+        final ResponseHandler<? extends R> handler) {
+        final RequestFuture<R> future = new RequestFuture<>();
+        try {
+            future.request = getAsyncClient().execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    try {
+                        if (config.isCompressionEnabled()) {
+                            Compression.decompress(response);
+                        }
+                        future.complete(handler.handleResponse(response));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    future.completeExceptionally(e);
+                }
+
+                @Override
+                public void cancelled() {
+                    future.completeExceptionally(
+                        new CancellationException("Request was cancelled"));
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Lease connections to the host of the given URI from the pool, connect them,
+     * including the TLS handshake for https, and return them to the pool as idle
+     * connections. No requests are sent. The number of connections is capped at the
+     * maximum per route.
+     *
+     * @param uri         the URI of the endpoint.
+     * @param connections the number of connections to open.
+     * @return the number of connections that were opened or were already open.
+     * @throws IOException if a connection cannot be leased or opened.
+     */
+    @Override
+    public int warmUp(URI uri, int connections) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("ENTER: ApacheHttpTransport.warmUp: " + "uri = [" + uri + "], connections = ["
+                + connections + "]");
+        }
+        HttpHost host = URIUtils.extractHost(uri);
+        if (host == null) {
+            throw new IOException("No host in " + uri);
+        }
+        boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+        if (host.getPort() <= 0) {
+            host = new HttpHost(host.getHostName(), secure ? 443 : 80, host.getSchemeName());
+        }
+        // the route must match the one planned for requests so the connections are reused
+        HttpRoute route = new HttpRoute(host, null, secure);
+        int count = Math.min(connections, config.getMaxPerRoute());
+        List<HttpClientConnection> leased = new ArrayList<>(count);
+        HttpClientContext context = HttpClientContext.create();
+        int opened = 0;
+        try {
+            // all connections are held until the end, otherwise the pool hands back the same one
+            for (int i = 0; i < count; i++) {
+                ConnectionRequest request = this.connectionManager.requestConnection(route, null);
+                HttpClientConnection conn = request.get(config.getConnectionRequestTimeout(),
+                    TimeUnit.MILLISECONDS);
+                leased.add(conn);
+                if (!conn.isOpen()) {
+                    this.connectionManager.connect(conn, route, config.getConnectTimeout(),
+                        context);
+                    this.connectionManager.routeComplete(conn, route, context);
+                }
+                opened++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new InterruptedIOException("Interrupted while warming up connections");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not lease a connection", e.getCause());
+        } finally {
+            for (HttpClientConnection conn : leased) {
+                this.connectionManager.releaseConnection(conn, null,
+                    config.getKeepAliveMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Get a snapshot of the connection pool, including how long requests have waited
+     * to lease a connection.
+     *
+     * @return the connection statistics.
+     */
+    @Override
+    public ConnectionStatistics getStatistics() {
+        return this.connectionManager.getStatistics();
+    }
+
+    @Override
+    protected void closeTransport() {
+        try {
+            this.client.close();
+        } catch (IOException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("WARN: ApacheHttpTransport.close: error closing client", e);
+            }
+        }
+        CloseableHttpAsyncClient async;
+        synchronized (this) {
+            async = this.asyncClient;
+            this.asyncClient = null;
+        }
+        if (async != null) {
+            try {
+                async.close();
+            } catch (IOException e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("WARN: ApacheHttpTransport.close: error closing async client", e);
+                }
+            }
+        }
+    }
+
+    private synchronized CloseableHttpAsyncClient getAsyncClient() throws IOException {
+        if (isClosed()) {
+            throw new IOException("Transport has been closed");
+        }
+        if (this.asyncClient == null) {
+            IOReactorConfig.Builder reactorConfig = IOReactorConfig.custom();
+            reactorConfig.setIoThreadCount(config.getIoThreadCount())
+                         .setConnectTimeout(config.getConnectTimeout())
+                         .setSoTimeout(config.getSocketTimeout())
+                         .setTcpNoDelay(config.isTcpNoDelay())
+                         .setSoKeepAlive(true);
+            if (config.getSocketBufferSize() > 0) {
+                reactorConfig.setSndBufSize(config.getSocketBufferSize())
+                             .setRcvBufSize(config.getSocketBufferSize());
+            }
+            PoolingNHttpClientConnectionManager manager = new PoolingNHttpClientConnectionManager(
+                new DefaultConnectingIOReactor(reactorConfig.build()));
+            manager.setMaxTotal(config.getMaxTotal());
+            manager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+            HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+            builder.setConnectionManager(manager)
+                   .setDefaultRequestConfig(this.requestConfig)
+                   .setKeepAliveStrategy(this.keepAlive);
+            if (config.isCompressionEnabled()) {
+                builder.addInterceptorLast(
+                    (HttpRequestInterceptor) (request, context) -> Compression.acceptEncoding(
+                        request));
+            }
+            CloseableHttpAsyncClient async = builder.build();
+            async.start();
+            this.asyncClient = async;
+        }
+        return this.asyncClient;
+    }
+
+    /**
+     * A future that aborts the underlying request when cancelled.
+     */
+    private static class RequestFuture<R> extends CompletableFuture<R> {
+
+        private volatile Future<?> request;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            Future<?> req = this.request;
+            if (req != null) {
+                req.cancel(mayInterruptIfRunning);
+            }
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
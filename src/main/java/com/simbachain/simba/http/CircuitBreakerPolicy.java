@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * Config for the per-endpoint circuit breakers.
+ * <p>
+ * A breaker opens when at least minimumCalls of the last windowSize requests to an
+ * endpoint have completed and failureRateThreshold of them failed with a server error,
+ * a 429 or an I/O error. While open, requests fail immediately with CIRCUIT_OPEN. After
+ * openMillis a single trial request is let through. If it succeeds the breaker closes,
+ * otherwise it opens again.
+ * <p>
+ * Circuit breakers are disabled by default.
+ */
+public class CircuitBreakerPolicy {
+
+    private boolean enabled = false;
+    private double failureRateThreshold = 0.5;
+    private int minimumCalls = 10;
+    private int windowSize = 20;
+    private long openMillis = 30 * 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("CircuitBreakerPolicy{");
+        sb.append("enabled=")
+          .append(enabled);
+        sb.append(", failureRateThreshold=")
+          .append(failureRateThreshold);
+        sb.append(", minimumCalls=")
+          .append(minimumCalls);
+        sb.append(", windowSize=")
+          .append(windowSize);
+        sb.append(", openMillis=")
+          .append(openMillis);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.util.Locale;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+
+/**
+ * Content encoding helpers for transports that do not negotiate compression themselves.
+ * Decompression is streaming: the decompressing entity inflates the body as it is read.
+ */
+public final class Compression {
+
+    /**
+     * The encodings that can be decoded by decompress().
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private Compression() {
+    }
+
+    /**
+     * Add an Accept-Encoding header to the request if it does not already have one.
+     *
+     * @param request the request.
+     */
+    public static void acceptEncoding(HttpRequest request) {
+        if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+        }
+    }
+
+    /**
+     * Replace a gzip or deflate encoded response entity with one that decodes the content
+     * as it is read. Content-Length, Content-Encoding and Content-MD5 headers are removed
+     * as they describe the encoded content. Other encodings are left untouched.
+     *
+     * @param response the response.
+     */
+    public static void decompress(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        if (entity == null || entity.getContentLength() == 0) {
+            return;
+        }
+        Header encoding = entity.getContentEncoding();
+        if (encoding == null) {
+            return;
+        }
+        String value = encoding.getValue()
+                               .trim()
+                               .toLowerCase(Locale.ROOT);
+        HttpEntity decoded;
+        if (value.equals("gzip") || value.equals("x-gzip")) {
+            decoded = new GzipDecompressingEntity(entity);
+        } else if (value.equals("deflate")) {
+            decoded = new DeflateDecompressingEntity(entity);
+        } else {
+            return;
+        }
+        response.setEntity(decoded);
+        response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+        response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+        response.removeHeaders(HttpHeaders.CONTENT_MD5);
+    }
+
+    /**
+     * Gzip an entity if its length is known and at least the given threshold.
+     *
+     * @param entity    the entity.
+     * @param threshold the minimum length in bytes to compress. A negative value disables compression.
+     * @return a compressing entity or the original entity.
+     */
+    public static HttpEntity compress(HttpEntity entity, int threshold) {
+        if (threshold < 0 || entity.getContentEncoding() != null) {
+            return entity;
+        }
+        long length = entity.getContentLength();
+        if (length < 0 || length < threshold) {
+            return entity;
+        }
+        return new GzipCompressingEntity(entity);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * An AIMD concurrency limiter. The limit increases additively while requests succeed
+ * and decreases multiplicatively when they fail or slow down.
+ */
+public class ConcurrencyLimiter {
+
+    private static final double LATENCY_SMOOTHING = 0.05;
+    // latencies below this are never treated as a sign of overload
+    private static final long MIN_SLOW_LATENCY_MILLIS = 10;
+
+    private final ConcurrencyLimitPolicy policy;
+    private double limit;
+    private int inFlight;
+    private double averageLatency = -1;
+
+    public ConcurrencyLimiter(ConcurrencyLimitPolicy policy) {
+        this.policy = policy;
+        this.limit = Math.max(policy.getMinLimit(),
+            Math.min(policy.getMaxLimit(), policy.getInitialLimit()));
+    }
+
+    /**
+     * Take a slot if the number of requests in flight is under the limit.
+     *
+     * @return true if the request may proceed.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Release a slot after a request completed.
+     *
+     * @param latencyMillis the latency of the request.
+     * @param dropped       true if the request failed because the server is overloaded.
+     */
+    public synchronized void release(long latencyMillis, boolean dropped) {
+        int wasInFlight = inFlight;
+        inFlight--;
+        if (!dropped && averageLatency >= 0 && latencyMillis > Math.max(MIN_SLOW_LATENCY_MILLIS,
+            averageLatency * policy.getLatencyTolerance())) {
+            dropped = true;
+        }
+        if (dropped) {
+            limit = Math.max(policy.getMinLimit(), limit * policy.getBackoffRatio());
+            return;
+        }
+        averageLatency = averageLatency < 0
+                         ? latencyMillis
+                         : averageLatency + (latencyMillis - averageLatency) * LATENCY_SMOOTHING;
+        if (wasInFlight * 2 >= (int) limit) {
+            limit = Math.min(policy.getMaxLimit(), limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * Release a slot without affecting the limit, e.g. if the request was cancelled.
+     */
+    public synchronized void ignore() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder("ConcurrencyLimiter{");
+        sb.append("limit=")
+          .append((int) limit);
+        sb.append(", inFlight=")
+          .append(inFlight);
+        sb.append(", averageLatency=")
+          .append(averageLatency);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * A snapshot of the state of a connection pool.
+ * <p>
+ * leased, pending, available and max are the pool totals across all routes at the time
+ * the snapshot was taken. pending is the number of requests waiting for a connection.
+ * <p>
+ * leaseCount, leaseTimeouts, averageLeaseWaitMillis and maxLeaseWaitMillis are
+ * accumulated over the lifetime of the pool and describe how long requests waited
+ * for a connection to become available.
+ */
+public class ConnectionStatistics {
+
+    private final int leased;
+    private final int pending;
+    private final int available;
+    private final int max;
+    private final long leaseCount;
+    private final long leaseTimeouts;
+    private final double averageLeaseWaitMillis;
+    private final double maxLeaseWaitMillis;
+
+    public ConnectionStatistics(int leased,
+        int pending,
+        int available,
+        int max,
+        long leaseCount,
+        long leaseTimeouts,
+        double averageLeaseWaitMillis,
+        double maxLeaseWaitMillis) {
+        this.leased = leased;
+        this.pending = pending;
+        this.available = available;
+        this.max = max;
+        this.leaseCount = leaseCount;
+        this.leaseTimeouts = leaseTimeouts;
+        this.averageLeaseWaitMillis = averageLeaseWaitMillis;
+        this.maxLeaseWaitMillis = maxLeaseWaitMillis;
+    }
+
+    public int getLeased() {
+        return leased;
+    }
+
+    public int getPending() {
+        return pending;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public long getLeaseCount() {
+        return leaseCount;
+    }
+
+    public long getLeaseTimeouts() {
+        return leaseTimeouts;
+    }
+
+    public double getAverageLeaseWaitMillis() {
+        return averageLeaseWaitMillis;
+    }
+
+    public double getMaxLeaseWaitMillis() {
+        return maxLeaseWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ConnectionStatistics{");
+        sb.append("leased=")
+          .append(leased);
+        sb.append(", pending=")
+          .append(pending);
+        sb.append(", available=")
+          .append(available);
+        sb.append(", max=")
+          .append(max);
+        sb.append(", leaseCount=")
+          .append(leaseCount);
+        sb.append(", leaseTimeouts=")
+          .append(leaseTimeouts);
+        sb.append(", averageLeaseWaitMillis=")
+          .append(averageLeaseWaitMillis);
+        sb.append(", maxLeaseWaitMillis=")
+          .append(maxLeaseWaitMillis);
+        sb.append('}');
+        return sb.toString();
+    }
+}
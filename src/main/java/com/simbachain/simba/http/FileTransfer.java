@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes a response body to a file channel at a given position.
+ * <p>
+ * Data is read into a large direct buffer and written with positional writes, so the
+ * channel position is not used and each write to the file is a single system call.
+ * The position advances as data is written. If a transfer fails, getPosition() is the
+ * offset of the first byte that was not written, from which the transfer can be resumed.
+ * <p>
+ * Buffers are pooled, as direct buffers are expensive to allocate and are only freed
+ * by the garbage collector.
+ */
+public class FileTransfer {
+
+    /**
+     * The size of the buffers used to copy data.
+     */
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 16;
+    private static final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    private final FileChannel channel;
+    private long position;
+
+    /**
+     * Create a transfer that writes to the channel from the given position.
+     *
+     * @param channel  the channel to write to.
+     * @param position the position of the first byte written.
+     */
+    public FileTransfer(FileChannel channel, long position) {
+        this.channel = channel;
+        this.position = position;
+    }
+
+    /**
+     * Get the position at which the next byte will be written.
+     *
+     * @return the position.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Set the position at which the next byte will be written.
+     *
+     * @param position the position.
+     */
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    /**
+     * Write the stream to the channel until the end of the stream is reached.
+     * The stream is not closed.
+     *
+     * @param in the stream to read from.
+     * @return the number of bytes written.
+     * @throws IOException if reading or writing fails.
+     */
+    public long write(InputStream in) throws IOException {
+        return write(Channels.newChannel(in));
+    }
+
+    /**
+     * Write the source to the channel until the end of the source is reached.
+     * The source is not closed.
+     *
+     * @param in the channel to read from.
+     * @return the number of bytes written.
+     * @throws IOException if reading or writing fails.
+     */
+    public long write(ReadableByteChannel in) throws IOException {
+        long start = this.position;
+        ByteBuffer buffer = acquire();
+        try {
+            while (read(in, buffer) >= 0) {
+                // keep reading until the buffer is full to make fewer, larger writes
+                if (!buffer.hasRemaining()) {
+                    drain(buffer);
+                }
+            }
+            drain(buffer);
+        } finally {
+            release(buffer);
+        }
+        return this.position - start;
+    }
+
+    /**
+     * Read into the buffer. If the read fails, the data already in the buffer is
+     * written so that it does not have to be fetched again.
+     */
+    private int read(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        try {
+            return in.read(buffer);
+        } catch (IOException e) {
+            drain(buffer);
+            throw e;
+        }
+    }
+
+    private void drain(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            this.position += this.channel.write(buffer, this.position);
+        }
+        buffer.clear();
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return buffer;
+    }
+
+    private static void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (buffers.size() < MAX_POOLED_BUFFERS) {
+            buffers.offer(buffer);
+        }
+    }
+}
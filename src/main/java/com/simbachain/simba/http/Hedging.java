@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import com.simbachain.simba.Deadline;
+
+/**
+ * Sends hedged requests according to a HedgingPolicy.
+ * <p>
+ * Latencies and the hedge budget are kept per endpoint. Endpoints are identified by
+ * their path with ID like segments, e.g. transaction IDs and hashes, replaced by '*'
+ * so that requests for different transactions share statistics.
+ */
+public class Hedging {
+
+    private static final int WINDOW = 256;
+    private static final Pattern ID_SEGMENT = Pattern.compile(
+        "(0x)?[0-9a-fA-F-]{8,}|[0-9]+");
+
+    private final HedgingPolicy policy;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public Hedging(HedgingPolicy policy) {
+        this.policy = policy;
+    }
+
+    public HedgingPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Get the number of hedge requests that have been sent.
+     *
+     * @return the hedge count.
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /**
+     * Get the number of times a hedge request completed before the original.
+     *
+     * @return the number of hedges that won.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * Get the current hedge delay for an endpoint.
+     *
+     * @param key the endpoint key.
+     * @return the delay in milliseconds.
+     */
+    public long getDelay(String key) {
+        return endpoint(key).delay();
+    }
+
+    /**
+     * Get the key used to group requests to the same endpoint.
+     *
+     * @param uri the request URI.
+     * @return the path with ID segments replaced.
+     */
+    public static String endpointKey(URI uri) {
+        String path = uri.getPath();
+        if (path == null) {
+            return "";
+        }
+        String[] segments = path.split("/", -1);
+        StringBuilder sb = new StringBuilder(path.length());
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                sb.append('/');
+            }
+            String segment = segments[i];
+            sb.append(ID_SEGMENT.matcher(segment)
+                                .matches() ? "*" : segment);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Run a request, starting a second attempt if the first is slow and the endpoint's
+     * budget allows it. The first successful attempt completes the returned future and
+     * the other is cancelled. If an attempt fails while the other is still running the
+     * result waits for the other.
+     *
+     * @param key      the endpoint key.
+     * @param attempt  starts one attempt of the request.
+     * @param deadline the deadline for the request. No hedge is sent that would start
+     *                 after it.
+     * @param <R>      the result type.
+     * @return a future that completes with the first successful result.
+     */
+    public <R> CompletableFuture<R> execute(String key,
+        Supplier<CompletableFuture<R>> attempt,
+        Deadline deadline) {
+        final Endpoint endpoint = endpoint(key);
+        endpoint.earn();
+        final long start = System.nanoTime();
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        final AtomicInteger running = new AtomicInteger(1);
+        // the first successful attempt records its statistics and cancels the other attempt
+        // before completing the result, so callers see them once the result is complete
+        final AtomicBoolean won = new AtomicBoolean();
+        final AtomicReference<CompletableFuture<R>> hedge = new AtomicReference<>();
+        final CompletableFuture<R> primary = attempt.get();
+        long delay = endpoint.delay();
+        ScheduledFuture<?> timer = null;
+        if (!primary.isDone() && deadline.allows(delay)) {
+            timer = Scheduling.schedule(() -> {
+                if (result.isDone() || !endpoint.spend()) {
+                    return;
+                }
+                running.incrementAndGet();
+                hedges.increment();
+                CompletableFuture<R> second = attempt.get();
+                hedge.set(second);
+                second.whenComplete((r, t) -> {
+                    if (t == null) {
+                        if (!result.isDone() && won.compareAndSet(false, true)) {
+                            hedgeWins.increment();
+                            endpoint.record(start);
+                            primary.cancel(true);
+                            result.complete(r);
+                        }
+                    } else if (running.decrementAndGet() == 0) {
+                        result.completeExceptionally(t);
+                    }
+                });
+                if (result.isDone()) {
+                    second.cancel(true);
+                }
+            }, delay);
+        }
+        primary.whenComplete((r, t) -> {
+            if (t == null) {
+                if (!result.isDone() && won.compareAndSet(false, true)) {
+                    endpoint.record(start);
+                    CompletableFuture<R> second = hedge.get();
+                    if (second != null) {
+                        second.cancel(true);
+                    }
+                    result.complete(r);
+                }
+            } else if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(t);
+            }
+        });
+        final ScheduledFuture<?> scheduled = timer;
+        result.whenComplete((r, t) -> {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            primary.cancel(true);
+            CompletableFuture<R> second = hedge.get();
+            if (second != null) {
+                second.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private Endpoint endpoint(String key) {
+        return endpoints.computeIfAbsent(key, k -> new Endpoint());
+    }
+
+    private class Endpoint {
+
+        private final LatencyTracker latencies = new LatencyTracker(WINDOW,
+            policy.getPercentile());
+        private double budget;
+
+        private void record(long startNanos) {
+            latencies.record((System.nanoTime() - startNanos) / 1000000L);
+        }
+
+        private long delay() {
+            if (latencies.getCount() < policy.getMinSamples()) {
+                return policy.getMaxDelayMillis();
+            }
+            return Math.max(policy.getMinDelayMillis(),
+                Math.min(policy.getMaxDelayMillis(), latencies.getPercentile()));
+        }
+
+        private synchronized void earn() {
+            budget = Math.min(policy.getMaxBurst(), budget + policy.getHedgeRatio());
+        }
+
+        private synchronized boolean spend() {
+            if (budget >= 1.0) {
+                budget -= 1.0;
+                return true;
+            }
+            return false;
+        }
+    }
+}
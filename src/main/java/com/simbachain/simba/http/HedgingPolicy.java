@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * Config for hedged GET requests.
+ * <p>
+ * If a GET has not completed after a delay, a second identical request is sent and
+ * whichever response arrives first is used. The other request is cancelled.
+ * <p>
+ * The delay is the given percentile of recent latencies for the endpoint, limited to
+ * between minDelayMillis and maxDelayMillis. Until minSamples latencies have been seen
+ * for an endpoint, maxDelayMillis is used.
+ * <p>
+ * hedgeRatio limits the extra load. Each request to an endpoint earns that fraction of a
+ * hedge, and a hedge is only sent if a whole one has been earned. The default of 0.05
+ * means at most one request in twenty is hedged. maxBurst caps how many hedges can be
+ * saved up while an endpoint is fast.
+ * <p>
+ * Hedging is disabled by default. Only enable it for servers where repeating a GET
+ * is safe. It applies to reads of transactions and bundle manifests, whose responses are
+ * read into memory. Downloads that write to a stream are never hedged.
+ */
+public class HedgingPolicy {
+
+    private boolean enabled = false;
+    private double percentile = 95.0;
+    private long minDelayMillis = 10;
+    private long maxDelayMillis = 2 * 1000;
+    private int minSamples = 20;
+    private double hedgeRatio = 0.05;
+    private int maxBurst = 10;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public long getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+    public void setMinDelayMillis(long minDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public double getHedgeRatio() {
+        return hedgeRatio;
+    }
+
+    public void setHedgeRatio(double hedgeRatio) {
+        this.hedgeRatio = hedgeRatio;
+    }
+
+    public int getMaxBurst() {
+        return maxBurst;
+    }
+
+    public void setMaxBurst(int maxBurst) {
+        this.maxBurst = maxBurst;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("HedgingPolicy{");
+        sb.append("enabled=")
+          .append(enabled);
+        sb.append(", percentile=")
+          .append(percentile);
+        sb.append(", minDelayMillis=")
+          .append(minDelayMillis);
+        sb.append(", maxDelayMillis=")
+          .append(maxDelayMillis);
+        sb.append(", minSamples=")
+          .append(minSamples);
+        sb.append(", hedgeRatio=")
+          .append(hedgeRatio);
+        sb.append(", maxBurst=")
+          .append(maxBurst);
+        sb.append('}');
+        return sb.toString();
+    }
+}
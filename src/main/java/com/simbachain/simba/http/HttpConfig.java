@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * Config for the HTTP transport used by a Simba client.
+ * <p>
+ * maxTotal and maxPerRoute set the size of the connection pool. The defaults allow
+ * 200 connections in total and 100 connections to a single host.
+ * <p>
+ * keepAliveMillis is used to keep a connection in the pool if the server does not
+ * send a Keep-Alive header. idleEvictionMillis determines how long an unused connection
+ * stays in the pool before it is closed by the background evictor. Expired connections
+ * are always evicted.
+ * <p>
+ * connectTimeout, socketTimeout and connectionRequestTimeout are in milliseconds.
+ * connectionRequestTimeout is the maximum time to wait for a connection from the pool.
+ * A value of zero means no timeout.
+ * <p>
+ * socketBufferSize sets the socket send and receive buffer sizes. A value of zero
+ * leaves the platform default in place. connectionBufferSize sets the size of the
+ * buffer used by a connection to read and write HTTP messages.
+ * <p>
+ * ioThreadCount is the number of I/O threads used by the non-blocking client that
+ * serves the asynchronous methods. The default is the number of available processors.
+ * <p>
+ * transport selects the HTTP stack. APACHE is the default. JDK uses the java.net.http
+ * client and falls back to APACHE when running on a Java version earlier than 11.
+ * http2Enabled determines whether the JDK client negotiates HTTP/2.
+ * <p>
+ * compressionEnabled determines whether responses are requested with gzip or deflate
+ * encoding and decompressed as they are read. requestCompressionThreshold is the size in
+ * bytes above which JSON request bodies are gzipped. The default of -1 disables request
+ * compression as the server must support gzip encoded requests.
+ * <p>
+ * hedgingPolicy controls hedged GET requests, which are disabled by default.
+ * concurrencyLimitPolicy and circuitBreakerPolicy control admission of requests when the
+ * server is overloaded or failing. These are also disabled by default.
+ * <p>
+ * retryPolicy determines which failed requests are retried and the backoff between
+ * attempts. By default, requests are attempted up to three times.
+ * <p>
+ * parallelDownloadPolicy controls downloading large bundle files to disk as several
+ * ranges at once. This is disabled by default.
+ * <p>
+ * warmUpConnections is the number of pooled connections opened when a Simba instance is
+ * initialized. When greater than zero, init() also primes the JSON readers and the signing
+ * stack so that the first request does not pay for connection setup and class loading.
+ * The default of zero disables the warm-up.
+ */
+public class HttpConfig {
+
+    /**
+     * The available HTTP stacks.
+     */
+    public enum Transport {
+        APACHE,
+        JDK
+    }
+
+    private int maxTotal = 200;
+    private int maxPerRoute = 100;
+    private long keepAliveMillis = 30 * 1000;
+    private long idleEvictionMillis = 60 * 1000;
+    private int validateAfterInactivityMillis = 2 * 1000;
+    private int connectTimeout = 10 * 1000;
+    private int socketTimeout = 60 * 1000;
+    private int connectionRequestTimeout = 30 * 1000;
+    private boolean tcpNoDelay = true;
+    private int socketBufferSize = 0;
+    private int connectionBufferSize = 8 * 1024;
+    private int ioThreadCount = Runtime.getRuntime()
+                                       .availableProcessors();
+    private Transport transport = Transport.APACHE;
+    private boolean http2Enabled = true;
+    private boolean compressionEnabled = true;
+    private int requestCompressionThreshold = -1;
+    private HedgingPolicy hedgingPolicy = new HedgingPolicy();
+    private ConcurrencyLimitPolicy concurrencyLimitPolicy = new ConcurrencyLimitPolicy();
+    private CircuitBreakerPolicy circuitBreakerPolicy = new CircuitBreakerPolicy();
+    private RetryPolicy retryPolicy = new RetryPolicy();
+    private ParallelDownloadPolicy parallelDownloadPolicy = new ParallelDownloadPolicy();
+    private int warmUpConnections = 0;
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    public long getIdleEvictionMillis() {
+        return idleEvictionMillis;
+    }
+
+    public void setIdleEvictionMillis(long idleEvictionMillis) {
+        this.idleEvictionMillis = idleEvictionMillis;
+    }
+
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    public void setValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+        this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    public void setSocketBufferSize(int socketBufferSize) {
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    public int getConnectionBufferSize() {
+        return connectionBufferSize;
+    }
+
+    public void setConnectionBufferSize(int connectionBufferSize) {
+        this.connectionBufferSize = connectionBufferSize;
+    }
+
+    public int getIoThreadCount() {
+        return ioThreadCount;
+    }
+
+    public void setIoThreadCount(int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public void setHttp2Enabled(boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public int getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    public ConcurrencyLimitPolicy getConcurrencyLimitPolicy() {
+        return concurrencyLimitPolicy;
+    }
+
+    public void setConcurrencyLimitPolicy(ConcurrencyLimitPolicy concurrencyLimitPolicy) {
+        this.concurrencyLimitPolicy = concurrencyLimitPolicy;
+    }
+
+    public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+        return circuitBreakerPolicy;
+    }
+
+    public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+        this.circuitBreakerPolicy = circuitBreakerPolicy;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public ParallelDownloadPolicy getParallelDownloadPolicy() {
+        return parallelDownloadPolicy;
+    }
+
+    public void setParallelDownloadPolicy(ParallelDownloadPolicy parallelDownloadPolicy) {
+        this.parallelDownloadPolicy = parallelDownloadPolicy;
+    }
+
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+
+    public void setWarmUpConnections(int warmUpConnections) {
+        this.warmUpConnections = warmUpConnections;
+    }
+
+    /**
+     * Get a key for the settings a transport is built from, so that a transport is only
+     * shared by clients whose configs would build the same transport. Policies applied
+     * by each client, such as retries and hedging, are not part of the key.
+     *
+     * @return the key.
+     */
+    public String transportKey() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(transport)
+          .append('|')
+          .append(maxTotal)
+          .append('|')
+          .append(maxPerRoute)
+          .append('|')
+          .append(keepAliveMillis)
+          .append('|')
+          .append(idleEvictionMillis)
+          .append('|')
+          .append(validateAfterInactivityMillis)
+          .append('|')
+          .append(connectTimeout)
+          .append('|')
+          .append(socketTimeout)
+          .append('|')
+          .append(connectionRequestTimeout)
+          .append('|')
+          .append(tcpNoDelay)
+          .append('|')
+          .append(socketBufferSize)
+          .append('|')
+          .append(connectionBufferSize)
+          .append('|')
+          .append(ioThreadCount)
+          .append('|')
+          .append(http2Enabled)
+          .append('|')
+          .append(compressionEnabled);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("HttpConfig{");
+        sb.append("maxTotal=")
+          .append(maxTotal);
+        sb.append(", maxPerRoute=")
+          .append(maxPerRoute);
+        sb.append(", keepAliveMillis=")
+          .append(keepAliveMillis);
+        sb.append(", idleEvictionMillis=")
+          .append(idleEvictionMillis);
+        sb.append(", validateAfterInactivityMillis=")
+          .append(validateAfterInactivityMillis);
+        sb.append(", connectTimeout=")
+          .append(connectTimeout);
+        sb.append(", socketTimeout=")
+          .append(socketTimeout);
+        sb.append(", connectionRequestTimeout=")
+          .append(connectionRequestTimeout);
+        sb.append(", tcpNoDelay=")
+          .append(tcpNoDelay);
+        sb.append(", socketBufferSize=")
+          .append(socketBufferSize);
+        sb.append(", connectionBufferSize=")
+          .append(connectionBufferSize);
+        sb.append(", ioThreadCount=")
+          .append(ioThreadCount);
+        sb.append(", transport=")
+          .append(transport);
+        sb.append(", http2Enabled=")
+          .append(http2Enabled);
+        sb.append(", compressionEnabled=")
+          .append(compressionEnabled);
+        sb.append(", requestCompressionThreshold=")
+          .append(requestCompressionThreshold);
+        sb.append(", hedgingPolicy=")
+          .append(hedgingPolicy);
+        sb.append(", concurrencyLimitPolicy=")
+          .append(concurrencyLimitPolicy);
+        sb.append(", circuitBreakerPolicy=")
+          .append(circuitBreakerPolicy);
+        sb.append(", retryPolicy=")
+          .append(retryPolicy);
+        sb.append(", parallelDownloadPolicy=")
+          .append(parallelDownloadPolicy);
+        sb.append(", warmUpConnections=")
+          .append(warmUpConnections);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The HTTP stack used by a Simba client. Requests and responses are modelled using
+ * the Apache HttpCore types so that request building and response handlers are shared
+ * by every implementation.
+ * <p>
+ * A transport carries no per-instance state and can be shared between many Simba
+ * instances talking to the same endpoint. Headers such as API keys are set on each
+ * request by the caller.
+ * <p>
+ * Transports are reference counted. A transport is created with a single reference.
+ * Each additional owner calls retain() and every owner calls release() when it is done.
+ * The transport is closed when the last reference is released.
+ * <p>
+ * Implementations are ApacheHttpTransport, the default, JdkHttpTransport which uses the
+ * java.net.http client on Java 11 and later, and InMemoryTransport which serves requests
+ * without a network.
+ */
+public interface HttpTransport extends Closeable {
+
+    /**
+     * Create the transport selected by the given config.
+     *
+     * @param config the HTTP config.
+     * @return a new transport holding a single reference.
+     */
+    static HttpTransport create(HttpConfig config) {
+        if (config.getTransport() == HttpConfig.Transport.JDK) {
+            if (JdkHttpTransport.isSupported()) {
+                return new JdkHttpTransport(config);
+            }
+            LoggerFactory.getLogger(HttpTransport.class)
+                         .warn("WARN: HttpTransport.create: JDK transport requires Java 11, using Apache");
+        }
+        return new ApacheHttpTransport(config);
+    }
+
+    /**
+     * Get the config used to create this transport.
+     *
+     * @return the HTTP config.
+     */
+    HttpConfig getConfig();
+
+    /**
+     * Execute a request and process the response with the given handler.
+     *
+     * @param request the request.
+     * @param handler the response handler.
+     * @param <R>     the return type of the handler.
+     * @return the value returned by the handler.
+     * @throws IOException if an error occurs.
+     */
+    <R> R execute(HttpUriRequest request, ResponseHandler<? extends R> handler)
+        throws IOException;
+
+    /**
+     * Execute a request without blocking the calling thread. Handlers may be invoked
+     * on an I/O thread, so they should not block.
+     * Cancelling the returned future aborts the request where the implementation supports it.
+     *
+     * @param request the request.
+     * @param handler the response handler.
+     * @param <R>     the return type of the handler.
+     * @return a future that completes with the value returned by the handler.
+     */
+    <R> CompletableFuture<R> executeAsync(HttpUriRequest request,
+        ResponseHandler<? extends R> handler);
+
+    /**
+     * Open connections to the host of the given URI ahead of the first request, so that
+     * DNS resolution, connect and TLS handshakes are not paid by callers.
+     * <p>
+     * The default implementation sends concurrent HEAD requests to the URI and ignores the
+     * response status. Implementations with a connection pool should override this to open
+     * connections without sending requests.
+     *
+     * @param uri         the URI of the endpoint.
+     * @param connections the number of connections to open.
+     * @return the number of connections that were opened or were already open.
+     * @throws IOException if the connections cannot be opened.
+     */
+    default int warmUp(URI uri, int connections) throws IOException {
+        List<CompletableFuture<Boolean>> requests = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            requests.add(executeAsync(new HttpHead(uri), response -> Boolean.TRUE).exceptionally(
+                e -> Boolean.FALSE));
+        }
+        int opened = 0;
+        for (CompletableFuture<Boolean> request : requests) {
+            if (request.join()) {
+                opened++;
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Get a snapshot of the connections used by this transport.
+     *
+     * @return the connection statistics.
+     */
+    ConnectionStatistics getStatistics();
+
+    /**
+     * Add a reference to this transport.
+     *
+     * @return true if the reference was added, false if the transport has already been closed.
+     */
+    boolean retain();
+
+    /**
+     * Release a reference to this transport. The transport is closed when the last
+     * reference is released.
+     */
+    void release();
+
+    /**
+     * Whether or not this transport has been closed.
+     *
+     * @return true if closed.
+     */
+    boolean isClosed();
+
+    /**
+     * Close the transport regardless of how many references are held.
+     */
+    @Override
+    void close();
+}
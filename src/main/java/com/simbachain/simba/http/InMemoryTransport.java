@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * A transport that serves requests from a Responder in the calling thread without
+ * opening any sockets. Useful for testing and for benchmarking the client itself.
+ * <p>
+ * Asynchronous requests complete before executeAsync returns.
+ */
+public class InMemoryTransport extends AbstractHttpTransport {
+
+    /**
+     * Produces the response for a request.
+     */
+    @FunctionalInterface
+    public interface Responder {
+
+        HttpResponse respond(HttpUriRequest request) throws IOException;
+    }
+
+    private final HttpConfig config;
+    private final Responder responder;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+
+    public InMemoryTransport(Responder responder) {
+        this(new HttpConfig(), responder);
+    }
+
+    public InMemoryTransport(HttpConfig config, Responder responder) {
+        this.config = config;
+        this.responder = responder;
+    }
+
+    /**
+     * Create a response with a JSON body.
+     *
+     * @param status the HTTP status code.
+     * @param json   the body, may be null.
+     * @return a response.
+     */
+    public static HttpResponse response(int status, String json) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status,
+            EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH));
+        if (json != null) {
+            response.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        }
+        return response;
+    }
+
+    @Override
+    public HttpConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public <R> R execute(HttpUriRequest request, ResponseHandler<? extends R> handler)
+        throws IOException {
+        if (isClosed()) {
+            throw new IOException("Transport has been closed");
+        }
+        inFlight.incrementAndGet();
+        requests.increment();
+        try {
+            HttpResponse response = responder.respond(request);
+            try {
+                return handler.handleResponse(response);
+            } finally {
+                EntityUtils.consumeQuietly(response.getEntity());
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public <R> CompletableFuture<R> executeAsync(HttpUriRequest request,
+        ResponseHandler<? extends R> handler) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            future.complete(execute(request, handler));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * There are no connections to open.
+     *
+     * @param uri         the URI of the endpoint.
+     * @param connections the number of connections to open.
+     * @return zero.
+     */
+    @Override
+    public int warmUp(URI uri, int connections) {
+        return 0;
+    }
+
+    /**
+     * There is no connection pool. leased is the number of requests currently being
+     * served and leaseCount the total number of requests served.
+     *
+     * @return the connection statistics.
+     */
+    @Override
+    public ConnectionStatistics getStatistics() {
+        return new ConnectionStatistics(inFlight.get(), 0, 0, 0, requests.sum(), 0, 0, 0);
+    }
+
+    @Override
+    protected void closeTransport() {
+    }
+}
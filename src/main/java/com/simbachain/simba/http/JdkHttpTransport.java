@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * A transport that uses the java.net.http client, negotiating HTTP/2 where the server
+ * supports it so that concurrent requests are multiplexed over a single connection.
+ * <p>
+ * The client requires Java 11 or later. The library is packaged as a multi-release JAR
+ * and this class is replaced by the real implementation when running on Java 11+.
+ * On earlier versions isSupported() returns false, and HttpTransport.create(), the only
+ * way to get a transport of this type, uses the Apache transport instead.
+ */
+final class JdkHttpTransport extends AbstractHttpTransport {
+
+    /**
+     * Whether or not this transport can be used in the running JVM.
+     *
+     * @return true on Java 11 and later.
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    JdkHttpTransport(HttpConfig config) {
+        throw new UnsupportedOperationException("JdkHttpTransport requires Java 11 or later");
+    }
+
+    @Override
+    public HttpConfig getConfig() {
+        throw new UnsupportedOperationException("JdkHttpTransport requires Java 11 or later");
+    }
+
+    @Override
+    public <R> R execute(HttpUriRequest request, ResponseHandler<? extends R> handler)
+        throws IOException {
+        throw new UnsupportedOperationException("JdkHttpTransport requires Java 11 or later");
+    }
+
+    @Override
+    public <R> CompletableFuture<R> executeAsync(HttpUriRequest request,
+        ResponseHandler<? extends R> handler) {
+        throw new UnsupportedOperationException("JdkHttpTransport requires Java 11 or later");
+    }
+
+    @Override
+    public ConnectionStatistics getStatistics() {
+        throw new UnsupportedOperationException("JdkHttpTransport requires Java 11 or later");
+    }
+
+    @Override
+    protected void closeTransport() {
+    }
+}
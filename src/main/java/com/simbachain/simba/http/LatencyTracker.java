@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a window of recent latencies and reports percentiles over it.
+ * The percentile is recalculated after every few samples rather than on every read.
+ */
+public class LatencyTracker {
+
+    private static final int RECALCULATE_EVERY = 16;
+
+    private final long[] samples;
+    private final double percentile;
+    private int count;
+    private int next;
+    private long cached = -1;
+
+    /**
+     * Create a tracker.
+     *
+     * @param size       the number of recent samples to keep.
+     * @param percentile the percentile to report, e.g. 95.0.
+     */
+    public LatencyTracker(int size, double percentile) {
+        this.samples = new long[size];
+        this.percentile = percentile;
+    }
+
+    /**
+     * Add a latency.
+     *
+     * @param millis the latency in milliseconds.
+     */
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+        if (cached < 0 || next % RECALCULATE_EVERY == 0) {
+            cached = calculate();
+        }
+    }
+
+    /**
+     * Get the number of samples currently in the window.
+     *
+     * @return the sample count.
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the configured percentile of the samples in the window.
+     *
+     * @return the latency in milliseconds, or -1 if there are no samples.
+     */
+    public synchronized long getPercentile() {
+        return cached;
+    }
+
+    private long calculate() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))];
+    }
+}
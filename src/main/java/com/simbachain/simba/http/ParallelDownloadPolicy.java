@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * Config for downloading large files to disk as several ranges at once.
+ * <p>
+ * A file larger than segmentSize is split into segments of that size, which are fetched
+ * with Range requests over up to connections pooled connections at the same time. Each
+ * segment is written to its place in the file as it arrives, and a segment that fails
+ * part way through resumes from the bytes already written.
+ * <p>
+ * The size of the file is taken from the bundle manifest where available. Otherwise the
+ * first segment is requested on its own and the size is read from its Content-Range, so
+ * a file no larger than a segment takes a single request. If the server does not support
+ * ranges, the file is downloaded as a single stream.
+ * <p>
+ * Parallel downloads are disabled by default.
+ */
+public class ParallelDownloadPolicy {
+
+    private boolean enabled = false;
+    private long segmentSize = 8 * 1024 * 1024;
+    private int connections = 4;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(long segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("ParallelDownloadPolicy{");
+        sb.append("enabled=")
+          .append(enabled);
+        sb.append(", segmentSize=")
+          .append(segmentSize);
+        sb.append(", connections=")
+          .append(connections);
+        sb.append('}');
+        return sb.toString();
+    }
+}
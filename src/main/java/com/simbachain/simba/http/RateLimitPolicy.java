@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * Config for the client side rate limiter.
+ * <p>
+ * Requests are paced by a token bucket that allows permitsPerSecond requests per second
+ * with bursts of up to burst requests. The limiter is shared by all clients using the
+ * same API key and is created from the policy of the first of them. A client with a
+ * different policy for the same key logs a warning and uses the existing limiter.
+ * <p>
+ * When the server responds with 429 the rate is multiplied by backoffRatio, down to
+ * minPermitsPerSecond, and no requests are sent until the time given by the Retry-After
+ * header has passed. Each successful response recovers recoveryRatio of the configured
+ * rate. A rate limit remaining header of zero pauses requests until the reset time.
+ * <p>
+ * Rate limiting is disabled by default.
+ */
+public class RateLimitPolicy {
+
+    private boolean enabled = false;
+    private double permitsPerSecond = 10.0;
+    private int burst = 10;
+    private double minPermitsPerSecond = 0.5;
+    private double backoffRatio = 0.5;
+    private double recoveryRatio = 0.05;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    public void setPermitsPerSecond(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    public double getMinPermitsPerSecond() {
+        return minPermitsPerSecond;
+    }
+
+    public void setMinPermitsPerSecond(double minPermitsPerSecond) {
+        this.minPermitsPerSecond = minPermitsPerSecond;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public double getRecoveryRatio() {
+        return recoveryRatio;
+    }
+
+    public void setRecoveryRatio(double recoveryRatio) {
+        this.recoveryRatio = recoveryRatio;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RateLimitPolicy{");
+        sb.append("enabled=")
+          .append(enabled);
+        sb.append(", permitsPerSecond=")
+          .append(permitsPerSecond);
+        sb.append(", burst=")
+          .append(burst);
+        sb.append(", minPermitsPerSecond=")
+          .append(minPermitsPerSecond);
+        sb.append(", backoffRatio=")
+          .append(backoffRatio);
+        sb.append(", recoveryRatio=")
+          .append(recoveryRatio);
+        sb.append('}');
+        return sb.toString();
+    }
+}
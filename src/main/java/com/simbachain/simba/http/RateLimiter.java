@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A token bucket rate limiter that slows down when the server signals that it is
+ * throttling requests.
+ * <p>
+ * Callers reserve a permit and wait for the returned time before sending. Reservations
+ * are made in order, so waiting callers are served first come first served.
+ * <p>
+ * Limiters obtained from forKey() are shared by all clients using the same API key. Each
+ * client detaches from its limiter when it is closed, and the limiter is dropped once no
+ * client is using it.
+ */
+public class RateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+    private static final Map<String, RateLimiter> shared = new ConcurrentHashMap<>();
+    private static final String[] REMAINING_HEADERS = {"RateLimit-Remaining",
+        "X-RateLimit-Remaining"};
+    private static final String[] RESET_HEADERS = {"RateLimit-Reset", "X-RateLimit-Reset"};
+    // reset values larger than this are epoch seconds rather than a number of seconds
+    private static final long EPOCH_SECONDS_THRESHOLD = 1000000000L;
+
+    private final String key;
+    private final RateLimitPolicy policy;
+    private int users;
+    private double permitsPerSecond;
+    private double storedPermits;
+    private long nextFreeNanos;
+
+    public RateLimiter(RateLimitPolicy policy) {
+        this(null, policy);
+    }
+
+    private RateLimiter(String key, RateLimitPolicy policy) {
+        this.key = key;
+        this.policy = policy;
+        this.permitsPerSecond = policy.getPermitsPerSecond();
+        this.storedPermits = policy.getBurst();
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Get the limiter for an API key, creating it with the given policy if no client is
+     * using the key. If a limiter already exists with a different policy, it is returned
+     * unchanged and a warning is logged. Each call must be matched by a call to detach()
+     * when the caller has finished with the limiter.
+     *
+     * @param key    the API key.
+     * @param policy the policy.
+     * @return the shared limiter, or null if the policy is disabled.
+     */
+    public static RateLimiter forKey(String key, RateLimitPolicy policy) {
+        if (policy == null || !policy.isEnabled()) {
+            return null;
+        }
+        return shared.compute(key == null ? "" : key, (k, limiter) -> {
+            if (limiter == null) {
+                limiter = new RateLimiter(k, policy);
+            } else if (!samePolicy(limiter.policy, policy) && log.isWarnEnabled()) {
+                log.warn("WARN: RateLimiter.forKey: API key is already limited by "
+                    + limiter.policy
+                    + ", ignoring "
+                    + policy);
+            }
+            limiter.users++;
+            return limiter;
+        });
+    }
+
+    /**
+     * Release a reference obtained from forKey(). The limiter is dropped once every
+     * reference has been released. Has no effect on a limiter that was not obtained
+     * from forKey().
+     */
+    public void detach() {
+        if (this.key == null) {
+            return;
+        }
+        shared.computeIfPresent(this.key, (k, limiter) -> {
+            if (limiter != this) {
+                return limiter;
+            }
+            return --limiter.users > 0 ? limiter : null;
+        });
+    }
+
+    /**
+     * Get the number of limiters currently shared.
+     *
+     * @return the number of limiters.
+     */
+    public static int getShared() {
+        return shared.size();
+    }
+
+    private static boolean samePolicy(RateLimitPolicy a, RateLimitPolicy b) {
+        return a == b || (a.getPermitsPerSecond() == b.getPermitsPerSecond()
+            && a.getBurst() == b.getBurst()
+            && a.getMinPermitsPerSecond() == b.getMinPermitsPerSecond()
+            && a.getBackoffRatio() == b.getBackoffRatio()
+            && a.getRecoveryRatio() == b.getRecoveryRatio());
+    }
+
+    /**
+     * Get the current rate, which is lower than the configured rate after the server has
+     * throttled requests.
+     *
+     * @return the permits per second.
+     */
+    public synchronized double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * Reserve a permit.
+     *
+     * @return the time in milliseconds to wait before sending the request.
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        resync(now);
+        double fromStored = Math.min(1.0, storedPermits);
+        storedPermits -= fromStored;
+        nextFreeNanos += (long) ((1.0 - fromStored) * intervalNanos());
+        long wait = Math.max(0, nextFreeNanos - now);
+        return TimeUnit.NANOSECONDS.toMillis(wait + 999999L);
+    }
+
+    /**
+     * Stop issuing permits for a time.
+     *
+     * @param millis the time in milliseconds.
+     */
+    public synchronized void pause(long millis) {
+        long now = System.nanoTime();
+        resync(now);
+        storedPermits = 0;
+        nextFreeNanos = Math.max(nextFreeNanos, now + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * Adjust the rate based on a response.
+     *
+     * @param response the response.
+     */
+    public void onResponse(HttpResponse response) {
+        int status = response.getStatusLine()
+                             .getStatusCode();
+        long retryAfter = retryAfterMillis(response);
+        if (status == 429) {
+            synchronized (this) {
+                resync(System.nanoTime());
+                permitsPerSecond = Math.max(policy.getMinPermitsPerSecond(),
+                    permitsPerSecond * policy.getBackoffRatio());
+                pause(retryAfter >= 0 ? retryAfter : (long) (1000 / permitsPerSecond));
+            }
+            return;
+        }
+        if (retryAfter >= 0) {
+            pause(retryAfter);
+        }
+        long remaining = headerValue(response, REMAINING_HEADERS);
+        if (remaining == 0) {
+            long reset = headerValue(response, RESET_HEADERS);
+            if (reset > 0) {
+                pause(reset > EPOCH_SECONDS_THRESHOLD
+                      ? reset * 1000 - System.currentTimeMillis()
+                      : reset * 1000);
+            }
+        }
+        if (status < 400) {
+            synchronized (this) {
+                if (permitsPerSecond < policy.getPermitsPerSecond()) {
+                    resync(System.nanoTime());
+                    permitsPerSecond = Math.min(policy.getPermitsPerSecond(),
+                        permitsPerSecond
+                            + policy.getPermitsPerSecond() * policy.getRecoveryRatio());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the delay requested by a Retry-After header.
+     *
+     * @param response the response.
+     * @return the delay in milliseconds, or -1 if there is no valid Retry-After header.
+     */
+    public static long retryAfterMillis(HttpResponse response) {
+        Header header = response.getFirstHeader("Retry-After");
+        if (header == null || header.getValue() == null) {
+            return -1;
+        }
+        String value = header.getValue()
+                             .trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            if (date == null) {
+                return -1;
+            }
+            return Math.max(0, date.getTime() - System.currentTimeMillis());
+        }
+    }
+
+    private static long headerValue(HttpResponse response, String[] names) {
+        for (String name : names) {
+            Header header = response.getFirstHeader(name);
+            if (header != null && header.getValue() != null) {
+                try {
+                    return Long.parseLong(header.getValue()
+                                                .trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void resync(long now) {
+        if (now > nextFreeNanos) {
+            storedPermits = Math.min(policy.getBurst(),
+                storedPermits + (now - nextFreeNanos) / intervalNanos());
+            nextFreeNanos = now;
+        }
+    }
+
+    private double intervalNanos() {
+        return TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder sb = new StringBuilder("RateLimiter{");
+        sb.append("permitsPerSecond=")
+          .append(permitsPerSecond);
+        sb.append(", storedPermits=")
+          .append(storedPermits);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+/**
+ * Limits retries to a fraction of requests. Each request deposits budgetRatio of a
+ * retry, up to a maximum, and each retry withdraws one. The budget starts full.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double max;
+    private double balance;
+
+    /**
+     * Create a budget.
+     *
+     * @param ratio the fraction of a retry earned by each request.
+     * @param max   the most retries that can be saved up.
+     */
+    public RetryBudget(double ratio, int max) {
+        this.ratio = ratio;
+        this.max = Math.max(1, max);
+        this.balance = this.max;
+    }
+
+    /**
+     * Record a request.
+     */
+    public synchronized void deposit() {
+        balance = Math.min(max, balance + ratio);
+    }
+
+    /**
+     * Take a retry from the budget if there is one.
+     *
+     * @return true if the retry may be made.
+     */
+    public synchronized boolean tryWithdraw() {
+        if (balance >= 1.0) {
+            balance -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of retries available.
+     *
+     * @return the available retries.
+     */
+    public synchronized int getAvailable() {
+        return (int) balance;
+    }
+}
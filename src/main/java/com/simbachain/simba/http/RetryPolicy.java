@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.simbachain.SimbaException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * Decides whether and when a failed HTTP request is retried.
+ * <p>
+ * A request is attempted at most maxAttempts times. The delay before a retry grows
+ * from initialBackoffMillis by multiplier on each attempt, up to maxBackoffMillis, and
+ * is randomised between half and all of that value so that clients retrying after the
+ * same outage do not retry in step. A Retry-After delay from the server is always
+ * respected.
+ * <p>
+ * Retries are also limited by a budget per client. Each request earns budgetRatio of a
+ * retry and each retry spends one, with minBudget retries always available, so that
+ * retries add at most that fraction of extra load when the server is failing.
+ * <p>
+ * By default only GET and HEAD requests are retried. POSTs that create transactions are
+ * retried by the client that made them, so retrying them here as well would multiply the
+ * number of requests sent. Set retryNonIdempotent to also retry other methods when the
+ * server cannot have processed them.
+ * <p>
+ * Subclasses can override isRetryable and backoffMillis to change the behaviour.
+ */
+public class RetryPolicy {
+
+    private int maxAttempts = 3;
+    private long initialBackoffMillis = 100;
+    private long maxBackoffMillis = 10 * 1000;
+    private double multiplier = 2.0;
+    private double budgetRatio = 0.1;
+    private int minBudget = 10;
+    private boolean retryNonIdempotent = false;
+
+    /**
+     * A policy that never retries.
+     *
+     * @return a policy with maxAttempts of one.
+     */
+    public static RetryPolicy none() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setMaxAttempts(1);
+        return policy;
+    }
+
+    /**
+     * Whether a failed request can be retried.
+     * <p>
+     * Requests are not retried if they failed on the client, e.g. because the deadline
+     * passed or the circuit breaker is open. GET and HEAD requests are retried on 429, 502,
+     * 503 and 504 responses and on I/O errors. Other methods are only retried if
+     * retryNonIdempotent is set, and then only on 429 and 503 responses, which mean the
+     * server did not process the request, or if the connection could not be made.
+     *
+     * @param method the HTTP method.
+     * @param error  the error.
+     * @return true if the request can be sent again.
+     */
+    public boolean isRetryable(String method, SimbaException error) {
+        switch (error.getType()) {
+            case DEADLINE_EXCEEDED:
+            case CIRCUIT_OPEN:
+            case CONCURRENCY_LIMIT_EXCEEDED:
+                return false;
+            default:
+                break;
+        }
+        boolean idempotent = "GET".equals(method) || "HEAD".equals(method);
+        if (!idempotent && !retryNonIdempotent) {
+            return false;
+        }
+        int status = error.getHttpStatus();
+        if (status > 0) {
+            return status == 429 || status == 503 || (idempotent && (status == 502
+                || status == 504));
+        }
+        Throwable cause = error.getCause();
+        if (!(cause instanceof IOException) || cause instanceof SimbaException) {
+            return false;
+        }
+        return idempotent
+            || cause instanceof ConnectException
+            || cause instanceof ConnectTimeoutException;
+    }
+
+    /**
+     * Get the delay before a retry.
+     *
+     * @param attempt the attempt that failed, starting at one.
+     * @return the delay in milliseconds.
+     */
+    public long backoffMillis(int attempt) {
+        return backoff(initialBackoffMillis, maxBackoffMillis, multiplier, attempt);
+    }
+
+    /**
+     * Calculate an exponential backoff with jitter. The result is between half and all of
+     * initial * multiplier^(attempt - 1), limited to max.
+     *
+     * @param initialMillis the delay after the first attempt.
+     * @param maxMillis     the maximum delay.
+     * @param multiplier    the growth factor per attempt.
+     * @param attempt       the attempt that failed, starting at one.
+     * @return the delay in milliseconds.
+     */
+    public static long backoff(long initialMillis,
+        long maxMillis,
+        double multiplier,
+        int attempt) {
+        double ceiling = initialMillis * Math.pow(multiplier, Math.max(0, attempt - 1));
+        long capped = (long) Math.min(maxMillis, ceiling);
+        if (capped <= 1) {
+            return Math.max(0, capped);
+        }
+        long half = capped / 2;
+        return half + ThreadLocalRandom.current()
+                                       .nextLong(capped - half + 1);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    public void setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+    }
+
+    public int getMinBudget() {
+        return minBudget;
+    }
+
+    public void setMinBudget(int minBudget) {
+        this.minBudget = minBudget;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return retryNonIdempotent;
+    }
+
+    public void setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("RetryPolicy{");
+        sb.append("maxAttempts=")
+          .append(maxAttempts);
+        sb.append(", initialBackoffMillis=")
+          .append(initialBackoffMillis);
+        sb.append(", maxBackoffMillis=")
+          .append(maxBackoffMillis);
+        sb.append(", multiplier=")
+          .append(multiplier);
+        sb.append(", budgetRatio=")
+          .append(budgetRatio);
+        sb.append(", minBudget=")
+          .append(minBudget);
+        sb.append(", retryNonIdempotent=")
+          .append(retryNonIdempotent);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Pooling connection manager configured from an HttpConfig.
+ * As well as the pool totals, this records how long each request waits to lease a
+ * connection so that pool exhaustion can be monitored via getStatistics().
+ */
+public class SimbaConnectionManager extends PoolingHttpClientConnectionManager {
+
+    private final LongAdder leaseCount = new LongAdder();
+    private final LongAdder leaseTimeouts = new LongAdder();
+    private final LongAdder leaseWaitNanos = new LongAdder();
+    private final AtomicLong maxLeaseWaitNanos = new AtomicLong();
+
+    public SimbaConnectionManager(HttpConfig config) {
+        super();
+        setMaxTotal(config.getMaxTotal());
+        setDefaultMaxPerRoute(config.getMaxPerRoute());
+        setValidateAfterInactivity(config.getValidateAfterInactivityMillis());
+        SocketConfig.Builder socketConfig = SocketConfig.custom()
+                                                        .setTcpNoDelay(config.isTcpNoDelay())
+                                                        .setSoKeepAlive(true)
+                                                        .setSoTimeout(config.getSocketTimeout());
+        if (config.getSocketBufferSize() > 0) {
+            socketConfig.setSndBufSize(config.getSocketBufferSize())
+                        .setRcvBufSize(config.getSocketBufferSize());
+        }
+        setDefaultSocketConfig(socketConfig.build());
+        setDefaultConnectionConfig(ConnectionConfig.custom()
+                                                   .setBufferSize(config.getConnectionBufferSize())
+                                                   .build());
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout, timeUnit);
+                } catch (ConnectionPoolTimeoutException e) {
+                    leaseTimeouts.increment();
+                    throw e;
+                } finally {
+                    recordLeaseWait(System.nanoTime() - start);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    /**
+     * Get a snapshot of the pool and lease wait statistics.
+     *
+     * @return the connection statistics.
+     */
+    public ConnectionStatistics getStatistics() {
+        PoolStats stats = getTotalStats();
+        long count = leaseCount.sum();
+        double average = count == 0 ? 0 : (leaseWaitNanos.sum() / (double) count) / 1000000D;
+        return new ConnectionStatistics(stats.getLeased(), stats.getPending(),
+            stats.getAvailable(), stats.getMax(), count, leaseTimeouts.sum(), average,
+            maxLeaseWaitNanos.get() / 1000000D);
+    }
+
+    private void recordLeaseWait(long nanos) {
+        leaseCount.increment();
+        leaseWaitNanos.add(nanos);
+        long max = maxLeaseWaitNanos.get();
+        while (nanos > max && !maxLeaseWaitNanos.compareAndSet(max, nanos)) {
+            max = maxLeaseWaitNanos.get();
+        }
+    }
+}
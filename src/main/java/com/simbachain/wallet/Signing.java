@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.wallet;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shared, daemon executor for signing transactions, with one thread per processor.
+ * Signing is CPU bound, so running it here keeps it off the threads that handle
+ * network I/O and lets many signatures be computed in parallel.
+ */
+public final class Signing {
+
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final ExecutorService executor = createExecutor();
+
+    private Signing() {
+    }
+
+    /**
+     * Get the signing executor.
+     *
+     * @return the executor.
+     */
+    public static ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Get the number of signatures that can be computed in parallel.
+     *
+     * @return the number of signing threads.
+     */
+    public static int getParallelism() {
+        return Runtime.getRuntime()
+                      .availableProcessors();
+    }
+
+    /**
+     * Whether the current thread belongs to the signing executor. Work on a signing thread
+     * is done inline rather than waiting for another signing thread, which could deadlock.
+     *
+     * @return true if called from a signing thread.
+     */
+    public static boolean isSigningThread() {
+        return Thread.currentThread() instanceof SigningThread;
+    }
+
+    private static ExecutorService createExecutor() {
+        return Executors.newFixedThreadPool(getParallelism(), runnable -> {
+            Thread thread = new SigningThread(runnable,
+                "simba-signer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class SigningThread extends Thread {
+
+        private SigningThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+    }
+}
@@ -22,6 +22,12 @@
 
 package com.simbachain.wallet;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
 import com.simbachain.SimbaException;
 import org.web3j.crypto.Credentials;
 import org.web3j.crypto.RawTransaction;
@@ -124,6 +130,71 @@ public abstract class Wallet {
         }
     }
 
+    /**
+     * Sign a RawTransaction object on the signing executor, so the calling thread is not
+     * blocked while the signature is computed.
+     * @param rawTransaction a raw transaction.
+     * @return a future that completes with the signed transaction as a hex string,
+     * or a SimbaException.
+     * @see Signing
+     */
+    public CompletableFuture<String> signAsync(RawTransaction rawTransaction) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        if (Signing.isSigningThread()) {
+            complete(result, rawTransaction);
+            return result;
+        }
+        try {
+            Signing.getExecutor()
+                   .execute(() -> complete(result, rawTransaction));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new SimbaException(SimbaException.SimbaError.SIGN_FAILED, e));
+        }
+        return result;
+    }
+
+    /**
+     * Sign many RawTransaction objects, in parallel across the signing executor.
+     * @param rawTransactions the raw transactions.
+     * @return The signed transactions as hex strings, in the same order as the raw transactions.
+     * @throws SimbaException  if any transaction cannot be signed.
+     */
+    public List<String> signAll(List<RawTransaction> rawTransactions) throws SimbaException {
+        List<String> signed = new ArrayList<>(rawTransactions.size());
+        if (Signing.isSigningThread()) {
+            for (RawTransaction rawTransaction : rawTransactions) {
+                signed.add(sign(rawTransaction));
+            }
+            return signed;
+        }
+        List<CompletableFuture<String>> futures = new ArrayList<>(rawTransactions.size());
+        for (RawTransaction rawTransaction : rawTransactions) {
+            futures.add(signAsync(rawTransaction));
+        }
+        try {
+            for (CompletableFuture<String> future : futures) {
+                signed.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SimbaException(SimbaException.SimbaError.SIGN_FAILED, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SimbaException) {
+                throw (SimbaException) e.getCause();
+            }
+            throw new SimbaException(SimbaException.SimbaError.SIGN_FAILED, e.getCause());
+        }
+        return signed;
+    }
+
+    private void complete(CompletableFuture<String> result, RawTransaction rawTransaction) {
+        try {
+            result.complete(sign(rawTransaction));
+        } catch (SimbaException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
     /**
      * Convenience method to check if the Wallet exists and if not, create it. Then try to load it.
      * @param passkey The password to possibly create and then load the Wallet.
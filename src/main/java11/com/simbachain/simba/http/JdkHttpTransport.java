@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.simbachain.simba.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.AbstractExecutionAwareRequest;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+
+/**
+ * A transport that uses the java.net.http client, negotiating HTTP/2 where the server
+ * supports it so that concurrent requests are multiplexed over a single connection.
+ * <p>
+ * Requests built with the Apache HttpCore types are converted to java.net.http requests
+ * and the responses are converted back, so the same response handlers work with every
+ * transport. Small request bodies are buffered, larger ones are streamed as they are
+ * sent. Unless compression is disabled in the config, gzip or deflate encoded responses
+ * are requested and decompressed as they are read.
+ * <p>
+ * Aborting a request, or cancelling the future returned by executeAsync, cancels the
+ * exchange and closes a response body that is still being read.
+ * <p>
+ * The java.net.http client does not expose its connection pool, so the statistics
+ * only report the number of requests in flight and the total number of requests.
+ */
+final class JdkHttpTransport extends AbstractHttpTransport {
+
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+    private static final int BUFFERED_BODY_SIZE = 64 * 1024;
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    /**
+     * Headers that the java.net.http client sets itself and does not allow callers to set.
+     */
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(
+        String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.add("Connection");
+        RESTRICTED_HEADERS.add("Content-Length");
+        RESTRICTED_HEADERS.add("Expect");
+        RESTRICTED_HEADERS.add("Host");
+        RESTRICTED_HEADERS.add("Upgrade");
+    }
+
+    private final HttpConfig config;
+    private final ExecutorService executor;
+    private final HttpClient client;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Whether or not this transport can be used in the running JVM.
+     *
+     * @return true on Java 11 and later.
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    JdkHttpTransport(HttpConfig config) {
+        this.config = config;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "simba-http-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                                .version(config.isHttp2Enabled()
+                                    ? HttpClient.Version.HTTP_2
+                                    : HttpClient.Version.HTTP_1_1)
+                                .connectTimeout(Duration.ofMillis(config.getConnectTimeout()))
+                                .followRedirects(HttpClient.Redirect.NORMAL)
+                                .executor(this.executor)
+                                .build();
+    }
+
+    @Override
+    public HttpConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public <R> R execute(HttpUriRequest request, ResponseHandler<? extends R> handler)
+        throws IOException {
+        if (isClosed()) {
+            throw new IOException("Transport has been closed");
+        }
+        HttpRequest jdkRequest = toJdkRequest(request);
+        inFlight.incrementAndGet();
+        requests.increment();
+        try {
+            // sent asynchronously so that request.abort() can stop the exchange, as
+            // HttpRequest.timeout only covers waiting for the response headers.
+            CompletableFuture<java.net.http.HttpResponse<InputStream>> sending = client.sendAsync(
+                jdkRequest, java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+            AtomicReference<InputStream> body = new AtomicReference<>();
+            onAbort(request, () -> {
+                sending.cancel(true);
+                closeQuietly(body.get());
+            });
+            java.net.http.HttpResponse<InputStream> response;
+            try {
+                response = sending.get();
+            } catch (CancellationException e) {
+                throw new InterruptedIOException("Request was aborted");
+            } catch (ExecutionException e) {
+                throw toIOException(e.getCause());
+            }
+            try (InputStream in = response.body()) {
+                body.set(in);
+                if (isAborted(request)) {
+                    throw new InterruptedIOException("Request was aborted");
+                }
+                long length = response.headers()
+                                      .firstValueAsLong("Content-Length")
+                                      .orElse(-1L);
+                return handler.handleResponse(
+                    toApacheResponse(response, new InputStreamEntity(in, length)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new InterruptedIOException("Request was interrupted");
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public <R> CompletableFuture<R> executeAsync(HttpUriRequest request,
+        ResponseHandler<? extends R> handler) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        HttpRequest jdkRequest;
+        try {
+            if (isClosed()) {
+                throw new IOException("Transport has been closed");
+            }
+            jdkRequest = toJdkRequest(request);
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        inFlight.incrementAndGet();
+        requests.increment();
+        CompletableFuture<java.net.http.HttpResponse<byte[]>> sending = client.sendAsync(
+            jdkRequest, java.net.http.HttpResponse.BodyHandlers.ofByteArray());
+        // cancelling the returned future, or aborting the request, cancels the exchange
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                sending.cancel(true);
+            }
+        });
+        onAbort(request, () -> future.cancel(true));
+        sending.whenComplete((response, throwable) -> {
+                  inFlight.decrementAndGet();
+                  if (throwable != null) {
+                      future.completeExceptionally(throwable);
+                      return;
+                  }
+                  try {
+                      future.complete(handler.handleResponse(
+                          toApacheResponse(response, new ByteArrayEntity(response.body()))));
+                  } catch (Throwable e) {
+                      future.completeExceptionally(e);
+                  }
+              });
+        return future;
+    }
+
+    @Override
+    public ConnectionStatistics getStatistics() {
+        return new ConnectionStatistics(inFlight.get(), 0, 0, 0, requests.sum(), 0, 0, 0);
+    }
+
+    @Override
+    protected void closeTransport() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Run the action when the request is aborted, or now if it already has been.
+     */
+    private static void onAbort(HttpUriRequest request, Runnable action) {
+        if (!(request instanceof AbstractExecutionAwareRequest)) {
+            return;
+        }
+        AbstractExecutionAwareRequest awareRequest = (AbstractExecutionAwareRequest) request;
+        awareRequest.setCancellable(() -> {
+            action.run();
+            return true;
+        });
+        if (awareRequest.isAborted()) {
+            action.run();
+        }
+    }
+
+    private static boolean isAborted(HttpUriRequest request) {
+        return request instanceof AbstractExecutionAwareRequest
+            && ((AbstractExecutionAwareRequest) request).isAborted();
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // the stream is being abandoned
+            }
+        }
+    }
+
+    private static IOException toIOException(Throwable cause) {
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private HttpRequest toJdkRequest(HttpUriRequest request) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getURI());
+        int timeout = config.getSocketTimeout();
+        if (request instanceof Configurable && ((Configurable) request).getConfig() != null) {
+            timeout = ((Configurable) request).getConfig()
+                                             .getSocketTimeout();
+        }
+        if (timeout > 0) {
+            builder.timeout(Duration.ofMillis(timeout));
+        }
+        if (config.isCompressionEnabled()) {
+            Compression.acceptEncoding(request);
+        }
+        for (Header header : request.getAllHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName())) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+        HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null) {
+                body = publisher(entity);
+                if (entity.getContentType() != null && !request.containsHeader("Content-Type")) {
+                    builder.header("Content-Type", entity.getContentType()
+                                                         .getValue());
+                }
+                if (entity.getContentEncoding() != null && !request.containsHeader(
+                    "Content-Encoding")) {
+                    builder.header("Content-Encoding", entity.getContentEncoding()
+                                                             .getValue());
+                }
+            }
+        }
+        return builder.method(request.getMethod(), body)
+                      .build();
+    }
+
+    /**
+     * Publish a request entity. Small entities with a known length are buffered, larger
+     * ones are written through a pipe as the client sends them, so a large upload is not
+     * held in memory.
+     */
+    private HttpRequest.BodyPublisher publisher(HttpEntity entity) throws IOException {
+        long length = entity.getContentLength();
+        if (length == 0) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        if (length > 0 && length <= BUFFERED_BODY_SIZE && !entity.isStreaming()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+            entity.writeTo(out);
+            return HttpRequest.BodyPublishers.ofByteArray(out.toByteArray());
+        }
+        HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(
+            () -> pipe(entity));
+        return length > 0 ? HttpRequest.BodyPublishers.fromPublisher(publisher, length)
+                          : publisher;
+    }
+
+    /**
+     * Start writing the entity to a pipe and return the end the client reads from. If
+     * writing fails, the reader gets the failure rather than the end of the stream.
+     */
+    private InputStream pipe(HttpEntity entity) {
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        PipedInputStream in = new PipedInputStream(PIPE_SIZE);
+        PipedOutputStream out;
+        try {
+            out = new PipedOutputStream(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.executor.execute(() -> {
+            try (OutputStream o = out) {
+                entity.writeTo(o);
+            } catch (IOException e) {
+                failure.set(e);
+                closeQuietly(in);
+            }
+        });
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                return check(super.read());
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return check(super.read(b, off, len));
+            }
+
+            private int check(int n) throws IOException {
+                IOException e = failure.get();
+                if (e != null) {
+                    throw new IOException("Could not write request body", e);
+                }
+                return n;
+            }
+        };
+    }
+
+    private HttpResponse toApacheResponse(java.net.http.HttpResponse<?> response,
+        AbstractHttpEntity entity) {
+        int status = response.statusCode();
+        ProtocolVersion version = response.version() == HttpClient.Version.HTTP_2
+            ? HTTP_2
+            : HttpVersion.HTTP_1_1;
+        BasicHttpResponse apacheResponse = new BasicHttpResponse(version, status,
+            EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH));
+        for (Map.Entry<String, List<String>> header : response.headers()
+                                                              .map()
+                                                              .entrySet()) {
+            if (header.getKey()
+                      .startsWith(":")) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                apacheResponse.addHeader(header.getKey(), value);
+            }
+        }
+        response.headers()
+                .firstValue("Content-Type")
+                .ifPresent(entity::setContentType);
+        response.headers()
+                .firstValue("Content-Encoding")
+                .ifPresent(entity::setContentEncoding);
+        apacheResponse.setEntity(entity);
+        if (config.isCompressionEnabled()) {
+            Compression.decompress(apacheResponse);
+        }
+        return apacheResponse;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.IOException;
+
+import com.simbachain.SimbaException;
+import com.simbachain.simba.http.AdmissionControl;
+import com.simbachain.simba.http.CircuitBreaker;
+import com.simbachain.simba.http.CircuitBreakerPolicy;
+import com.simbachain.simba.http.ConcurrencyLimitPolicy;
+import org.apache.http.client.HttpResponseException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the concurrency limiter and circuit breakers.
+ */
+public class AdmissionControlTest {
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        CircuitBreakerPolicy policy = new CircuitBreakerPolicy();
+        policy.setEnabled(true);
+        policy.setMinimumCalls(4);
+        policy.setWindowSize(4);
+        policy.setOpenMillis(50);
+        AdmissionControl control = new AdmissionControl(null, policy);
+        for (int i = 0; i < 4; i++) {
+            control.acquire("/transactions/*/")
+                   .release(new HttpResponseException(404, "Not Found"));
+        }
+        assertEquals(control.getState("/transactions/*/"), CircuitBreaker.State.CLOSED);
+        for (int i = 0; i < 2; i++) {
+            control.acquire("/transactions/*/")
+                   .release(new HttpResponseException(503, "Service Unavailable"));
+        }
+        assertEquals(control.getState("/transactions/*/"), CircuitBreaker.State.OPEN);
+        try {
+            control.acquire("/transactions/*/");
+            fail("expected circuit to be open");
+        } catch (SimbaException e) {
+            assertEquals(e.getType(), SimbaException.SimbaError.CIRCUIT_OPEN);
+        }
+        control.acquire("/balance/*/")
+               .release(null);
+        Thread.sleep(60);
+        AdmissionControl.Permit trial = control.acquire("/transactions/*/");
+        try {
+            control.acquire("/transactions/*/");
+            fail("expected a single trial request");
+        } catch (SimbaException e) {
+            assertEquals(e.getType(), SimbaException.SimbaError.CIRCUIT_OPEN);
+        }
+        trial.release(null);
+        assertEquals(control.getState("/transactions/*/"), CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        ConcurrencyLimitPolicy policy = new ConcurrencyLimitPolicy();
+        policy.setEnabled(true);
+        policy.setInitialLimit(2);
+        policy.setBackoffRatio(0.5);
+        AdmissionControl control = new AdmissionControl(policy, null);
+        AdmissionControl.Permit first = control.acquire("key");
+        AdmissionControl.Permit second = control.acquire("key");
+        try {
+            control.acquire("key");
+            fail("expected limit to be reached");
+        } catch (SimbaException e) {
+            assertEquals(e.getType(), SimbaException.SimbaError.CONCURRENCY_LIMIT_EXCEEDED);
+        }
+        first.release(null);
+        second.release(new IOException("Connection reset"));
+        assertEquals(control.getLimiter()
+                            .getLimit(), 1);
+        assertEquals(control.getLimiter()
+                            .getInFlight(), 0);
+        for (int i = 0; i < 10; i++) {
+            control.acquire("key")
+                   .release(null);
+        }
+        assertTrue(control.getLimiter()
+                          .getLimit() > 1);
+    }
+
+    @Test
+    public void testLatencyToHeaders() throws Exception {
+        ConcurrencyLimitPolicy policy = new ConcurrencyLimitPolicy();
+        policy.setEnabled(true);
+        policy.setInitialLimit(4);
+        policy.setBackoffRatio(0.5);
+        AdmissionControl control = new AdmissionControl(policy, null);
+        for (int i = 0; i < 4; i++) {
+            control.acquire("key")
+                   .release(null);
+        }
+        int limit = control.getLimiter()
+                           .getLimit();
+        // a slow body after fast headers is not a sign of overload
+        AdmissionControl.Permit streamed = control.acquire("key");
+        streamed.onResponse();
+        Thread.sleep(50);
+        streamed.release(null);
+        assertEquals(control.getLimiter()
+                            .getLimit(), limit);
+        // slow headers are
+        AdmissionControl.Permit slow = control.acquire("key");
+        Thread.sleep(50);
+        slow.onResponse();
+        slow.release(null);
+        assertTrue(control.getLimiter()
+                          .getLimit() < limit);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.simbachain.SimbaException;
+import com.simbachain.simba.BundleCache;
+import com.simbachain.simba.Digests;
+import com.simbachain.simba.ManifestFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks storing, reading, eviction and reloading of cache entries.
+ */
+public class BundleCacheTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("cache");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder())
+                 .forEach(path -> path.toFile()
+                                      .delete());
+        }
+    }
+
+    private static byte[] bytes(int size, char c) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) c);
+        return data;
+    }
+
+    @Test
+    public void testPutAndCopy() throws Exception {
+        BundleCache cache = new BundleCache(dir, 1000);
+        byte[] data = "cached bundle".getBytes(StandardCharsets.UTF_8);
+        assertEquals(cache.copyTo("bundle-1", new ByteArrayOutputStream()), -1);
+        assertEquals(cache.put("bundle-1", temp -> Files.write(temp, data)), data.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(cache.copyTo("bundle-1", out), data.length);
+        assertArrayEquals(out.toByteArray(), data);
+        Path target = dir.resolve("target.bin");
+        assertEquals(cache.copyTo("bundle-1", target), data.length);
+        assertArrayEquals(Files.readAllBytes(target), data);
+        assertEquals(cache.getHits(), 2);
+        assertEquals(cache.getMisses(), 1);
+
+        // a failed write leaves nothing behind
+        try {
+            cache.put("bundle-2", temp -> {
+                Files.write(temp, data);
+                throw new IOException("failed");
+            });
+            fail("expected an exception");
+        } catch (IOException e) {
+            assertFalse(cache.contains("bundle-2"));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(files.count(), 2);
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        BundleCache cache = new BundleCache(dir, 250);
+        cache.put("a", temp -> Files.write(temp, bytes(100, 'a')));
+        cache.put("b", temp -> Files.write(temp, bytes(100, 'b')));
+        // use a, so b is least recently used
+        assertEquals(cache.copyTo("a", new ByteArrayOutputStream()), 100);
+        cache.put("c", temp -> Files.write(temp, bytes(100, 'c')));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(cache.getSize(), 200);
+        assertFalse(Files.exists(dir.resolve("b")));
+
+        // larger than the cache, so not kept
+        assertEquals(cache.put("d", temp -> Files.write(temp, bytes(300, 'd'))), 300);
+        assertFalse(cache.contains("d"));
+
+        BundleCache reopened = new BundleCache(dir, 250);
+        assertTrue(reopened.contains("a"));
+        assertTrue(reopened.contains("c"));
+        assertEquals(reopened.getSize(), 200);
+    }
+
+    @Test
+    public void testVerifiedPut() throws Exception {
+        byte[] data = bytes(5000, 'v');
+        ManifestFile file = new ManifestFile();
+        file.setName("v.bin");
+        file.setSize(data.length);
+        file.setAlg("sha256");
+        file.setHash(Digests.toHex(MessageDigest.getInstance("SHA-256")
+                                                .digest(data)));
+        String key = BundleCache.fileKey(file);
+        assertTrue(key.startsWith("sha-256-"));
+
+        Path source = Files.createTempFile("source", ".bin");
+        try {
+            Files.write(source, data);
+            BundleCache cache = new BundleCache(dir, 10000);
+            assertEquals(cache.put(key, source, file), data.length);
+            assertTrue(cache.contains(key));
+
+            file.setHash(Digests.toHex(new byte[32]));
+            String badKey = BundleCache.fileKey(file);
+            try {
+                cache.put(badKey, source, file);
+                fail("expected an integrity error");
+            } catch (SimbaException e) {
+                assertEquals(e.getType(), SimbaException.SimbaError.INTEGRITY_ERROR);
+            }
+            assertFalse(cache.contains(badKey));
+        } finally {
+            Files.delete(source);
+        }
+    }
+}
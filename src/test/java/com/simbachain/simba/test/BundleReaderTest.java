@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import com.simbachain.SimbaException;
+import com.simbachain.simba.BundleReader;
+import com.simbachain.simba.Digests;
+import com.simbachain.simba.Manifest;
+import com.simbachain.simba.ManifestFile;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads tar archives written by the test, gzipped and not.
+ */
+public class BundleReaderTest {
+
+    static final byte[] FIRST = "first file".getBytes(StandardCharsets.UTF_8);
+    static final byte[] SECOND = new byte[1500];
+
+    static {
+        Arrays.fill(SECOND, (byte) 'x');
+    }
+
+    private static void header(ByteArrayOutputStream out, String name, long size, char type) {
+        byte[] header = new byte[512];
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, 0, Math.min(bytes.length, 100));
+        octal(header, 100, 8, 0644);
+        octal(header, 124, 12, size);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        octal(header, 148, 7, sum);
+        out.write(header, 0, header.length);
+    }
+
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String s = Long.toOctalString(value);
+        while (s.length() < length - 1) {
+            s = "0" + s;
+        }
+        System.arraycopy(s.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+
+    private static void entry(ByteArrayOutputStream out, String name, byte[] data) {
+        if (name.length() > 100) {
+            byte[] longName = name.getBytes(StandardCharsets.UTF_8);
+            header(out, "././@LongLink", longName.length, 'L');
+            data(out, longName);
+        }
+        header(out, name, data.length, '0');
+        data(out, data);
+    }
+
+    private static void data(ByteArrayOutputStream out, byte[] data) {
+        out.write(data, 0, data.length);
+        out.write(new byte[(512 - data.length % 512) % 512], 0, (512 - data.length % 512) % 512);
+    }
+
+    static byte[] archive(boolean gzip, String secondName) throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        header(tar, "bundle/", 0, '5');
+        entry(tar, "bundle/first.txt", FIRST);
+        entry(tar, secondName, SECOND);
+        tar.write(new byte[1024], 0, 1024);
+        if (!gzip) {
+            return tar.toByteArray();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            tar.writeTo(gz);
+        }
+        return out.toByteArray();
+    }
+
+    static ManifestFile manifestFile(String name, byte[] data) throws Exception {
+        ManifestFile file = new ManifestFile();
+        file.setName(name);
+        file.setSize(data.length);
+        file.setAlg("sha256");
+        file.setHash(Digests.toHex(MessageDigest.getInstance("SHA-256")
+                                                .digest(data)));
+        return file;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[100];
+        int c;
+        while ((c = in.read(buf)) != -1) {
+            out.write(buf, 0, c);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        String longName = "bundle/" + String.join("", Collections.nCopies(30, "long"))
+            + ".bin";
+        Manifest manifest = new Manifest();
+        manifest.getFiles()
+                .add(manifestFile("first.txt", FIRST));
+        manifest.getFiles()
+                .add(manifestFile(longName, SECOND));
+        for (boolean gzip : new boolean[] {true, false}) {
+            List<String> names = new ArrayList<>();
+            try (BundleReader reader = new BundleReader(
+                new ByteArrayInputStream(archive(gzip, longName)), manifest)) {
+                int count = reader.read(entry -> {
+                    names.add(entry.getName());
+                    assertNotNull(entry.getManifestFile());
+                    if (entry.getName()
+                             .endsWith("first.txt")) {
+                        assertArrayEquals(read(entry.getInputStream()), FIRST);
+                    } else {
+                        assertEquals(entry.getSize(), SECOND.length);
+                        // the rest of the entry is skipped and still verified
+                        assertEquals(entry.getInputStream()
+                                          .read(), 'x');
+                    }
+                });
+                assertEquals(count, 2);
+            }
+            assertEquals(names, Arrays.asList("bundle/first.txt", longName));
+        }
+    }
+
+    @Test
+    public void testIntegrityError() throws Exception {
+        Manifest manifest = new Manifest();
+        manifest.getFiles()
+                .add(manifestFile("first.txt", SECOND));
+        try (BundleReader reader = new BundleReader(
+            new ByteArrayInputStream(archive(true, "second.bin")), manifest)) {
+            reader.read(entry -> {
+            });
+            fail("expected an integrity error");
+        } catch (SimbaException e) {
+            assertEquals(e.getType(), SimbaException.SimbaError.INTEGRITY_ERROR);
+        }
+    }
+
+    @Test
+    public void testExtract() throws Exception {
+        Path dir = Files.createTempDirectory("bundle");
+        try {
+            try (BundleReader reader = new BundleReader(
+                new ByteArrayInputStream(archive(true, "bundle/sub/second.bin")), null)) {
+                assertEquals(reader.read(BundleReader.extractTo(dir)), 2);
+            }
+            assertArrayEquals(Files.readAllBytes(dir.resolve("bundle/first.txt")), FIRST);
+            assertArrayEquals(Files.readAllBytes(dir.resolve("bundle/sub/second.bin")), SECOND);
+
+            try (BundleReader reader = new BundleReader(
+                new ByteArrayInputStream(archive(true, "../outside.bin")), null)) {
+                reader.read(BundleReader.extractTo(dir.resolve("inner")));
+                fail("expected a file error");
+            } catch (SimbaException e) {
+                assertEquals(e.getType(), SimbaException.SimbaError.FILE_ERROR);
+            }
+            assertFalse(Files.exists(dir.resolve("outside.bin")));
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder())
+                     .forEach(path -> path.toFile()
+                                          .delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.simbachain.simba.http.ApacheHttpTransport;
+import com.simbachain.simba.http.Compression;
+import com.simbachain.simba.http.HttpConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks request compression, response decompression and switching compression off.
+ */
+public class CompressionTest {
+
+    private static final String BODY = "{\"method\": \"compressed\", \"padding\": \""
+        + String.join("", Collections.nCopies(100, "0123456789"))
+        + "\"}";
+
+    private static byte[] gzip(String s) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(String s) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static HttpResponse encoded(byte[] body, String encoding) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        ByteArrayEntity entity = new ByteArrayEntity(body, ContentType.APPLICATION_JSON);
+        entity.setContentEncoding(encoding);
+        response.setEntity(entity);
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(body.length));
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        response.setHeader(HttpHeaders.CONTENT_MD5, "unused");
+        return response;
+    }
+
+    @Test
+    public void testCompress() throws Exception {
+        StringEntity small = new StringEntity("{}", ContentType.APPLICATION_JSON);
+        assertSame(Compression.compress(small, 16), small);
+
+        StringEntity large = new StringEntity(BODY, ContentType.APPLICATION_JSON);
+        assertSame(Compression.compress(large, -1), large);
+        HttpEntity compressed = Compression.compress(large, 16);
+        assertNotSame(compressed, large);
+        assertEquals(compressed.getContentEncoding()
+                               .getValue(), "gzip");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compressed.writeTo(out);
+        assertArrayEquals(out.toByteArray(), gzip(BODY));
+
+        StringEntity encoded = new StringEntity(BODY, ContentType.APPLICATION_JSON);
+        encoded.setContentEncoding("br");
+        assertSame(Compression.compress(encoded, 16), encoded);
+
+        InputStreamEntity unknownLength = new InputStreamEntity(
+            new ByteArrayInputStream(BODY.getBytes(StandardCharsets.UTF_8)));
+        assertSame(Compression.compress(unknownLength, 16), unknownLength);
+    }
+
+    @Test
+    public void testDecompress() throws Exception {
+        HttpResponse gzipped = encoded(gzip(BODY), "gzip");
+        Compression.decompress(gzipped);
+        assertEquals(EntityUtils.toString(gzipped.getEntity()), BODY);
+        assertFalse(gzipped.containsHeader(HttpHeaders.CONTENT_LENGTH));
+        assertFalse(gzipped.containsHeader(HttpHeaders.CONTENT_ENCODING));
+        assertFalse(gzipped.containsHeader(HttpHeaders.CONTENT_MD5));
+
+        HttpResponse deflated = encoded(deflate(BODY), "deflate");
+        Compression.decompress(deflated);
+        assertEquals(EntityUtils.toString(deflated.getEntity()), BODY);
+        assertFalse(deflated.containsHeader(HttpHeaders.CONTENT_LENGTH));
+        assertFalse(deflated.containsHeader(HttpHeaders.CONTENT_ENCODING));
+
+        byte[] unknown = BODY.getBytes(StandardCharsets.UTF_8);
+        HttpResponse other = encoded(unknown, "br");
+        Compression.decompress(other);
+        assertArrayEquals(EntityUtils.toByteArray(other.getEntity()), unknown);
+        assertTrue(other.containsHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testTransport() throws Exception {
+        final List<String> acceptEncodings = new CopyOnWriteArrayList<>();
+        final byte[] body = gzip(BODY);
+        HttpServer server = HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String accept = exchange.getRequestHeaders()
+                                    .getFirst(HttpHeaders.ACCEPT_ENCODING);
+            acceptEncodings.add(accept == null ? "" : accept);
+            exchange.getResponseHeaders()
+                    .set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress()
+                                                  .getPort() + "/";
+        try {
+            ApacheHttpTransport enabled = new ApacheHttpTransport(new HttpConfig());
+            try {
+                assertEquals(enabled.execute(new HttpGet(url),
+                    response -> EntityUtils.toString(response.getEntity())), BODY);
+                assertEquals(enabled.executeAsync(new HttpGet(url),
+                    response -> EntityUtils.toString(response.getEntity()))
+                                    .get(), BODY);
+            } finally {
+                enabled.close();
+            }
+            assertTrue(acceptEncodings.get(0)
+                                      .contains("gzip"));
+            assertTrue(acceptEncodings.get(1)
+                                      .contains("gzip"));
+
+            acceptEncodings.clear();
+            HttpConfig config = new HttpConfig();
+            config.setCompressionEnabled(false);
+            ApacheHttpTransport disabled = new ApacheHttpTransport(config);
+            try {
+                assertArrayEquals(disabled.execute(new HttpGet(url),
+                    response -> EntityUtils.toByteArray(response.getEntity())), body);
+                assertArrayEquals(disabled.executeAsync(new HttpGet(url),
+                    response -> EntityUtils.toByteArray(response.getEntity()))
+                                          .get(), body);
+            } finally {
+                disabled.close();
+            }
+            assertEquals(acceptEncodings.get(0), "");
+            assertEquals(acceptEncodings.get(1), "");
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.simbachain.simba.Deadline;
+import com.simbachain.simba.http.Hedging;
+import com.simbachain.simba.http.HedgingPolicy;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks hedged requests using futures that are completed by the test.
+ */
+public class HedgingTest {
+
+    private static HedgingPolicy policy(double ratio) {
+        HedgingPolicy policy = new HedgingPolicy();
+        policy.setEnabled(true);
+        policy.setMinSamples(1);
+        policy.setMinDelayMillis(10);
+        policy.setMaxDelayMillis(10);
+        policy.setHedgeRatio(ratio);
+        return policy;
+    }
+
+    @Test
+    public void testEndpointKey() {
+        assertEquals(Hedging.endpointKey(
+            URI.create("http://localhost/v1/simbachain/transactions/1234567890/")),
+            "/v1/simbachain/transactions/*/");
+        assertEquals(Hedging.endpointKey(URI.create(
+            "http://localhost/v1/simbachain/transactions/46bcae17-af2f-419c-98c1-d934e67f14cf/bundle/")),
+            "/v1/simbachain/transactions/*/bundle/");
+    }
+
+    @Test
+    public void testHedgeWins() throws Exception {
+        Hedging hedging = new Hedging(policy(1.0));
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> result = hedging.execute("key", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                return slow;
+            }
+            return CompletableFuture.completedFuture("hedge");
+        }, Deadline.none());
+        assertEquals(result.get(5, TimeUnit.SECONDS), "hedge");
+        assertEquals(attempts.get(), 2);
+        assertEquals(hedging.getHedgeWins(), 1);
+        assertTrue(slow.isCancelled());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        Hedging hedging = new Hedging(policy(0.0));
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> result = hedging.execute("key", () -> {
+            attempts.incrementAndGet();
+            return slow;
+        }, Deadline.none());
+        Thread.sleep(50);
+        assertFalse(result.isDone());
+        slow.complete("primary");
+        assertEquals(result.get(5, TimeUnit.SECONDS), "primary");
+        assertEquals(attempts.get(), 1);
+        assertEquals(hedging.getHedgeCount(), 0);
+    }
+}
@@ -0,0 +1,807 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simbachain.SimbaException;
+import com.simbachain.simba.BundleCache;
+import com.simbachain.simba.CallResponse;
+import com.simbachain.simba.Deadline;
+import com.simbachain.simba.Digests;
+import com.simbachain.simba.JsonData;
+import com.simbachain.simba.BatchResult;
+import com.simbachain.simba.Manifest;
+import com.simbachain.simba.ManifestCache;
+import com.simbachain.simba.ManifestFile;
+import com.simbachain.simba.MethodCall;
+import com.simbachain.simba.SimbaClient;
+import com.simbachain.simba.Transaction;
+import com.simbachain.simba.com.SigningConfirmation;
+import com.simbachain.simba.com.SimbaChain;
+import com.simbachain.simba.com.NonceManager;
+import com.simbachain.simba.com.SimbaChainConfig;
+import com.simbachain.simba.com.TransactionPipeline;
+import com.simbachain.simba.http.HttpTransport;
+import com.simbachain.simba.http.InMemoryTransport;
+import com.simbachain.simba.http.ParallelDownloadPolicy;
+import com.simbachain.simba.test.server.RequestObject;
+import com.simbachain.simba.test.server.TestRequests;
+import com.simbachain.wallet.FileWallet;
+import com.simbachain.wallet.Wallet;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs SimbaChain against the canned responses in req.json without a server.
+ * Subclasses can run the same scenarios over another transport.
+ */
+public class InMemoryTransportTest {
+
+    private static ObjectMapper mapper = new ObjectMapper();
+    private static Map<String, RequestObject> requests;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        InputStream in = Thread.currentThread()
+                               .getContextClassLoader()
+                               .getResourceAsStream("req.json");
+        requests = mapper.readValue(in, TestRequests.class)
+                         .getRequests();
+    }
+
+    static HttpResponse respond(HttpUriRequest request) throws IOException {
+        String path = request.getURI()
+                             .getPath();
+        for (RequestObject obj : requests.values()) {
+            if (obj.getMethod()
+                   .equals(request.getMethod()) && path.matches(obj.getPath())) {
+                Map<String, Object> body = obj.getResponse()
+                                              .getBody();
+                return InMemoryTransport.response(obj.getResponse()
+                                                     .getStatusCode(),
+                    body == null ? null : mapper.writeValueAsString(body));
+            }
+        }
+        return InMemoryTransport.response(404, null);
+    }
+
+    /**
+     * Create the transport that the scenarios run against.
+     */
+    protected HttpTransport transport(InMemoryTransport.Responder responder) throws IOException {
+        return new InMemoryTransport(responder);
+    }
+
+    /**
+     * Get the endpoint served by the last transport created.
+     */
+    protected String endpoint() {
+        return "http://localhost:8080/";
+    }
+
+    private SimbaChain createSimbaChain(HttpTransport transport) throws SimbaException {
+        Wallet wallet = new FileWallet("target/test-classes/keys", "wallet test");
+        wallet.loadOrCreateWallet("password");
+        SimbaChain simba = new SimbaChain(endpoint(), "simbachain",
+            new SimbaChainConfig(
+                "04d1729f7144873851a745d2a000039f55c8e3de5aea626a2bcd0055c01ba6fc", wallet),
+            new SigningConfirmation() {
+            }, transport);
+        simba.init();
+        return simba;
+    }
+
+    @Test
+    public void testGetTransaction() throws Exception {
+        HttpTransport transport = transport(InMemoryTransportTest::respond);
+        SimbaChain simba = createSimbaChain(transport);
+        Transaction txn = simba.getTransaction("1234567890");
+        assertEquals(txn.getState(), Transaction.State.INITIALIZED);
+        txn = simba.getTransactionAsync("1234567890")
+                   .get();
+        assertEquals(txn.getState(), Transaction.State.INITIALIZED);
+        assertEquals(transport.getStatistics()
+                              .getLeaseCount(), 3);
+        simba.close();
+        assertTrue(transport.isClosed());
+    }
+
+    @Test
+    public void testCall() throws Exception {
+        SimbaChain simba = createSimbaChain(transport(InMemoryTransportTest::respond));
+        JsonData data = JsonData.with("assetId", "1234")
+                                .and("createdBy", "Andrew")
+                                .and("name", "Foo");
+        CallResponse response = simba.callMethod("method1", data);
+        assertNotNull(response.getRequestIdentitier());
+        response = simba.callMethodAsync("method1", data)
+                        .get();
+        assertNotNull(response.getRequestIdentitier());
+        simba.close();
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        SimbaChain simba = createSimbaChain(transport(InMemoryTransportTest::respond));
+        JsonData data = JsonData.with("assetId", "1234")
+                                .and("createdBy", "Andrew")
+                                .and("name", "Foo");
+        assertTrue(Deadline.after(0)
+                           .isExpired());
+        assertTrue(Deadline.none()
+                           .earliest(Deadline.after(-1))
+                           .isExpired());
+        Deadline deadline = Deadline.after(1);
+        Thread.sleep(5);
+        try {
+            simba.callMethod("method1", data, deadline);
+            fail("expected deadline to be exceeded");
+        } catch (SimbaException e) {
+            assertEquals(e.getType(), SimbaException.SimbaError.DEADLINE_EXCEEDED);
+        }
+        try {
+            simba.callMethodAsync("method1", data, new HashMap<>(), deadline)
+                 .get();
+            fail("expected deadline to be exceeded");
+        } catch (ExecutionException e) {
+            assertEquals(((SimbaException) e.getCause()).getType(),
+                SimbaException.SimbaError.DEADLINE_EXCEEDED);
+        }
+        Transaction txn = simba.waitForTransactionCompletion("1234567890", 10,
+            Deadline.after(200))
+                               .get();
+        assertEquals(txn.getState(), Transaction.State.INITIALIZED);
+        simba.close();
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        AtomicInteger failures = new AtomicInteger(2);
+        HttpTransport transport = transport(request -> {
+            if (request.getURI()
+                       .getPath()
+                       .endsWith("/transaction/1234567890") && failures.getAndDecrement() > 0) {
+                return InMemoryTransport.response(503, null);
+            }
+            return respond(request);
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        Transaction txn = simba.getTransaction("1234567890");
+        assertEquals(txn.getState(), Transaction.State.INITIALIZED);
+        failures.set(3);
+        try {
+            simba.getTransaction("1234567890");
+            fail("expected retries to be exhausted");
+        } catch (SimbaException e) {
+            assertEquals(e.getHttpStatus(), 503);
+        }
+        assertEquals(failures.get(), 0);
+        simba.close();
+    }
+
+    @Test
+    public void testResumableDownload() throws Exception {
+        final byte[] bundle = new byte[1024 * 1024];
+        new Random(42).nextBytes(bundle);
+        final int failAfter = 300000;
+        final List<String> ranges = new ArrayList<>();
+        HttpTransport transport = transport(request -> {
+            if (!request.getURI()
+                        .getPath()
+                        .endsWith("/bundle_raw/")) {
+                return respond(request);
+            }
+            Header range = request.getFirstHeader(HttpHeaders.RANGE);
+            ranges.add(range == null ? null : range.getValue());
+            int start = range == null ? 0 : Integer.parseInt(range.getValue()
+                                                                  .replaceAll("[^0-9]", ""));
+            InputStream body = new ByteArrayInputStream(bundle, start, bundle.length - start);
+            if (range == null) {
+                // the connection drops part way through the first response
+                body = new FilterInputStream(new ByteArrayInputStream(bundle, 0, failAfter)) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int n = super.read(b, off, len);
+                        if (n < 0) {
+                            throw new IOException("Connection reset");
+                        }
+                        return n;
+                    }
+                };
+            }
+            BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+                range == null ? 200 : 206, "OK");
+            if (range != null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + start + "-" + (bundle.length - 1) + "/" + bundle.length);
+            }
+            response.setEntity(new InputStreamEntity(body, ContentType.APPLICATION_OCTET_STREAM));
+            return response;
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        Path path = Files.createTempFile("bundle", ".tar.gz");
+        try {
+            assertEquals(simba.getBundleForTransaction("1234567890", path), bundle.length);
+            assertArrayEquals(Files.readAllBytes(path), bundle);
+            assertEquals(ranges.size(), 2);
+            assertNull(ranges.get(0));
+            // resumed from the bytes received before the drop, which over a network can
+            // be fewer than were written
+            int resumed = Integer.parseInt(ranges.get(1)
+                                                 .replaceAll("[^0-9]", ""));
+            assertTrue(resumed > 0 && resumed <= failAfter);
+        } finally {
+            Files.delete(path);
+            simba.close();
+        }
+    }
+
+    private static HttpResponse serveRanges(HttpUriRequest request, byte[] data, boolean ranges) {
+        Header range = request.getFirstHeader(HttpHeaders.RANGE);
+        BasicHttpResponse response;
+        if (range == null || !ranges) {
+            response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.setEntity(new ByteArrayEntity(data, ContentType.APPLICATION_OCTET_STREAM));
+        } else {
+            String[] bytes = range.getValue()
+                                  .substring("bytes=".length())
+                                  .split("-");
+            int start = Integer.parseInt(bytes[0]);
+            int end = bytes.length > 1 ? Math.min(Integer.parseInt(bytes[1]), data.length - 1)
+                : data.length - 1;
+            response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 206, "Partial Content");
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                "bytes " + start + "-" + end + "/" + data.length);
+            response.setEntity(new ByteArrayEntity(data, start, end - start + 1,
+                ContentType.APPLICATION_OCTET_STREAM));
+        }
+        if (ranges) {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        }
+        if (request.getMethod()
+                   .equals("HEAD")) {
+            response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(data.length));
+            response.setEntity(null);
+        }
+        return response;
+    }
+
+    @Test
+    public void testParallelDownload() throws Exception {
+        final byte[] file = new byte[1024 * 1024 + 17];
+        new Random(7).nextBytes(file);
+        final AtomicInteger rangeRequests = new AtomicInteger();
+        final AtomicInteger headRequests = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        final boolean[] ranges = new boolean[] {true};
+        final byte[][] served = new byte[][] {file};
+        HttpTransport transport = transport(request -> {
+            if (!request.getURI()
+                        .getPath()
+                        .endsWith("/fileByName/big.bin")) {
+                return respond(request);
+            }
+            requests.incrementAndGet();
+            if (request.getMethod()
+                       .equals("HEAD")) {
+                headRequests.incrementAndGet();
+            } else if (request.containsHeader(HttpHeaders.RANGE)) {
+                rangeRequests.incrementAndGet();
+            }
+            return serveRanges(request, served[0], ranges[0]);
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        ParallelDownloadPolicy policy = new ParallelDownloadPolicy();
+        policy.setEnabled(true);
+        policy.setSegmentSize(64 * 1024);
+        policy.setConnections(4);
+        simba.setParallelDownloadPolicy(policy);
+        Path path = Files.createTempFile("big", ".bin");
+        try {
+            assertEquals(simba.getBundleFileForTransaction("1234567890", "big.bin", path),
+                file.length);
+            assertArrayEquals(Files.readAllBytes(path), file);
+            // the first segment gives the size, so no HEAD request is needed
+            assertEquals(headRequests.get(), 0);
+            assertEquals(rangeRequests.get(), 17);
+
+            // the size is taken from the manifest
+            ManifestFile manifestFile = new ManifestFile();
+            manifestFile.setName("big.bin");
+            manifestFile.setSize(file.length);
+            assertEquals(simba.getBundleFileForTransaction("1234567890", manifestFile, path),
+                file.length);
+            assertArrayEquals(Files.readAllBytes(path), file);
+            assertEquals(headRequests.get(), 0);
+            assertEquals(rangeRequests.get(), 34);
+
+            // a file no larger than a segment takes a single request
+            byte[] small = Arrays.copyOf(file, 1000);
+            served[0] = small;
+            requests.set(0);
+            assertEquals(simba.getBundleFileForTransaction("1234567890", "big.bin", path),
+                small.length);
+            assertArrayEquals(Files.readAllBytes(path), small);
+            assertEquals(requests.get(), 1);
+
+            // a server without range support falls back to a single stream
+            served[0] = file;
+            ranges[0] = false;
+            requests.set(0);
+            assertEquals(simba.getBundleFileForTransaction("1234567890", "big.bin", path),
+                file.length);
+            assertArrayEquals(Files.readAllBytes(path), file);
+            assertEquals(requests.get(), 1);
+            assertEquals(simba.getBundleFileForTransaction("1234567890", manifestFile, path),
+                file.length);
+            assertArrayEquals(Files.readAllBytes(path), file);
+        } finally {
+            Files.delete(path);
+            simba.close();
+        }
+    }
+
+    @Test
+    public void testVerifiedDownload() throws Exception {
+        final byte[] file = new byte[100000];
+        new Random(7).nextBytes(file);
+        HttpTransport transport = transport(request -> {
+            if (!request.getURI()
+                        .getPath()
+                        .endsWith("/fileByName/data.bin")) {
+                return respond(request);
+            }
+            return serveRanges(request, file, false);
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        try {
+            ManifestFile manifestFile = new ManifestFile();
+            manifestFile.setName("data.bin");
+            manifestFile.setSize(file.length);
+            manifestFile.setAlg("sha256");
+            manifestFile.setHash(Digests.toHex(MessageDigest.getInstance("SHA-256")
+                                                            .digest(file)));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(simba.getBundleFileForTransaction("1234567890", manifestFile, out, true),
+                file.length);
+            assertArrayEquals(out.toByteArray(), file);
+
+            manifestFile.setHash(Digests.toHex(new byte[32]));
+            try {
+                simba.getBundleFileForTransaction("1234567890", manifestFile,
+                    new ByteArrayOutputStream(), true);
+                fail("expected an integrity error");
+            } catch (SimbaException e) {
+                assertEquals(e.getType(), SimbaException.SimbaError.INTEGRITY_ERROR);
+            }
+        } finally {
+            simba.close();
+        }
+    }
+
+    @Test
+    public void testBundleCache() throws Exception {
+        final byte[] file = new byte[20000];
+        new Random(11).nextBytes(file);
+        final AtomicInteger downloads = new AtomicInteger();
+        HttpTransport transport = transport(request -> {
+            if (!request.getURI()
+                        .getPath()
+                        .endsWith("/fileByName/cached.bin")) {
+                return respond(request);
+            }
+            downloads.incrementAndGet();
+            return serveRanges(request, file, false);
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        Path dir = Files.createTempDirectory("cache");
+        Path path = Files.createTempFile("cached", ".bin");
+        try {
+            BundleCache cache = new BundleCache(dir, 1024 * 1024);
+            simba.setBundleCache(cache);
+            ManifestFile manifestFile = new ManifestFile();
+            manifestFile.setName("cached.bin");
+            manifestFile.setSize(file.length);
+            manifestFile.setAlg("sha256");
+            manifestFile.setHash(Digests.toHex(MessageDigest.getInstance("SHA-256")
+                                                            .digest(file)));
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                assertEquals(
+                    simba.getBundleFileForTransaction("1234567890", manifestFile, out, true),
+                    file.length);
+                assertArrayEquals(out.toByteArray(), file);
+                assertEquals(simba.getBundleFileForTransaction("1234567890", manifestFile, path),
+                    file.length);
+                assertArrayEquals(Files.readAllBytes(path), file);
+            }
+            assertEquals(downloads.get(), 1);
+            assertEquals(cache.getHits(), 3);
+            cache.remove(BundleCache.fileKey(manifestFile));
+        } finally {
+            Files.delete(path);
+            Files.delete(dir);
+            simba.close();
+        }
+    }
+
+    @Test
+    public void testCachedBundle() throws Exception {
+        final byte[] bundle = BundleReaderTest.archive(false, "bundle/second.bin");
+        final byte[] corrupt = bundle.clone();
+        // a byte in the content of the second file
+        corrupt[2048 + 10] ^= 1;
+        final String manifest = mapper.writeValueAsString(Collections.singletonMap("manifest",
+            Arrays.asList(
+                BundleReaderTest.manifestFile("bundle/first.txt", BundleReaderTest.FIRST),
+                BundleReaderTest.manifestFile("bundle/second.bin", BundleReaderTest.SECOND))));
+        final AtomicInteger transactions = new AtomicInteger();
+        final AtomicInteger downloads = new AtomicInteger();
+        HttpTransport transport = transport(request -> {
+            String path = request.getURI()
+                                 .getPath();
+            if (path.endsWith("/transaction/bundled")) {
+                transactions.incrementAndGet();
+                return InMemoryTransport.response(200, "{\"id\": \"bundled\", \"payload\": "
+                    + "{\"method\": \"method1\", "
+                    + "\"inputs\": {\"_bundleHash\": \"0xABC123\"}}}");
+            }
+            if (path.endsWith("/transaction/bundled/bundle/")) {
+                return InMemoryTransport.response(200, manifest);
+            }
+            if (path.endsWith("/transaction/bundled/bundle_raw/")) {
+                BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200,
+                    "OK");
+                response.setEntity(new ByteArrayEntity(
+                    downloads.getAndIncrement() == 0 ? corrupt : bundle,
+                    ContentType.APPLICATION_OCTET_STREAM));
+                return response;
+            }
+            return respond(request);
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        Path dir = Files.createTempDirectory("cache");
+        try {
+            BundleCache cache = new BundleCache(dir, 1024 * 1024);
+            simba.setBundleCache(cache);
+            try {
+                simba.getBundleForTransaction("bundled", new ByteArrayOutputStream());
+                fail("expected the corrupt bundle to be rejected");
+            } catch (SimbaException e) {
+                assertEquals(e.getType(), SimbaException.SimbaError.INTEGRITY_ERROR);
+            }
+            assertFalse(cache.contains(BundleCache.bundleKey("abc123")));
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                assertEquals(simba.getBundleForTransaction("bundled", out), bundle.length);
+                assertArrayEquals(out.toByteArray(), bundle);
+            }
+            assertEquals(downloads.get(), 2);
+            assertEquals(transactions.get(), 1);
+            assertEquals(cache.getBundleHash("bundled"), "0xABC123");
+            cache.remove(BundleCache.bundleKey("abc123"));
+        } finally {
+            Files.delete(dir);
+            simba.close();
+        }
+    }
+
+    @Test
+    public void testBulkManifests() throws Exception {
+        final AtomicInteger manifestRequests = new AtomicInteger();
+        HttpTransport transport = transport(request -> {
+            String path = request.getURI()
+                                 .getPath();
+            if (!path.endsWith("/bundle/")) {
+                return respond(request);
+            }
+            manifestRequests.incrementAndGet();
+            String id = path.substring(0, path.length() - "/bundle/".length());
+            id = id.substring(id.lastIndexOf('/') + 1);
+            return InMemoryTransport.response(200,
+                "{\"manifest\": [{\"name\": \"" + id + ".txt\", \"size\": 1}]}");
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        try {
+            simba.setManifestCache(new ManifestCache(100));
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                ids.add("txn" + (i % 150));
+            }
+            List<Manifest> manifests = simba.getBundleMetadataForTransactions(ids);
+            assertEquals(manifests.size(), ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(manifests.get(i)
+                                      .getFiles()
+                                      .get(0)
+                                      .getName(), ids.get(i) + ".txt");
+            }
+            assertEquals(manifestRequests.get(), 150);
+
+            // the last 100 are cached
+            manifests = simba.getBundleMetadataForTransactionsAsync(
+                Arrays.asList("txn149", "txn120", "txn10"), 2)
+                             .get();
+            assertEquals(manifests.get(1)
+                                  .getFiles()
+                                  .get(0)
+                                  .getName(), "txn120.txt");
+            assertEquals(manifestRequests.get(), 151);
+            assertEquals(simba.getBundleMetadataForTransaction("txn149")
+                              .getFiles()
+                              .size(), 1);
+            assertEquals(manifestRequests.get(), 151);
+        } finally {
+            simba.close();
+        }
+    }
+
+    @Test
+    public void testPipeline() throws Exception {
+        AtomicInteger signed = new AtomicInteger();
+        HttpTransport transport = transport(request -> {
+            if (request.getMethod()
+                       .equals("POST") && request.getURI()
+                                                 .getPath()
+                                                 .startsWith("/v1/simbachain/transaction/")
+                && signed.getAndIncrement() == 0) {
+                // the first nonce is rejected with a suggested nonce of 0xb1
+                RequestObject rejected = requests.get("method3_sign");
+                return InMemoryTransport.response(409, mapper.writeValueAsString(
+                    rejected.getResponse()
+                            .getBody()));
+            }
+            return respond(request);
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        JsonData data = JsonData.with("assetId", "1234")
+                                .and("createdBy", "Andrew")
+                                .and("name", "Foo");
+        List<CompletableFuture<CallResponse>> futures = new ArrayList<>();
+        try (TransactionPipeline pipeline = new TransactionPipeline(simba, 4, 2)) {
+            for (int i = 0; i < 20; i++) {
+                futures.add(pipeline.submit("method1", data));
+                assertTrue(pipeline.getPending() <= 4);
+            }
+        }
+        for (CompletableFuture<CallResponse> future : futures) {
+            assertNotNull(future.get()
+                                .getRequestIdentitier());
+        }
+        assertEquals(signed.get(), 21);
+        Wallet wallet = new FileWallet("target/test-classes/keys", "wallet test");
+        wallet.loadOrCreateWallet("password");
+        NonceManager nonces = NonceManager.forAddress(simba.getEndpoint(), simba.getMetadata()
+                                                                                .getNetwork(),
+            wallet.getAddress());
+        assertEquals(nonces.getInFlight(), 0);
+        assertTrue(nonces.getNext()
+                         .intValue() > 0xb1);
+        nonces.detach();
+        simba.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPipelineMalformedPayload() throws Exception {
+        AtomicInteger prepared = new AtomicInteger();
+        HttpTransport transport = transport(request -> {
+            if (request.getURI()
+                       .getPath()
+                       .equals("/v1/simbachain/method1/")
+                && prepared.getAndIncrement() % 2 == 0) {
+                Map<String, Object> body = mapper.readValue(mapper.writeValueAsString(
+                    requests.get("method1")
+                            .getResponse()
+                            .getBody()), Map.class);
+                ((Map<String, Object>) ((Map<String, Object>) body.get("payload")).get("raw")).put(
+                    "nonce", "not a nonce");
+                return InMemoryTransport.response(200, mapper.writeValueAsString(body));
+            }
+            return respond(request);
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        JsonData data = JsonData.with("assetId", "1234")
+                                .and("createdBy", "Andrew")
+                                .and("name", "Foo");
+        List<CompletableFuture<CallResponse>> futures = new ArrayList<>();
+        try (TransactionPipeline pipeline = new TransactionPipeline(simba, 2, 2)) {
+            for (int i = 0; i < 10; i++) {
+                futures.add(pipeline.submit("method1", data));
+            }
+        }
+        int failed = 0;
+        for (CompletableFuture<CallResponse> future : futures) {
+            try {
+                assertNotNull(future.get(5, TimeUnit.SECONDS)
+                                    .getRequestIdentitier());
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+        // the malformed payloads fail without stopping the pipeline
+        assertEquals(failed, 5);
+        simba.close();
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        AtomicInteger posts = new AtomicInteger();
+        HttpTransport transport = transport(request -> {
+            if (request.getURI()
+                       .getPath()
+                       .equals("/v1/simbachain/method1/") && posts.getAndIncrement() % 3 == 0) {
+                return InMemoryTransport.response(400, null);
+            }
+            return respond(request);
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        JsonData data = JsonData.with("assetId", "1234")
+                                .and("createdBy", "Andrew")
+                                .and("name", "Foo");
+        List<MethodCall> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            calls.add(new MethodCall("method1", data));
+        }
+        List<MethodCall> invalid = new ArrayList<>(calls);
+        invalid.add(new MethodCall("method1", JsonData.with("unknown", "1234")));
+        try {
+            simba.callMethodBatch(invalid);
+            fail("expected the batch to be invalid");
+        } catch (SimbaException e) {
+            assertTrue(e.getMessage()
+                        .contains("call 10"));
+        }
+        assertEquals(posts.get(), 0);
+
+        BatchResult result = simba.callMethodBatch(calls, 4);
+        assertEquals(result.size(), 10);
+        assertEquals(result.getFailed(), 4);
+        assertEquals(result.getSucceeded(), 6);
+        for (int i = 0; i < result.size(); i++) {
+            assertTrue(result.isSuccess(i) == (result.getResponse(i) != null));
+            assertTrue(result.isSuccess(i) != (result.getError(i) != null));
+        }
+        assertTrue(result.getThroughput() > 0);
+        simba.close();
+    }
+
+    @Test
+    public void testStreamDownloadNotRetried() throws Exception {
+        final byte[] bundle = new byte[100000];
+        new Random(7).nextBytes(bundle);
+        AtomicInteger gets = new AtomicInteger();
+        HttpTransport transport = transport(request -> {
+            if (!request.getURI()
+                        .getPath()
+                        .endsWith("/bundle_raw/")) {
+                return respond(request);
+            }
+            gets.incrementAndGet();
+            // the connection drops part way through every response
+            InputStream body = new FilterInputStream(new ByteArrayInputStream(bundle, 0, 40000)) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n < 0) {
+                        throw new IOException("Connection reset");
+                    }
+                    return n;
+                }
+            };
+            BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.setEntity(new InputStreamEntity(body, ContentType.APPLICATION_OCTET_STREAM));
+            return response;
+        });
+        SimbaChain simba = createSimbaChain(transport);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            simba.getBundleForTransaction("1234567890", out, false);
+            fail("expected the download to fail");
+        } catch (SimbaException e) {
+            // expected
+        }
+        assertEquals(gets.get(), 1);
+        // what was received is written once, and over a network can be less than was sent
+        assertTrue(out.size() <= 40000);
+        out.reset();
+        try {
+            simba.getBundleForTransactionAsync("1234567890", out, false)
+                 .get();
+            fail("expected the download to fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SimbaException);
+        }
+        assertEquals(gets.get(), 2);
+        assertTrue(out.size() <= 40000);
+        simba.close();
+    }
+
+    @Test
+    public void testStreamHandlerUsedOnce() throws Exception {
+        StreamClient client = new StreamClient();
+        ManifestFile file = new ManifestFile();
+        file.setName("data.json");
+        file.setAlg("sha256");
+        file.setHash(Digests.toHex(MessageDigest.getInstance("SHA-256")
+                                                .digest("{}".getBytes("UTF-8"))));
+        file.setSize(2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResponseHandler<Long> handler = client.handler(out, file);
+        assertEquals((long) handler.handleResponse(InMemoryTransport.response(200, "{}")), 2L);
+        try {
+            // a second attempt would pass verification on its own
+            handler.handleResponse(InMemoryTransport.response(200, "{}"));
+            fail("expected the handler to refuse a second response");
+        } catch (SimbaException e) {
+            assertEquals(e.getType(), SimbaException.SimbaError.INTEGRITY_ERROR);
+        }
+        assertEquals(out.size(), 2);
+    }
+
+    private static class StreamClient extends SimbaClient {
+
+        private StreamClient() {
+            super("http://localhost");
+        }
+
+        private ResponseHandler<Long> handler(ByteArrayOutputStream out, ManifestFile file) {
+            return streamResponseHandler(out, false, file);
+        }
+
+        @Override
+        protected Map<String, String> getApiHeaders() {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import com.simbachain.simba.BundleCache;
+import com.simbachain.simba.Manifest;
+import com.simbachain.simba.ManifestCache;
+import com.simbachain.simba.ManifestFile;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks eviction from memory and reloading from the on-disk tier.
+ */
+public class ManifestCacheTest {
+
+    private static Manifest manifest(String name) {
+        ManifestFile file = new ManifestFile();
+        file.setName(name);
+        file.setSize(42);
+        file.setAlg("sha256");
+        file.setHash("abcdef");
+        Manifest manifest = new Manifest();
+        manifest.getFiles()
+                .add(file);
+        return manifest;
+    }
+
+    @Test
+    public void testMemory() {
+        ManifestCache cache = new ManifestCache(2);
+        cache.put("a", manifest("a.txt"));
+        cache.put("b", manifest("b.txt"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", manifest("c.txt"));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getHits(), 3);
+        assertEquals(cache.getMisses(), 1);
+    }
+
+    @Test
+    public void testDisk() throws Exception {
+        Path dir = Files.createTempDirectory("manifests");
+        try {
+            ManifestCache cache = new ManifestCache(1, new BundleCache(dir, 1024 * 1024));
+            cache.put("0x1234", manifest("first.txt"));
+            cache.put("id with spaces", manifest("second.txt"));
+            // evicted from memory, read back from disk
+            Manifest first = cache.get("0x1234");
+            assertEquals(first.getFiles()
+                              .get(0)
+                              .getName(), "first.txt");
+
+            ManifestCache reopened = new ManifestCache(10, new BundleCache(dir, 1024 * 1024));
+            Manifest second = reopened.get("id with spaces");
+            assertNotNull(second);
+            assertEquals(second.getFiles()
+                               .get(0)
+                               .getSize(), 42);
+            assertNull(reopened.get("unknown"));
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder())
+                     .forEach(path -> path.toFile()
+                                          .delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.simbachain.simba.com.NonceManager;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks nonce allocation, gap filling and reconciling with the server.
+ */
+public class NonceManagerTest {
+
+    private static BigInteger n(long value) {
+        return BigInteger.valueOf(value);
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        NonceManager nonces = NonceManager.forAddress("http://concurrent/", "Quorum", "0xABC");
+        assertSame(nonces, NonceManager.forAddress("http://concurrent/", "Quorum", "0xabc"));
+        Set<BigInteger> allocated = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = IntStream.range(0, 200)
+                                               .mapToObj(i -> executor.submit(
+                                                   () -> allocated.add(nonces.allocate(n(5)))))
+                                               .collect(Collectors.toList());
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(allocated.size(), 200);
+        assertEquals(nonces.getNext(), n(205));
+        assertEquals(nonces.getInFlight(), 200);
+    }
+
+    @Test
+    public void testGaps() {
+        NonceManager nonces = NonceManager.forAddress("http://gaps/", "Quorum", "0xabc");
+        assertEquals(nonces.allocate(n(10)), n(10));
+        assertEquals(nonces.allocate(n(10)), n(11));
+        assertEquals(nonces.allocate(n(10)), n(12));
+        // 11 was never accepted, so it is used next
+        nonces.release(n(11));
+        assertEquals(nonces.getGaps(), 1);
+        assertEquals(nonces.allocate(n(10)), n(11));
+        assertEquals(nonces.allocate(n(10)), n(13));
+        // the server has moved past the gap
+        nonces.release(n(13));
+        assertEquals(nonces.allocate(n(20)), n(20));
+        assertEquals(nonces.getGaps(), 0);
+    }
+
+    @Test
+    public void testReject() {
+        NonceManager nonces = NonceManager.forAddress("http://reject/", "Quorum", "0xabc");
+        assertEquals(nonces.allocate(n(0)), n(0));
+        assertEquals(nonces.allocate(n(0)), n(1));
+        // another client has used nonces up to 6
+        nonces.reject(n(1), n(7));
+        assertEquals(nonces.allocate(null), n(7));
+        // the server is missing 3, which was abandoned earlier
+        nonces.reject(n(7), n(3));
+        assertEquals(nonces.allocate(null), n(3));
+        assertEquals(nonces.allocate(null), n(8));
+        nonces.confirm(n(0));
+        nonces.confirm(n(3));
+        nonces.confirm(n(8));
+        assertEquals(nonces.getInFlight(), 0);
+    }
+
+    @Test
+    public void testShared() {
+        NonceManager quorum = NonceManager.forAddress("http://shared/", "Quorum", "0xabc");
+        NonceManager ethereum = NonceManager.forAddress("http://shared/", "Ethereum", "0xabc");
+        // nonces are per chain, so each network has its own manager
+        assertNotSame(quorum, ethereum);
+        assertEquals(quorum.allocate(n(4)), n(4));
+        assertEquals(ethereum.allocate(n(9)), n(9));
+        NonceManager again = NonceManager.forAddress("http://shared/", "Quorum", "0xabc");
+        assertSame(quorum, again);
+        int shared = NonceManager.getShared();
+        again.detach();
+        assertEquals(NonceManager.getShared(), shared);
+        // the last user has detached, so the manager is dropped
+        quorum.detach();
+        ethereum.detach();
+        assertEquals(NonceManager.getShared(), shared - 2);
+        NonceManager fresh = NonceManager.forAddress("http://shared/", "Quorum", "0xabc");
+        assertNotSame(quorum, fresh);
+        assertNull(fresh.getNext());
+        fresh.detach();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import com.simbachain.simba.http.InMemoryTransport;
+import com.simbachain.simba.http.RateLimitPolicy;
+import com.simbachain.simba.http.RateLimiter;
+import org.apache.http.HttpResponse;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the token bucket and its reaction to 429 responses.
+ */
+public class RateLimiterTest {
+
+    private static RateLimitPolicy policy() {
+        RateLimitPolicy policy = new RateLimitPolicy();
+        policy.setEnabled(true);
+        policy.setPermitsPerSecond(10);
+        policy.setBurst(2);
+        return policy;
+    }
+
+    @Test
+    public void testBurstThenPace() {
+        RateLimiter limiter = new RateLimiter(policy());
+        assertEquals(limiter.reserve(), 0);
+        assertEquals(limiter.reserve(), 0);
+        long wait = limiter.reserve();
+        assertTrue(wait > 0 && wait <= 101);
+        assertTrue(limiter.reserve() > wait);
+    }
+
+    @Test
+    public void testRetryAfter() {
+        RateLimiter limiter = new RateLimiter(policy());
+        HttpResponse response = InMemoryTransport.response(429, null);
+        response.setHeader("Retry-After", "2");
+        assertEquals(RateLimiter.retryAfterMillis(response), 2000);
+        limiter.onResponse(response);
+        assertEquals(limiter.getPermitsPerSecond(), 5.0, 0.001);
+        assertTrue(limiter.reserve() > 1900);
+        limiter.onResponse(InMemoryTransport.response(200, "{}"));
+        assertEquals(limiter.getPermitsPerSecond(), 5.5, 0.001);
+    }
+
+    @Test
+    public void testDisabled() {
+        assertNull(RateLimiter.forKey("key", new RateLimitPolicy()));
+    }
+
+    @Test
+    public void testShared() {
+        int shared = RateLimiter.getShared();
+        RateLimitPolicy policy = policy();
+        RateLimiter first = RateLimiter.forKey("shared", policy);
+        RateLimitPolicy other = policy();
+        other.setPermitsPerSecond(policy.getPermitsPerSecond() * 2);
+        RateLimiter second = RateLimiter.forKey("shared", other);
+        assertSame(first, second);
+        assertEquals(second.getPermitsPerSecond(), policy.getPermitsPerSecond(), 0.001);
+        assertEquals(RateLimiter.getShared(), shared + 1);
+
+        first.detach();
+        assertEquals(RateLimiter.getShared(), shared + 1);
+        second.detach();
+        assertEquals(RateLimiter.getShared(), shared);
+        RateLimiter third = RateLimiter.forKey("shared", other);
+        assertNotSame(first, third);
+        assertEquals(third.getPermitsPerSecond(), other.getPermitsPerSecond(), 0.001);
+        third.detach();
+        assertEquals(RateLimiter.getShared(), shared);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.simbachain.SimbaException;
+import com.simbachain.simba.JsonData;
+import com.simbachain.simba.com.SigningConfirmation;
+import com.simbachain.simba.com.SimbaChain;
+import com.simbachain.simba.com.SimbaChainConfig;
+import com.simbachain.simba.http.InMemoryTransport;
+import com.simbachain.wallet.FileWallet;
+import com.simbachain.wallet.Wallet;
+import org.apache.http.client.methods.HttpPost;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the bytes allocated building a method call request with createCall, comparing
+ * it with building the same request from a copied map and a formatted URL.
+ */
+public class RequestAllocationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestAllocationTest.class);
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 20000;
+    private static final long MAX_BYTES_PER_CALL = 8 * 1024;
+
+    private static class RequestBuilder extends SimbaChain {
+
+        private final String from;
+
+        RequestBuilder(Wallet wallet) throws SimbaException {
+            super("http://localhost:8080/", "simbachain",
+                new SimbaChainConfig("04d1729f7144873851a745d2a000039f55c8e3de5aea626a2bcd0055c01ba6fc",
+                    wallet), new SigningConfirmation() {
+                }, new InMemoryTransport(InMemoryTransportTest::respond));
+            this.from = wallet.getAddress();
+        }
+
+        HttpPost lean(String method, JsonData data, Map<String, String> headers)
+            throws SimbaException {
+            return createCall(method, data, headers);
+        }
+
+        HttpPost copying(String method, JsonData data, Map<String, String> headers)
+            throws SimbaException {
+            validateParameters(getMetadata(), method, data, false);
+            String url = String.format("%s%s%s/%s/", getEndpoint(), getvPath(), getContract(),
+                method);
+            JsonData copy = data.copy();
+            copy.and("from", from);
+            return createPost(url, copy.asMap(), new HashMap<>(headers));
+        }
+    }
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        InMemoryTransportTest.setup();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(
+            Thread.currentThread()
+                  .getId());
+    }
+
+    private static byte[] body(HttpPost post) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        post.getEntity()
+            .writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testAllocationPerCall() throws Exception {
+        Assume.assumeTrue(
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        Wallet wallet = new FileWallet("target/test-classes/keys", "wallet test");
+        wallet.loadOrCreateWallet("password");
+        RequestBuilder builder = new RequestBuilder(wallet);
+        builder.init();
+        JsonData data = JsonData.with("assetId", "1234")
+                                .and("createdBy", "Andrew")
+                                .and("name", "Foo");
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Request-Id", "1234");
+
+        HttpPost lean = builder.lean("method1", data, headers);
+        HttpPost copied = builder.copying("method1", data, headers);
+        assertEquals(lean.getURI(), copied.getURI());
+        assertEquals(lean.getFirstHeader("X-Request-Id")
+                         .getValue(), "1234");
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(mapper.readTree(body(copied)), mapper.readTree(body(lean)));
+
+        for (int i = 0; i < WARMUP; i++) {
+            builder.lean("method1", data, headers);
+            builder.copying("method1", data, headers);
+        }
+        long start = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            builder.lean("method1", data, headers);
+        }
+        long leanBytes = (allocatedBytes() - start) / ITERATIONS;
+        start = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            builder.copying("method1", data, headers);
+        }
+        long copyingBytes = (allocatedBytes() - start) / ITERATIONS;
+        if (log.isDebugEnabled()) {
+            log.debug("RequestAllocationTest: bytes per call, lean = "
+                + leanBytes
+                + ", copying = "
+                + copyingBytes);
+        }
+        String message = "lean = " + leanBytes + ", copying = " + copyingBytes;
+        // createCall should allocate at least a quarter less than the copying path and
+        // stay within a few kilobytes
+        assertTrue(message, leanBytes * 4 <= copyingBytes * 3);
+        assertTrue(message, leanBytes < MAX_BYTES_PER_CALL);
+        builder.close();
+    }
+}
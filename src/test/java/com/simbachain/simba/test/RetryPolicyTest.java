@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import com.simbachain.SimbaException;
+import com.simbachain.simba.http.RetryPolicy;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which errors are retried and the backoff between attempts.
+ */
+public class RetryPolicyTest {
+
+    private static SimbaException error(int status) {
+        SimbaException e = new SimbaException("Error", SimbaException.SimbaError.HTTP_ERROR);
+        e.setHttpStatus(status);
+        return e;
+    }
+
+    private static SimbaException error(IOException cause) {
+        return new SimbaException("Error", SimbaException.SimbaError.HTTP_ERROR, cause);
+    }
+
+    @Test
+    public void testRetryable() {
+        RetryPolicy policy = new RetryPolicy();
+        assertTrue(policy.isRetryable("GET", error(503)));
+        assertTrue(policy.isRetryable("GET", error(429)));
+        assertTrue(policy.isRetryable("GET", error(502)));
+        assertFalse(policy.isRetryable("GET", error(404)));
+        assertTrue(policy.isRetryable("GET", error(new SocketTimeoutException())));
+        assertTrue(policy.isRetryable("HEAD", error(new ConnectException())));
+        assertFalse(policy.isRetryable("GET",
+            new SimbaException("Open", SimbaException.SimbaError.CIRCUIT_OPEN)));
+        // POSTs are left to the caller by default
+        assertFalse(policy.isRetryable("POST", error(429)));
+        assertFalse(policy.isRetryable("POST", error(503)));
+        assertFalse(policy.isRetryable("POST", error(new ConnectException())));
+
+        policy.setRetryNonIdempotent(true);
+        assertTrue(policy.isRetryable("POST", error(429)));
+        assertTrue(policy.isRetryable("POST", error(503)));
+        assertFalse(policy.isRetryable("POST", error(502)));
+        assertFalse(policy.isRetryable("POST", error(new SocketTimeoutException())));
+        assertTrue(policy.isRetryable("POST", error(new ConnectException())));
+    }
+
+    @Test
+    public void testBackoff() {
+        for (int i = 0; i < 100; i++) {
+            long first = RetryPolicy.backoff(100, 1000, 2.0, 1);
+            assertTrue(first >= 50 && first <= 100);
+            long third = RetryPolicy.backoff(100, 1000, 2.0, 3);
+            assertTrue(third >= 200 && third <= 400);
+            long capped = RetryPolicy.backoff(100, 1000, 2.0, 10);
+            assertTrue(capped >= 500 && capped <= 1000);
+        }
+    }
+}
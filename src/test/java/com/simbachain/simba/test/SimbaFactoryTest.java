@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import com.simbachain.simba.SimbaFactory;
+import com.simbachain.simba.http.HttpConfig;
+import com.simbachain.simba.http.HttpTransport;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how the factory shares transports between instances.
+ */
+public class SimbaFactoryTest {
+
+    @Test
+    public void testSharedTransport() {
+        SimbaFactory factory = SimbaFactory.factory();
+        HttpTransport first = factory.acquireTransport("https://share.example.com/v2/apps/",
+            new HttpConfig());
+        HttpTransport second = factory.acquireTransport("https://SHARE.example.com:443/v2/",
+            new HttpConfig());
+        assertSame(first, second);
+
+        second.release();
+        assertFalse(first.isClosed());
+        first.release();
+        assertTrue(first.isClosed());
+
+        HttpTransport third = factory.acquireTransport("https://share.example.com/v2/apps/",
+            new HttpConfig());
+        assertNotSame(first, third);
+        assertFalse(third.isClosed());
+        third.release();
+        assertTrue(third.isClosed());
+    }
+
+    @Test
+    public void testSeparateTransports() {
+        SimbaFactory factory = SimbaFactory.factory();
+        HttpTransport first = factory.acquireTransport("https://separate.example.com/",
+            new HttpConfig());
+        HttpTransport otherPort = factory.acquireTransport("https://separate.example.com:8443/",
+            new HttpConfig());
+        HttpConfig config = new HttpConfig();
+        config.setMaxTotal(config.getMaxTotal() + 1);
+        HttpTransport otherConfig = factory.acquireTransport("https://separate.example.com/",
+            config);
+        assertNotSame(first, otherPort);
+        assertNotSame(first, otherConfig);
+        assertSame(config, otherConfig.getConfig());
+
+        first.release();
+        otherPort.release();
+        otherConfig.release();
+        assertTrue(first.isClosed());
+        assertTrue(otherPort.isClosed());
+        assertTrue(otherConfig.isClosed());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.simbachain.SimbaException;
+import com.simbachain.simba.Digests;
+import com.simbachain.simba.FileDigest;
+import com.simbachain.simba.ManifestFile;
+import com.simbachain.simba.Simba;
+import com.simbachain.simba.SimbaClient;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the length, repeatability and content of the upload file variants.
+ */
+public class UploadFileTest {
+
+    private static final byte[] DATA = "hello upload".getBytes(StandardCharsets.UTF_8);
+
+    private static byte[] read(Simba.UploadFile file) throws IOException {
+        try (InputStream in = file.getFile()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int c;
+            while ((c = in.read(buf)) != -1) {
+                out.write(buf, 0, c);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void testPath() throws Exception {
+        Path path = Files.createTempFile("upload", ".txt");
+        try {
+            Files.write(path, DATA);
+            Simba.UploadFile file = new Simba.UploadFile("file_0", "text/plain", path);
+            assertEquals(file.getContentLength(), DATA.length);
+            assertTrue(file.isRepeatable());
+            assertArrayEquals(read(file), DATA);
+            assertArrayEquals(read(file), DATA);
+
+            Simba.UploadFile fromFile = new Simba.UploadFile("file_0", path.toFile());
+            assertEquals(fromFile.getContentLength(), DATA.length);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testMissingFile() {
+        try {
+            new Simba.UploadFile("file_0", "does/not/exist.txt");
+            fail("expected a file error");
+        } catch (SimbaException e) {
+            assertEquals(e.getType(), SimbaException.SimbaError.FILE_ERROR);
+        }
+    }
+
+    @Test
+    public void testFileChannel() throws Exception {
+        Path path = Files.createTempFile("upload", ".txt");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(DATA));
+            channel.position(6);
+            Simba.UploadFile file = new Simba.UploadFile("file_0", channel);
+            assertEquals(file.getContentLength(), DATA.length - 6);
+            assertTrue(file.isRepeatable());
+            assertEquals(new String(read(file), StandardCharsets.UTF_8), "upload");
+            assertEquals(new String(read(file), StandardCharsets.UTF_8), "upload");
+            // reading the file leaves the channel open and where it was
+            assertTrue(channel.isOpen());
+            assertEquals(channel.position(), 6);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testByteBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DATA.length);
+        buffer.put(DATA);
+        buffer.flip();
+        Simba.UploadFile file = new Simba.UploadFile("file_0", buffer);
+        assertEquals(file.getContentLength(), DATA.length);
+        assertTrue(file.isRepeatable());
+        assertArrayEquals(read(file), DATA);
+        assertArrayEquals(read(file), DATA);
+        assertEquals(buffer.remaining(), DATA.length);
+
+        Simba.UploadFile bytes = new Simba.UploadFile("file_0", DATA);
+        assertEquals(bytes.getContentLength(), DATA.length);
+        assertTrue(bytes.isRepeatable());
+    }
+
+    @Test
+    public void testInputStream() {
+        Simba.UploadFile file = new Simba.UploadFile("file_0",
+            new ByteArrayInputStream(DATA));
+        assertEquals(file.getContentLength(), -1);
+        assertFalse(file.isRepeatable());
+    }
+
+    @Test
+    public void testUploadDigest() throws Exception {
+        String sha256 = Digests.toHex(MessageDigest.getInstance("SHA-256")
+                                                  .digest(DATA));
+        EntityClient client = new EntityClient();
+        client.setUploadDigestAlgorithms(Arrays.asList("sha256", "SHA-1"));
+        Simba.UploadFile buffer = new Simba.UploadFile("file_0", DATA);
+        Simba.UploadFile stream = new Simba.UploadFile("file_1",
+            new ByteArrayInputStream(DATA));
+        Map<String, Object> data = new HashMap<>();
+        data.put("key", "value");
+        SimbaClient.UploadEntity entity = client.entity(data, buffer, stream);
+        assertTrue(entity.getFileDigests()
+                         .isEmpty());
+        entity.writeTo(new ByteArrayOutputStream());
+
+        List<FileDigest> digests = entity.getFileDigests();
+        assertEquals(digests.size(), 2);
+        for (FileDigest digest : digests) {
+            assertEquals(digest.getSize(), DATA.length);
+            assertEquals(digest.getDigest("SHA-256"), sha256);
+            assertEquals(digest.getDigests()
+                               .size(), 2);
+        }
+        assertEquals(digests.get(1)
+                            .getName(), "file_1");
+
+        ManifestFile manifestFile = new ManifestFile();
+        manifestFile.setAlg("sha256");
+        manifestFile.setHash("0x" + sha256.toUpperCase());
+        assertTrue(digests.get(0)
+                          .matches(manifestFile));
+        manifestFile.setAlg("sha512");
+        assertFalse(digests.get(0)
+                           .matches(manifestFile));
+
+        // each request keeps its own digests when a file is shared
+        SimbaClient.UploadEntity other = client.entity(data,
+            new Simba.UploadFile("file_0", "other".getBytes(StandardCharsets.UTF_8)), buffer);
+        other.writeTo(new ByteArrayOutputStream());
+        assertEquals(other.getFileDigests()
+                          .get(1)
+                          .getDigest("SHA-256"), sha256);
+        assertEquals(entity.getFileDigests(), digests);
+
+        client.setUploadDigestAlgorithms(Collections.singletonList("md-none"));
+        try {
+            client.entity(data, buffer);
+            fail("expected a message error");
+        } catch (SimbaException e) {
+            assertEquals(e.getType(), SimbaException.SimbaError.MESSAGE_ERROR);
+        }
+    }
+
+    private static class EntityClient extends SimbaClient {
+
+        private EntityClient() {
+            super("http://localhost");
+        }
+
+        private SimbaClient.UploadEntity entity(Map<String, Object> data,
+            Simba.UploadFile... files) throws SimbaException {
+            return (SimbaClient.UploadEntity) createEntity(data, files);
+        }
+
+        @Override
+        protected Map<String, String> getApiHeaders() {
+            return Collections.emptyMap();
+        }
+    }
+}
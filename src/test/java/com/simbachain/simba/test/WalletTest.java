@@ -21,12 +21,16 @@
 package com.simbachain.simba.test;
 
 import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.simbachain.SimbaException;
 import com.simbachain.wallet.FileWallet;
 import com.simbachain.wallet.Wallet;
 import org.junit.AfterClass;
 import org.junit.Test;
+import org.web3j.crypto.RawTransaction;
 
 import static org.junit.Assert.*;
 
@@ -107,4 +111,27 @@ public class WalletTest {
         assertTrue(deleted);
 
     }
+
+    @Test
+    public void testSignAll() throws Exception {
+
+        Wallet wallet = new FileWallet("target/test-classes/keys", "signall");
+        wallet.loadOrCreateWallet("password");
+        List<RawTransaction> raws = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            raws.add(RawTransaction.createTransaction(BigInteger.valueOf(i), BigInteger.ZERO,
+                BigInteger.valueOf(100000), "0x6f84419344a1caa3c87ecfddc5cdb5272eb24be4",
+                BigInteger.ZERO, "0x"));
+        }
+        List<String> signed = wallet.signAll(raws);
+        assertEquals(signed.size(), raws.size());
+        for (int i = 0; i < raws.size(); i++) {
+            // signatures are deterministic, so the batch matches signing one at a time
+            assertEquals(signed.get(i), wallet.sign(raws.get(i)));
+        }
+        assertEquals(wallet.signAsync(raws.get(0))
+                           .get(), signed.get(0));
+        boolean deleted = wallet.deleteWallet();
+        assertTrue(deleted);
+    }
 }
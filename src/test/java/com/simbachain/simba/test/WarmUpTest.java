@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.simbachain.simba.http.ApacheHttpTransport;
+import com.simbachain.simba.http.ConnectionStatistics;
+import com.simbachain.simba.http.HttpConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that warming up the Apache transport opens pooled connections that are reused.
+ */
+public class WarmUpTest {
+
+    @Test
+    public void testWarmUp() throws Exception {
+        final AtomicInteger accepted = new AtomicInteger();
+        final List<Socket> sockets = new ArrayList<>();
+        try (final ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket socket = server.accept();
+                        synchronized (sockets) {
+                            sockets.add(socket);
+                        }
+                        accepted.incrementAndGet();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            HttpConfig config = new HttpConfig();
+            config.setMaxPerRoute(4);
+            ApacheHttpTransport transport = new ApacheHttpTransport(config);
+            try {
+                URI uri = URI.create(
+                    String.format("http://127.0.0.1:%d/v1/", server.getLocalPort()));
+                assertEquals(3, transport.warmUp(uri, 3));
+                ConnectionStatistics stats = transport.getStatistics();
+                assertEquals(3, stats.getAvailable());
+                assertEquals(0, stats.getLeased());
+
+                // idle connections are reused and the count is capped per route
+                assertEquals(4, transport.warmUp(uri, 10));
+                assertEquals(4, transport.getStatistics()
+                                         .getAvailable());
+                long end = System.currentTimeMillis() + 5000;
+                while (accepted.get() < 4 && System.currentTimeMillis() < end) {
+                    Thread.sleep(10);
+                }
+                assertEquals(4, accepted.get());
+            } finally {
+                transport.close();
+                synchronized (sockets) {
+                    for (Socket socket : sockets) {
+                        socket.close();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2020 SIMBA Chain Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ * and associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ * is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ * INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A
+ * PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE
+ * SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.simbachain.simba.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.simbachain.simba.http.HttpConfig;
+import com.simbachain.simba.http.HttpTransport;
+import com.simbachain.simba.http.InMemoryTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the InMemoryTransportTest scenarios over HTTP with the JDK transport. Each
+ * scenario's responder is served by a local HTTP server.
+ * <p>
+ * The tests are only compiled and run by the jdk-transport-tests profile, which puts
+ * the multi-release classes ahead of the Java 8 classes on the test classpath.
+ */
+public class JdkHttpTransportTest extends InMemoryTransportTest {
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @After
+    public void stopServer() {
+        if (this.server != null) {
+            this.server.stop(0);
+            this.executor.shutdownNow();
+            this.server = null;
+        }
+    }
+
+    @Override
+    protected HttpTransport transport(InMemoryTransport.Responder responder) throws IOException {
+        stopServer();
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> serve(exchange, responder));
+        this.server.setExecutor(this.executor);
+        this.server.start();
+        HttpConfig config = new HttpConfig();
+        config.setTransport(HttpConfig.Transport.JDK);
+        HttpTransport transport = HttpTransport.create(config);
+        assertEquals(transport.getClass()
+                              .getSimpleName(), "JdkHttpTransport");
+        return transport;
+    }
+
+    @Override
+    protected String endpoint() {
+        return "http://127.0.0.1:" + this.server.getAddress()
+                                                .getPort() + "/";
+    }
+
+    @Test
+    public void testAbortWhileStreaming() throws Exception {
+        HttpTransport transport = transport(request -> {
+            // a body that never ends
+            InputStream body = new InputStream() {
+                @Override
+                public int read() {
+                    return 1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    Arrays.fill(b, off, off + len, (byte) 1);
+                    return len;
+                }
+            };
+            BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+            response.setEntity(new InputStreamEntity(body));
+            return response;
+        });
+        HttpGet get = new HttpGet(endpoint() + "endless");
+        Thread aborter = new Thread(() -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                return;
+            }
+            get.abort();
+        });
+        aborter.start();
+        long start = System.currentTimeMillis();
+        try {
+            transport.execute(get, response -> {
+                try (InputStream in = response.getEntity()
+                                              .getContent()) {
+                    byte[] buf = new byte[8192];
+                    while (in.read(buf) != -1) {
+                        // keep reading
+                    }
+                }
+                return null;
+            });
+            fail("expected the request to be aborted");
+        } catch (IOException e) {
+            // expected
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        aborter.join();
+        transport.release();
+    }
+
+    @Test
+    public void testAbortAsync() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch respond = new CountDownLatch(1);
+        HttpTransport transport = transport(request -> {
+            received.countDown();
+            try {
+                respond.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return InMemoryTransport.response(200, "{}");
+        });
+        HttpGet get = new HttpGet(endpoint() + "slow");
+        CompletableFuture<String> future = transport.executeAsync(get, response -> "done");
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        get.abort();
+        assertTrue(future.isCancelled());
+        respond.countDown();
+        transport.release();
+    }
+
+    @Test
+    public void testStreamedUpload() throws Exception {
+        HttpTransport transport = transport(request -> {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            return InMemoryTransport.response(200,
+                "{\"size\":" + (entity == null ? 0 : entity.getContentLength()) + "}");
+        });
+        byte[] data = new byte[1024 * 1024 + 3];
+        new Random(3).nextBytes(data);
+        // a known length, which is piped rather than buffered, and an unknown length
+        HttpEntity[] entities = new HttpEntity[] {new ByteArrayEntity(data),
+            new InputStreamEntity(new ByteArrayInputStream(data))};
+        for (HttpEntity entity : entities) {
+            HttpPost post = new HttpPost(endpoint() + "upload");
+            post.setEntity(entity);
+            String body = transport.execute(post, response -> EntityUtils.toString(
+                response.getEntity()));
+            assertEquals(body, "{\"size\":" + data.length + "}");
+        }
+        transport.release();
+    }
+
+    /**
+     * Pass the request to the responder and write its response. If the responder's body
+     * fails part way through, the exception closes the connection without ending the
+     * body, as a dropped connection would.
+     */
+    private static void serve(HttpExchange exchange, InMemoryTransport.Responder responder)
+        throws IOException {
+        HttpResponse response = responder.respond(toRequest(exchange));
+        for (Header header : response.getAllHeaders()) {
+            if (!header.getName()
+                       .equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH) && !header.getName()
+                                                                               .equalsIgnoreCase(
+                                                                                   HttpHeaders.TRANSFER_ENCODING)) {
+                exchange.getResponseHeaders()
+                        .add(header.getName(), header.getValue());
+            }
+        }
+        int status = response.getStatusLine()
+                             .getStatusCode();
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            // the server only keeps an explicit Content-Length header on a HEAD response
+            Header length = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+            if (length != null && exchange.getRequestMethod()
+                                          .equals("HEAD")) {
+                exchange.getResponseHeaders()
+                        .set(HttpHeaders.CONTENT_LENGTH, length.getValue());
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        if (entity.getContentType() != null) {
+            exchange.getResponseHeaders()
+                    .set(HttpHeaders.CONTENT_TYPE, entity.getContentType()
+                                                         .getValue());
+        }
+        if (entity.getContentEncoding() != null) {
+            exchange.getResponseHeaders()
+                    .set(HttpHeaders.CONTENT_ENCODING, entity.getContentEncoding()
+                                                             .getValue());
+        }
+        long length = entity.getContentLength();
+        exchange.sendResponseHeaders(status, length < 0 ? 0 : length == 0 ? -1 : length);
+        // flush each write, so the body reaches the client as it is written
+        OutputStream out = new FilterOutputStream(exchange.getResponseBody()) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+                this.out.flush();
+            }
+        };
+        entity.writeTo(out);
+        out.close();
+        exchange.close();
+    }
+
+    private static HttpUriRequest toRequest(HttpExchange exchange) throws IOException {
+        RequestBuilder builder = RequestBuilder.create(exchange.getRequestMethod())
+                                               .setUri(URI.create(
+                                                   "http://127.0.0.1:" + exchange.getLocalAddress()
+                                                                                 .getPort()
+                                                       + exchange.getRequestURI()));
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders()
+                                                              .entrySet()) {
+            for (String value : header.getValue()) {
+                builder.addHeader(header.getKey(), value);
+            }
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                body.write(buf, 0, n);
+            }
+        }
+        if (body.size() > 0) {
+            ByteArrayEntity entity = new ByteArrayEntity(body.toByteArray());
+            entity.setContentType(exchange.getRequestHeaders()
+                                          .getFirst(HttpHeaders.CONTENT_TYPE));
+            builder.setEntity(entity);
+        }
+        return builder.build();
+    }
+}